@@ -0,0 +1,67 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.concurrent.Future;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+/**
+ * In-process stand-in for a Kafka producer that appends every record to a batch
+ * under a lock before acknowledging it, like the record accumulator of a Kafka
+ * producer does, so that benchmarks reflect the contention of many threads
+ * sending on a single producer.
+ * @author Melior
+ * @since 2.3
+ */
+public class AccumulatingProducer extends NullProducer {
+
+    private static final int BATCH_SIZE = 16 * 1024;
+
+    private byte[] batch = new byte[BATCH_SIZE];
+
+    private int position;
+
+    /**
+     * Send record.
+     * @param record The record
+     * @param callback The callback
+     * @return The future record metadata
+     */
+    public Future<RecordMetadata> send(
+        final ProducerRecord<String, byte[]> record,
+        final Callback callback) {
+
+        append(record.value());
+
+        return super.send(record, callback);
+    }
+
+    /**
+     * Append payload to the current batch.  A new batch is started when the
+     * payload does not fit into the current batch.
+     * @param payload The payload
+     */
+    private synchronized void append(
+        final byte[] payload) {
+
+        int length;
+
+        length = Math.min(payload.length, BATCH_SIZE);
+
+        if (position + length > BATCH_SIZE) {
+            position = 0;
+        }
+
+        System.arraycopy(payload, 0, batch, position, length);
+
+        position += length;
+    }
+
+}
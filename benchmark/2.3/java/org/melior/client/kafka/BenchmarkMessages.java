@@ -0,0 +1,160 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Representative messages of different sizes for use in benchmarks.  The small
+ * message serializes to roughly 100 bytes, the medium message to roughly 1 KB
+ * and the large message to roughly 100 KB.
+ * @author Melior
+ * @since 2.3
+ */
+public abstract class BenchmarkMessages {
+
+    /**
+     * Create small message.
+     * @return The small message
+     */
+    public static Small small() {
+
+        Small small;
+
+        small = new Small();
+        small.id = 1234567890L;
+        small.name = "Benchmark";
+        small.active = true;
+        small.amount = new BigDecimal("1234.56");
+        small.code = "ZA";
+
+        return small;
+    }
+
+    /**
+     * Create medium message.
+     * @return The medium message
+     */
+    public static Medium medium() {
+
+        Medium medium;
+
+        medium = new Medium();
+        medium.id = 1234567890L;
+        medium.reference = "REF-0000000001";
+        medium.firstName = "Firstname";
+        medium.lastName = "Lastname";
+        medium.email = "firstname.lastname@example.com";
+        medium.phone = "+27 21 000 0000";
+        medium.street = "1 Long Street";
+        medium.city = "Cape Town";
+        medium.postalCode = "8001";
+        medium.country = "ZA";
+        medium.balance = new BigDecimal("98765.43");
+        medium.limit = new BigDecimal("100000.00");
+        medium.created = 1672531200000L;
+        medium.updated = 1675209600000L;
+        medium.status = "ACTIVE";
+        medium.items = new ArrayList<Small>();
+
+        for (int i = 0; i < 8; i++) {
+            medium.items.add(small());
+        }
+
+        return medium;
+    }
+
+    /**
+     * Create large message.
+     * @return The large message
+     */
+    public static Large large() {
+
+        Large large;
+
+        large = new Large();
+        large.batch = "BATCH-0000000001";
+        large.records = new ArrayList<Medium>();
+
+        for (int i = 0; i < 100; i++) {
+            large.records.add(medium());
+        }
+
+        return large;
+    }
+
+    /**
+     * A small message.
+     */
+    public static class Small {
+
+        public long id;
+
+        public String name;
+
+        public boolean active;
+
+        public BigDecimal amount;
+
+        public String code;
+
+    }
+
+    /**
+     * A medium message.
+     */
+    public static class Medium {
+
+        public long id;
+
+        public String reference;
+
+        public String firstName;
+
+        public String lastName;
+
+        public String email;
+
+        public String phone;
+
+        public String street;
+
+        public String city;
+
+        public String postalCode;
+
+        public String country;
+
+        public BigDecimal balance;
+
+        public BigDecimal limit;
+
+        public long created;
+
+        public long updated;
+
+        public String status;
+
+        public List<Small> items;
+
+    }
+
+    /**
+     * A large message.
+     */
+    public static class Large {
+
+        public String batch;
+
+        public List<Medium> records;
+
+    }
+
+}
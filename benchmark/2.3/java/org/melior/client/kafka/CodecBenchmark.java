@@ -0,0 +1,83 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the encoding of small, medium and large messages with every built-in
+ * {@code MessageCodec}.  The payload size of every message is written to the
+ * output of the benchmark during set up.
+ * @author Melior
+ * @since 2.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"json", "smile", "cbor", "avro"})
+    private String codecName;
+
+    private MessageCodec codec;
+
+    private BenchmarkMessages.Small small;
+
+    private BenchmarkMessages.Medium medium;
+
+    private BenchmarkMessages.Large large;
+
+    /**
+     * Set up benchmark state.
+     * @throws Exception if unable to encode the messages
+     */
+    @Setup
+    public void setup() throws Exception {
+
+        codec = MessageCodecs.forName(codecName);
+
+        small = BenchmarkMessages.small();
+
+        medium = BenchmarkMessages.medium();
+
+        large = BenchmarkMessages.large();
+
+        System.out.println("Payload size " + codecName + ": small = " + codec.encode(small).length
+            + " B, medium = " + codec.encode(medium).length + " B, large = " + codec.encode(large).length + " B");
+    }
+
+    @Benchmark
+    public byte[] small() throws Exception {
+        return codec.encode(small);
+    }
+
+    @Benchmark
+    public byte[] medium() throws Exception {
+        return codec.encode(medium);
+    }
+
+    @Benchmark
+    public byte[] large() throws Exception {
+        return codec.encode(large);
+    }
+
+}
@@ -0,0 +1,108 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * In-process stand-in for a Kafka producer that acknowledges every record
+ * immediately, without retaining it and without allocating any objects, so
+ * that benchmarks only measure the work that is done by the client.
+ * @author Melior
+ * @since 2.3
+ */
+public class NullProducer implements Producer<String, byte[]> {
+
+    private static final RecordMetadata METADATA = new RecordMetadata(new TopicPartition("benchmark", 0), 0, 0, 0, null, 0, 0);
+
+    private static final Future<RecordMetadata> FUTURE = CompletableFuture.completedFuture(METADATA);
+
+    /**
+     * Send record.
+     * @param record The record
+     * @return The future record metadata
+     */
+    public Future<RecordMetadata> send(
+        final ProducerRecord<String, byte[]> record) {
+        return FUTURE;
+    }
+
+    /**
+     * Send record.
+     * @param record The record
+     * @param callback The callback
+     * @return The future record metadata
+     */
+    public Future<RecordMetadata> send(
+        final ProducerRecord<String, byte[]> record,
+        final Callback callback) {
+
+        if (callback != null) {
+            callback.onCompletion(METADATA, null);
+        }
+
+        return FUTURE;
+    }
+
+    public void initTransactions() {
+    }
+
+    public void beginTransaction() {
+    }
+
+    public void sendOffsetsToTransaction(
+        final Map<TopicPartition, OffsetAndMetadata> offsets,
+        final String consumerGroupId) {
+    }
+
+    public void sendOffsetsToTransaction(
+        final Map<TopicPartition, OffsetAndMetadata> offsets,
+        final ConsumerGroupMetadata groupMetadata) {
+    }
+
+    public void commitTransaction() {
+    }
+
+    public void abortTransaction() {
+    }
+
+    public void flush() {
+    }
+
+    public List<PartitionInfo> partitionsFor(
+        final String topic) {
+        return Collections.emptyList();
+    }
+
+    public Map<MetricName, ? extends Metric> metrics() {
+        return Collections.emptyMap();
+    }
+
+    public void close() {
+    }
+
+    public void close(
+        final Duration timeout) {
+    }
+
+}
@@ -0,0 +1,186 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Drives a {@code LatencyAwarePartitioner} and a {@code LatencyTrackingInterceptor}
+ * against a mock cluster in which one node acknowledges batches much more slowly than
+ * the others.  Records are appended to batches per partition, and a batch is sent and
+ * acknowledged after the delay of the leader of its partition once it is full, as the
+ * record accumulator of a Kafka producer does.  The check fails when the slow node
+ * receives more than a set share of the records, or when records without a key are
+ * spread over more batches than necessary.
+ * <p>
+ * The share may be overridden with the {@code share} system property.
+ * @author Melior
+ * @since 2.3
+ */
+public class PartitionerBenchmark {
+
+    private static final String TOPIC = "benchmark";
+
+    private static final int PARTITIONS = 6;
+
+    private static final long[] NODE_DELAYS = {2, 2, 20};
+
+    private static final int BATCH_SIZE = 50;
+
+    private static final int RECORDS = 20_000;
+
+    private static final long INTERVAL = 50_000;
+
+    private static final double SHARE = 0.25;
+
+    /**
+     * Run benchmark.
+     * @param args The arguments
+     * @throws Exception if the benchmark fails
+     */
+    public static void main(
+        final String[] args) throws Exception {
+
+        Node[] nodes;
+        List<PartitionInfo> partitionInfos;
+        Cluster cluster;
+        Map<String, Object> configs;
+        LatencyAwarePartitioner partitioner;
+        LatencyTrackingInterceptor interceptor;
+        ScheduledExecutorService acknowledger;
+        ProducerRecord<Object, Object> record;
+        int[] batchCounts;
+        int[] nodeCounts;
+        int batches = 0;
+        int switches = 0;
+        int previous = -1;
+        int partition;
+        double share;
+        double slowShare;
+
+        share = Double.parseDouble(System.getProperty("share", String.valueOf(SHARE)));
+
+        nodes = new Node[NODE_DELAYS.length];
+        partitionInfos = new ArrayList<PartitionInfo>();
+
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new Node(i, "node" + i, 9092);
+        }
+
+        for (int i = 0; i < PARTITIONS; i++) {
+            partitionInfos.add(new PartitionInfo(TOPIC, i, nodes[i % nodes.length], nodes, nodes));
+        }
+
+        cluster = new Cluster("benchmark", Arrays.asList(nodes), partitionInfos, Collections.emptySet(), Collections.emptySet());
+
+        configs = new HashMap<String, Object>();
+        configs.put(LatencyAwarePartitioner.TRACKER_CONFIG, new PartitionLatencyTracker());
+        configs.put(LatencyAwarePartitioner.FAIRNESS_CONFIG, 0.1);
+
+        partitioner = new LatencyAwarePartitioner();
+        partitioner.configure(configs);
+
+        interceptor = new LatencyTrackingInterceptor();
+        interceptor.configure(configs);
+
+        acknowledger = Executors.newSingleThreadScheduledExecutor();
+
+        batchCounts = new int[PARTITIONS];
+        nodeCounts = new int[nodes.length];
+
+        for (int i = 0; i < RECORDS; i++) {
+
+            record = new ProducerRecord<Object, Object>(TOPIC, new byte[100]);
+
+            interceptor.onSend(record);
+
+            partition = partitioner.partition(TOPIC, null, null, record.value(), null, cluster);
+
+            if (batchCounts[partition] == BATCH_SIZE) {
+                send(acknowledger, interceptor, partition, batchCounts[partition]);
+                batchCounts[partition] = 0;
+                batches++;
+
+                partitioner.onNewBatch(TOPIC, cluster, partition);
+
+                partition = partitioner.partition(TOPIC, null, null, record.value(), null, cluster);
+            }
+
+            if (partition != previous) {
+                switches++;
+                previous = partition;
+            }
+
+            batchCounts[partition]++;
+            nodeCounts[partition % nodes.length]++;
+
+            LockSupport.parkNanos(INTERVAL);
+        }
+
+        acknowledger.shutdown();
+        acknowledger.awaitTermination(1, TimeUnit.SECONDS);
+
+        slowShare = (double) nodeCounts[nodes.length - 1] / RECORDS;
+
+        System.out.printf("records per node: %s, share of slow node: %.3f (limit %.3f)%n", Arrays.toString(nodeCounts), slowShare, share);
+        System.out.printf("batches: %d, partition switches: %d%n", batches, switches);
+
+        if (slowShare > share) {
+            System.err.println("Slow node received too many records.");
+            System.exit(1);
+        }
+
+        if (switches > batches + 1) {
+            System.err.println("Records were spread over more batches than necessary.");
+            System.exit(1);
+        }
+
+    }
+
+    /**
+     * Send batch, and acknowledge its records after the delay of the leader of its partition.
+     * @param acknowledger The executor that acknowledges the records
+     * @param interceptor The interceptor
+     * @param partition The partition of the batch
+     * @param size The number of records in the batch
+     */
+    private static void send(
+        final ScheduledExecutorService acknowledger,
+        final LatencyTrackingInterceptor interceptor,
+        final int partition,
+        final int size) {
+
+        RecordMetadata metadata;
+
+        metadata = new RecordMetadata(new TopicPartition(TOPIC, partition), 0, 0, 0, null, 0, 0);
+
+        acknowledger.schedule(() -> {
+
+            for (int i = 0; i < size; i++) {
+                interceptor.onAcknowledgement(metadata, null);
+            }
+
+        }, NODE_DELAYS[partition % NODE_DELAYS.length], TimeUnit.MILLISECONDS);
+    }
+
+}
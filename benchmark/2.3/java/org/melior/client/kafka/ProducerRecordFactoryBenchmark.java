@@ -0,0 +1,75 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the construction of producer records by {@code ProducerRecordFactory},
+ * both for consecutive records of the same transaction and for records that each
+ * belong to a different transaction.
+ * @author Melior
+ * @since 2.3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProducerRecordFactoryBenchmark {
+
+    private byte[] payload;
+
+    private String transactionId;
+
+    private String[] transactionIds;
+
+    private int index;
+
+    /**
+     * Set up benchmark state.
+     */
+    @Setup
+    public void setup() {
+
+        payload = new byte[1024];
+
+        transactionId = UUID.randomUUID().toString();
+
+        transactionIds = new String[1024];
+
+        for (int i = 0; i < transactionIds.length; i++) {
+            transactionIds[i] = UUID.randomUUID().toString();
+        }
+
+    }
+
+    @Benchmark
+    public ProducerRecord<String, byte[]> sameTransaction() {
+        return ProducerRecordFactory.create("benchmark", payload, transactionId);
+    }
+
+    @Benchmark
+    public ProducerRecord<String, byte[]> newTransaction() {
+        return ProducerRecordFactory.create("benchmark", payload, transactionIds[index++ & 1023]);
+    }
+
+}
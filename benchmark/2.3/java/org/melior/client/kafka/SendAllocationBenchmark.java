@@ -0,0 +1,86 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the number of bytes that are allocated by every synchronous send of
+ * a pre-encoded payload through a {@code KafkaClient} against a {@code NullProducer},
+ * and fails when the number exceeds the allocation budget.  The budget covers the
+ * producer record with its headers and the bookkeeping of the {@code KafkaTemplate}.
+ * Any other allocation on the send path is a regression.
+ * <p>
+ * The budget may be overridden with the {@code budget} system property.
+ * @author Melior
+ * @since 2.3
+ */
+public class SendAllocationBenchmark {
+
+    private static final long BUDGET = 464;
+
+    private static final int WARM_UP = 500_000;
+
+    private static final int ITERATIONS = 2_000_000;
+
+    /**
+     * Run benchmark.
+     * @param args The arguments
+     * @throws Exception if the benchmark fails
+     */
+    public static void main(
+        final String[] args) throws Exception {
+
+        com.sun.management.ThreadMXBean threadBean;
+        NullProducer producer;
+        KafkaClient client;
+        byte[] payload;
+        long budget;
+        long threadId;
+        long allocated;
+        double bytesPerOperation;
+
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadId = Thread.currentThread().getId();
+        budget = Long.getLong("budget", BUDGET);
+
+        client = KafkaClientBuilder.create().build();
+        client.setUrl("tcp://localhost:9092");
+        client.setUsername("benchmark");
+        client.setPassword("benchmark");
+        client.setTopic("benchmark");
+        producer = new NullProducer();
+        client.setProducerFactory(() -> producer);
+
+        payload = new byte[256];
+
+        for (int i = 0; i < WARM_UP; i++) {
+            client.send(payload);
+        }
+
+        allocated = threadBean.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            client.send(payload);
+        }
+
+        allocated = threadBean.getThreadAllocatedBytes(threadId) - allocated;
+        bytesPerOperation = (double) allocated / ITERATIONS;
+
+        System.out.printf("send: %.1f bytes/op (budget %d bytes/op)%n", bytesPerOperation, budget);
+
+        client.close();
+
+        if (bytesPerOperation > budget) {
+            System.err.println("Allocation budget exceeded.");
+            System.exit(1);
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@code KafkaClient.send} end to end, in synchronous and asynchronous
+ * transport mode, against a {@code NullProducer} that acknowledges every record
+ * immediately.  The result is the overhead of the client itself, from object to
+ * acknowledged record, without any network or broker time.
+ * @author Melior
+ * @since 2.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendBenchmark {
+
+    @Param({"sync", "async"})
+    private String mode;
+
+    private KafkaClient client;
+
+    private BenchmarkMessages.Small small;
+
+    private BenchmarkMessages.Medium medium;
+
+    private byte[] payload;
+
+    /**
+     * Set up benchmark state.
+     */
+    @Setup
+    public void setup() {
+
+        NullProducer producer;
+
+        producer = new NullProducer();
+
+        client = ("async".equals(mode) == true) ? KafkaClientBuilder.create().async().build() : KafkaClientBuilder.create().build();
+        client.setUrl("tcp://localhost:9092");
+        client.setUsername("benchmark");
+        client.setPassword("benchmark");
+        client.setTopic("benchmark");
+        client.setProducerFactory(() -> producer);
+
+        small = BenchmarkMessages.small();
+
+        medium = BenchmarkMessages.medium();
+
+        payload = new byte[1024];
+    }
+
+    /**
+     * Tear down benchmark state.
+     */
+    @TearDown
+    public void tearDown() {
+
+        client.close();
+    }
+
+    @Benchmark
+    public void sendSmall() throws Exception {
+        client.send(small);
+    }
+
+    @Benchmark
+    public void sendMedium() throws Exception {
+        client.send(medium);
+    }
+
+    @Benchmark
+    public void sendBytes() throws Exception {
+        client.send(payload);
+    }
+
+}
@@ -0,0 +1,100 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Measures the serialization of small, medium and large messages with a plain
+ * {@code ObjectMapper} that is configured like the one in {@code KafkaClient}
+ * ({@code mapper}), with the JSON codec of the client, which caches an object writer
+ * per message type and writes into a reused buffer ({@code codec}), and with the
+ * JSON codec with bytecode-generated accessors enabled ({@code afterburner}).
+ * @author Melior
+ * @since 2.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"mapper", "codec", "afterburner"})
+    private String engine;
+
+    private ObjectMapper objectMapper;
+
+    private MessageCodec codec;
+
+    private BenchmarkMessages.Small small;
+
+    private BenchmarkMessages.Medium medium;
+
+    private BenchmarkMessages.Large large;
+
+    /**
+     * Set up benchmark state.
+     */
+    @Setup
+    public void setup() {
+
+        objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        codec = ("mapper".equals(engine) == true) ? null : new JsonCodec("afterburner".equals(engine));
+
+        small = BenchmarkMessages.small();
+
+        medium = BenchmarkMessages.medium();
+
+        large = BenchmarkMessages.large();
+    }
+
+    @Benchmark
+    public byte[] small() throws Exception {
+        return encode(small);
+    }
+
+    @Benchmark
+    public byte[] medium() throws Exception {
+        return encode(medium);
+    }
+
+    @Benchmark
+    public byte[] large() throws Exception {
+        return encode(large);
+    }
+
+    /**
+     * Encode message with the selected engine.
+     * @param message The message object
+     * @return The message payload
+     * @throws Exception if unable to encode the message
+     */
+    private byte[] encode(
+        final Object message) throws Exception {
+
+        return (codec == null) ? objectMapper.writeValueAsBytes(message) : codec.encode(message);
+    }
+
+}
@@ -0,0 +1,95 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@code KafkaClient.send} from as many threads as there
+ * are cores, with the records spread over a varying number of producer stripes, each
+ * of which is backed by an {@code AccumulatingProducer}.  With a single stripe every
+ * thread contends for the lock of one producer, and the throughput grows with the
+ * number of stripes until there are as many stripes as cores.  The number of threads
+ * may be varied with the {@code -t} option to show how the throughput scales with the
+ * number of cores.
+ * @author Melior
+ * @since 2.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(1)
+public class StripeBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    private int stripes;
+
+    @Param({"THREAD", "LEAST_LOADED"})
+    private StripeSelection selection;
+
+    private KafkaClient client;
+
+    private byte[] payload;
+
+    /**
+     * Set up benchmark state.
+     */
+    @Setup
+    public void setup() {
+
+        AccumulatingProducer[] producers;
+
+        producers = new AccumulatingProducer[stripes];
+
+        for (int i = 0; i < stripes; i++) {
+            producers[i] = new AccumulatingProducer();
+        }
+
+        client = KafkaClientBuilder.create().build();
+        client.setUrl("tcp://localhost:9092");
+        client.setUsername("benchmark");
+        client.setPassword("benchmark");
+        client.setTopic("benchmark");
+        client.setProducerStripes(stripes);
+        client.setStripeSelection(selection);
+        client.setProducerFactories(stripe -> () -> producers[stripe]);
+
+        payload = new byte[1024];
+    }
+
+    /**
+     * Tear down benchmark state.
+     */
+    @TearDown
+    public void tearDown() {
+
+        client.close();
+    }
+
+    @Benchmark
+    public void sendBytes() throws Exception {
+        client.send(payload);
+    }
+
+}
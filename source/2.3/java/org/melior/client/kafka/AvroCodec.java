@@ -0,0 +1,198 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.avro.SchemaNormalization;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.avro.AvroMapper;
+import com.fasterxml.jackson.dataformat.avro.AvroSchema;
+
+/**
+ * A {@code MessageCodec} that maps messages to Avro binary encoding.  The Avro
+ * schema of every message type is generated from the message class, only once,
+ * so the producer and the consumer must use compatible message classes.  Field
+ * names are not written to the payload, which keeps it compact.
+ * <p>
+ * Every payload is prefixed with the fingerprint of the schema that it was written
+ * with, in the Avro single object encoding, which is the two byte marker {@code C3 01}
+ * followed by the CRC-64-AVRO fingerprint of the parsing canonical form of the schema
+ * in little-endian order.  A payload whose schema does not match the schema of the
+ * message class is refused instead of being decoded into the wrong fields.
+ * Requires {@code jackson-dataformat-avro}.
+ * @author Melior
+ * @since 2.3
+ */
+public class AvroCodec extends JacksonCodec {
+
+    public static final String CONTENT_TYPE = "application/avro";
+
+    private static final int PREFIX_LENGTH = 10;
+
+    private Map<Class<?>, byte[]> prefixes;
+
+    /**
+     * Constructor.
+     */
+    public AvroCodec() {
+
+        this(false);
+    }
+
+    /**
+     * Constructor.
+     * @param afterburner The bytecode-generated accessors indicator
+     */
+    public AvroCodec(
+        final boolean afterburner) {
+
+        super((afterburner == true) ? accelerate(configure(new AvroMapper())) : configure(new AvroMapper()), CONTENT_TYPE);
+
+        this.prefixes = new ConcurrentHashMap<Class<?>, byte[]>();
+    }
+
+    /**
+     * Decode message.  The payload must have been written with the schema of the
+     * message class.
+     * @param <T> The message type
+     * @param payload The message payload
+     * @param type The message class
+     * @return The message object
+     * @throws Exception if the payload was written with another schema, or if unable to decode the message
+     */
+    public <T> T decode(
+        final byte[] payload,
+        final Class<T> type) throws Exception {
+
+        byte[] prefix;
+
+        prefix = getPrefix(type);
+
+        if ((payload == null) || (payload.length < PREFIX_LENGTH)) {
+            throw new IllegalArgumentException("Avro payload does not start with a schema fingerprint.");
+        }
+
+        for (int i = 0; i < PREFIX_LENGTH; i++) {
+
+            if (payload[i] != prefix[i]) {
+                throw new IllegalArgumentException((i < 2) ? "Avro payload does not start with a schema fingerprint."
+                    : "Avro payload was written with schema " + toHex(payload) + ", which does not match schema "
+                    + toHex(prefix) + " of " + type.getName() + ".");
+            }
+
+        }
+
+        return getReader(type).readValue(payload, PREFIX_LENGTH, payload.length - PREFIX_LENGTH);
+    }
+
+    /**
+     * Get prefix that is written ahead of the encoded messages of message type,
+     * which holds the fingerprint of the Avro schema of the message type.
+     * @param type The message class
+     * @return The prefix
+     */
+    protected byte[] getPrefix(
+        final Class<?> type) {
+
+        byte[] prefix;
+
+        prefix = prefixes.get(type);
+
+        if (prefix == null) {
+            prefix = prefixes.computeIfAbsent(type, this::createPrefix);
+        }
+
+        return prefix;
+    }
+
+    /**
+     * Create prefix for message type.
+     * @param type The message class
+     * @return The prefix
+     */
+    private byte[] createPrefix(
+        final Class<?> type) {
+
+        byte[] prefix;
+        long fingerprint;
+
+        fingerprint = SchemaNormalization.parsingFingerprint64(getSchema(type).getAvroSchema());
+
+        prefix = new byte[PREFIX_LENGTH];
+        prefix[0] = (byte) 0xC3;
+        prefix[1] = (byte) 0x01;
+
+        for (int i = 0; i < 8; i++) {
+            prefix[2 + i] = (byte) (fingerprint >>> (8 * i));
+        }
+
+        return prefix;
+    }
+
+    /**
+     * Format schema fingerprint of prefix as hexadecimal string.
+     * @param prefix The prefix
+     * @return The schema fingerprint
+     */
+    private static String toHex(
+        final byte[] prefix) {
+
+        StringBuilder hex;
+
+        hex = new StringBuilder(16);
+
+        for (int i = PREFIX_LENGTH - 1; i >= 2; i--) {
+            hex.append(Character.forDigit((prefix[i] >> 4) & 0xF, 16)).append(Character.forDigit(prefix[i] & 0xF, 16));
+        }
+
+        return hex.toString();
+    }
+
+    /**
+     * Create object writer for message type, with the Avro schema of the message type.
+     * @param type The message class
+     * @return The object writer
+     */
+    protected ObjectWriter createWriter(
+        final Class<?> type) {
+
+        return getObjectMapper().writer(getSchema(type));
+    }
+
+    /**
+     * Create object reader for message type, with the Avro schema of the message type.
+     * @param type The message class
+     * @return The object reader
+     */
+    protected ObjectReader createReader(
+        final Class<?> type) {
+
+        return getObjectMapper().readerFor(type).with(getSchema(type));
+    }
+
+    /**
+     * Generate Avro schema of message type.
+     * @param type The message class
+     * @return The Avro schema
+     */
+    private AvroSchema getSchema(
+        final Class<?> type) {
+
+        try {
+
+            return ((AvroMapper) getObjectMapper()).schemaFor(type);
+        }
+        catch (Exception exception) {
+            throw new IllegalArgumentException("Failed to generate Avro schema for " + type.getName() + ": " + exception.getMessage(), exception);
+        }
+
+    }
+
+}
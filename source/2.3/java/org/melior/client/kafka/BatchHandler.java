@@ -0,0 +1,29 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.List;
+
+/**
+ * Processes the batches of messages that have been consumed by a {@code KafkaConsumerClient}.
+ * @author Melior
+ * @since 2.3
+ * @param <T> The message type
+ */
+@FunctionalInterface
+public interface BatchHandler<T> {
+
+    /**
+     * Process batch of messages.
+     * @param messages The message objects, in the order in which they were consumed
+     * @throws Exception if unable to process the batch
+     */
+    public void handle(
+        final List<T> messages) throws Exception;
+
+}
@@ -0,0 +1,280 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.melior.client.exception.RemotingException;
+import org.melior.service.exception.ExceptionType;
+
+/**
+ * Captures the outcome of every message in a batch that was dispatched
+ * by a {@code KafkaClient}.  The outcomes are held in the same order as
+ * the messages were presented to the client.
+ * <p>
+ * When any message in the batch could not be sent, a single aggregated
+ * {@code RemotingException} is made available, with the exception of the
+ * first failed message as its cause and the exceptions of all subsequent
+ * failed messages attached as suppressed exceptions.  The aggregated exception
+ * has the type of the failures when they all agree.
+ * <p>
+ * When the thread is interrupted while it waits for the outcome of the batch,
+ * the outcome of the remaining messages is not known.  Those messages are
+ * reported as pending rather than as failed, as the producer may still deliver
+ * them, and must not simply be sent again.
+ * <p>
+ * Messages that were written to the spool, rather than acknowledged by the
+ * Kafka server, count as sent but are reported separately, and hold no metadata.
+ * @author Melior
+ * @since 2.3
+ */
+public class BatchResult {
+
+    private RecordMetadata[] metadata;
+
+    private RemotingException[] exceptions;
+
+    private boolean[] pending;
+
+    private boolean[] spooled;
+
+    private int failureCount;
+
+    private int pendingCount;
+
+    private int spooledCount;
+
+    private RemotingException exception;
+
+    /**
+     * Constructor.
+     * @param size The number of messages in the batch
+     */
+    BatchResult(
+        final int size) {
+
+        super();
+
+        this.metadata = new RecordMetadata[size];
+
+        this.exceptions = new RemotingException[size];
+
+        this.pending = new boolean[size];
+
+        this.spooled = new boolean[size];
+
+        this.failureCount = 0;
+
+        this.pendingCount = 0;
+
+        this.spooledCount = 0;
+    }
+
+    /**
+     * Record successful outcome of message.
+     * @param index The index of the message in the batch
+     * @param recordMetadata The record metadata
+     */
+    void succeeded(
+        final int index,
+        final RecordMetadata recordMetadata) {
+
+        metadata[index] = recordMetadata;
+    }
+
+    /**
+     * Record that message was written to the spool.
+     * @param index The index of the message in the batch
+     */
+    void spooled(
+        final int index) {
+
+        spooled[index] = true;
+
+        spooledCount++;
+    }
+
+    /**
+     * Record that the outcome of message is not known.
+     * @param index The index of the message in the batch
+     */
+    void pending(
+        final int index) {
+
+        pending[index] = true;
+
+        pendingCount++;
+    }
+
+    /**
+     * Record failed outcome of message.
+     * @param index The index of the message in the batch
+     * @param exception The exception
+     */
+    void failed(
+        final int index,
+        final RemotingException exception) {
+
+        exceptions[index] = exception;
+
+        failureCount++;
+    }
+
+    /**
+     * Get number of messages in the batch.
+     * @return The number of messages
+     */
+    public int size() {
+        return metadata.length;
+    }
+
+    /**
+     * Get number of messages in the batch that could not be sent.
+     * @return The number of failed messages
+     */
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Get number of messages in the batch that were written to the spool, to be
+     * sent to the Kafka server once it is available.
+     * @return The number of spooled messages
+     */
+    public int getSpooledCount() {
+        return spooledCount;
+    }
+
+    /**
+     * Determine whether message was written to the spool rather than acknowledged
+     * by the Kafka server.
+     * @param index The index of the message in the batch
+     * @return true if the message was spooled, false otherwise
+     */
+    public boolean isSpooled(
+        final int index) {
+        return spooled[index];
+    }
+
+    /**
+     * Get number of messages in the batch whose outcome is not known.
+     * @return The number of pending messages
+     */
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Determine whether the outcome of message is not known.  The message may
+     * still be delivered by the producer.
+     * @param index The index of the message in the batch
+     * @return true if the message is pending, false otherwise
+     */
+    public boolean isPending(
+        final int index) {
+        return pending[index];
+    }
+
+    /**
+     * Determine whether all messages in the batch were sent successfully.
+     * @return true if all messages were sent, false otherwise
+     */
+    public boolean isSuccessful() {
+        return (failureCount == 0) && (pendingCount == 0);
+    }
+
+    /**
+     * Get record metadata of message.  If the message could not be sent, if its
+     * outcome is not known, or if the message was written to the spool, then the
+     * returned metadata is {@code null}.
+     * @param index The index of the message in the batch
+     * @return The record metadata
+     */
+    public RecordMetadata getMetadata(
+        final int index) {
+        return metadata[index];
+    }
+
+    /**
+     * Get exception of message.  If the message was sent successfully
+     * then the returned exception is {@code null}.
+     * @param index The index of the message in the batch
+     * @return The exception
+     */
+    public RemotingException getException(
+        final int index) {
+        return exceptions[index];
+    }
+
+    /**
+     * Get aggregated exception of batch.  If all messages in the batch
+     * were sent successfully then the returned exception is {@code null}.
+     * If no message failed but the outcome of some messages is not known
+     * then the returned exception holds no cause.
+     * @return The aggregated exception
+     */
+    public RemotingException getException() {
+
+        RemotingException cause = null;
+
+        if (((failureCount == 0) && (pendingCount == 0)) || (exception != null)) {
+            return exception;
+        }
+
+        if (failureCount == 0) {
+            exception = new RemotingException(ExceptionType.REMOTING_COMMUNICATION, "Outcome of " + pendingCount
+                + " of " + exceptions.length + " messages is not known: thread has been interrupted.");
+
+            return exception;
+        }
+
+        for (int i = 0; i < exceptions.length; i++) {
+
+            if (exceptions[i] == null) {
+                continue;
+            }
+
+            if (cause == null) {
+                cause = exceptions[i];
+
+                exception = new RemotingException(getExceptionType(), "Failed to send " + failureCount
+                    + " of " + exceptions.length + " messages: " + cause.getMessage(), cause);
+            }
+            else {
+                exception.addSuppressed(exceptions[i]);
+            }
+
+        }
+
+        return exception;
+    }
+
+    /**
+     * Get type of the failures in the batch.
+     * @return The type of the failures if they all agree, otherwise {@code REMOTING_COMMUNICATION}
+     */
+    private ExceptionType getExceptionType() {
+
+        ExceptionType type = null;
+
+        for (int i = 0; i < exceptions.length; i++) {
+
+            if (exceptions[i] == null) {
+                continue;
+            }
+
+            if ((type != null) && (type != exceptions[i].getType())) {
+                return ExceptionType.REMOTING_COMMUNICATION;
+            }
+
+            type = exceptions[i].getType();
+        }
+
+        return (type == null) ? ExceptionType.REMOTING_COMMUNICATION : type;
+    }
+
+}
@@ -0,0 +1,40 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+/**
+ * A {@code MessageCodec} that maps messages to CBOR.
+ * Requires {@code jackson-dataformat-cbor}.
+ * @author Melior
+ * @since 2.3
+ */
+public class CborCodec extends JacksonCodec {
+
+    public static final String CONTENT_TYPE = "application/cbor";
+
+    /**
+     * Constructor.
+     */
+    public CborCodec() {
+
+        this(false);
+    }
+
+    /**
+     * Constructor.
+     * @param afterburner The bytecode-generated accessors indicator
+     */
+    public CborCodec(
+        final boolean afterburner) {
+
+        super((afterburner == true) ? accelerate(configure(new CBORMapper())) : configure(new CBORMapper()), CONTENT_TYPE);
+    }
+
+}
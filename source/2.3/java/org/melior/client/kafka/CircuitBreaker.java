@@ -0,0 +1,276 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.common.errors.RetriableException;
+import org.melior.logging.core.Logger;
+import org.melior.logging.core.LoggerFactory;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+
+/**
+ * Stops a {@code KafkaClient} from handing messages to the producer while the Kafka
+ * server is unavailable, so that callers are refused immediately instead of waiting
+ * for the request timeout.
+ * <p>
+ * The circuit breaker trips when the configured number of consecutive messages could
+ * not be delivered because of a time out or another transient failure.  While tripped,
+ * all messages are refused until the backoff period has passed, after which a single
+ * trial message is let through.  If the trial message is delivered then the circuit
+ * breaker resets, otherwise the backoff period is multiplied by the backoff multiplier,
+ * up to the backoff limit, and the circuit breaker trips again.  If the trial message
+ * fails for any other reason, the Kafka server has answered, so the circuit breaker
+ * resets too.  If the trial message is not handed to the producer after all, another
+ * trial message is let through straight away, and if the outcome of the trial message
+ * is not reported within the trial timeout, another trial message is let through then.
+ * @author Melior
+ * @since 2.3
+ */
+final class CircuitBreaker implements ListenableFutureCallback<Object> {
+
+    static final int CLOSED = 0;
+
+    static final int OPEN = 1;
+
+    static final int HALF_OPEN = 2;
+
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private int threshold;
+
+    private long backoffPeriod;
+
+    private float backoffMultiplier;
+
+    private long backoffLimit;
+
+    private long trialTimeout;
+
+    private volatile int state;
+
+    private AtomicInteger failures;
+
+    private long backoff;
+
+    private volatile long retryAt;
+
+    private volatile long trialExpiresAt;
+
+    /**
+     * Constructor.
+     * @param threshold The number of consecutive failures after which the circuit breaker trips
+     * @param backoffPeriod The initial backoff period in milliseconds
+     * @param backoffMultiplier The factor by which the backoff period grows after every failed trial
+     * @param backoffLimit The maximum backoff period in milliseconds, or 0 if unlimited
+     * @param trialTimeout The amount of time in milliseconds to wait for the outcome of a trial message
+     */
+    CircuitBreaker(
+        final int threshold,
+        final long backoffPeriod,
+        final float backoffMultiplier,
+        final long backoffLimit,
+        final long trialTimeout) {
+
+        super();
+
+        this.threshold = threshold;
+
+        this.backoffPeriod = backoffPeriod;
+
+        this.backoffMultiplier = Math.max(1, backoffMultiplier);
+
+        this.backoffLimit = (backoffLimit > 0) ? Math.max(backoffPeriod, backoffLimit) : Long.MAX_VALUE;
+
+        this.trialTimeout = trialTimeout;
+
+        this.state = CLOSED;
+
+        this.failures = new AtomicInteger();
+
+        this.backoff = backoffPeriod;
+    }
+
+    /**
+     * Determine whether message may be handed to the producer.  When the backoff
+     * period has passed, or when the trial message has not reported its outcome
+     * within the trial timeout, only the first caller is allowed through as a trial.
+     * @return {@code CLOSED} if the message may be handed to the producer, {@code HALF_OPEN}
+     * if the message may be handed to the producer as the trial message, or {@code OPEN}
+     * if the message is refused
+     */
+    int admit() {
+
+        String methodName = "admit";
+        long now;
+
+        if (state == CLOSED) {
+            return CLOSED;
+        }
+
+        now = System.nanoTime();
+
+        if ((state == HALF_OPEN) ? (now - trialExpiresAt < 0) : (now - retryAt < 0)) {
+            return OPEN;
+        }
+
+        synchronized (this) {
+
+            if ((state == HALF_OPEN) && (now - trialExpiresAt >= 0)) {
+                logger.warn(methodName, "Outcome of trial message not reported within ", trialTimeout, " ms.  Letting another trial message through.");
+            }
+            else if ((state != OPEN) || (now - retryAt < 0)) {
+                return (state == CLOSED) ? CLOSED : OPEN;
+            }
+
+            state = HALF_OPEN;
+
+            trialExpiresAt = now + TimeUnit.MILLISECONDS.toNanos(trialTimeout);
+
+            return HALF_OPEN;
+        }
+
+    }
+
+    /**
+     * Record that the trial message has not been handed to the producer after all,
+     * so that another trial message is let through straight away.
+     */
+    void abandon() {
+
+        if (state != HALF_OPEN) {
+            return;
+        }
+
+        synchronized (this) {
+
+            if (state == HALF_OPEN) {
+                state = OPEN;
+
+                retryAt = System.nanoTime();
+            }
+
+        }
+
+    }
+
+    /**
+     * Get state of circuit breaker.
+     * @return The state
+     */
+    int getState() {
+        return state;
+    }
+
+    /**
+     * Record that message has been delivered.
+     * @param result The send result
+     */
+    public void onSuccess(
+        final Object result) {
+
+        String methodName = "onSuccess";
+
+        if (failures.get() != 0) {
+            failures.set(0);
+        }
+
+        if (state == CLOSED) {
+            return;
+        }
+
+        synchronized (this) {
+
+            if (state != CLOSED) {
+                state = CLOSED;
+
+                backoff = backoffPeriod;
+
+                logger.info(methodName, "Circuit breaker reset.  Kafka server is available.");
+            }
+
+        }
+
+    }
+
+    /**
+     * Record that message could not be delivered.  Only transient failures count
+     * towards tripping the circuit breaker.  Any other failure of the trial message
+     * resets the circuit breaker, as the Kafka server has answered.
+     * @param exception The exception
+     */
+    public void onFailure(
+        final Throwable exception) {
+
+        int count;
+
+        if (isTransient(exception) == false) {
+
+            if (state == HALF_OPEN) {
+                onSuccess(null);
+            }
+
+            return;
+        }
+
+        count = failures.incrementAndGet();
+
+        synchronized (this) {
+
+            if (state == HALF_OPEN) {
+                backoff = (long) Math.min(backoff * (double) backoffMultiplier, backoffLimit);
+
+                trip(exception);
+            }
+            else if ((state == CLOSED) && (count >= threshold)) {
+                backoff = backoffPeriod;
+
+                trip(exception);
+            }
+
+        }
+
+    }
+
+    /**
+     * Trip circuit breaker.  The caller must hold the lock.
+     * @param exception The exception that tripped the circuit breaker
+     */
+    private void trip(
+        final Throwable exception) {
+
+        String methodName = "trip";
+
+        state = OPEN;
+
+        retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+
+        logger.warn(methodName, "Circuit breaker tripped.  Retrying in ", backoff, " ms.  ", exception.getMessage());
+    }
+
+    /**
+     * Determine whether exception was caused by a transient failure.
+     * @param exception The exception
+     * @return true if the exception was caused by a transient failure, false otherwise
+     */
+    private static boolean isTransient(
+        Throwable exception) {
+
+        while (exception != null) {
+
+            if (exception instanceof RetriableException) {
+                return true;
+            }
+
+            exception = exception.getCause();
+        }
+
+        return false;
+    }
+
+}
@@ -0,0 +1,350 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.BiFunction;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Wraps an {@code SSLEngine} to measure the handshakes that it performs.  The time
+ * from the start of a handshake until the handshake finishes is recorded, along with
+ * whether the handshake resumed an SSL session that was established earlier.  All
+ * other operations are delegated to the wrapped engine unchanged.
+ * @author Melior
+ * @since 2.3
+ */
+final class HandshakeTrackingEngine extends SSLEngine {
+
+    private SSLEngine delegate;
+
+    private SSLStatistics statistics;
+
+    private long startNanos;
+
+    private long startMillis;
+
+    /**
+     * Constructor.
+     * @param delegate The SSL engine to wrap
+     * @param statistics The handshake statistics to record the handshakes in
+     */
+    HandshakeTrackingEngine(
+        final SSLEngine delegate,
+        final SSLStatistics statistics) {
+
+        super(delegate.getPeerHost(), delegate.getPeerPort());
+
+        this.delegate = delegate;
+
+        this.statistics = statistics;
+    }
+
+    /**
+     * Begin handshake.
+     * @throws SSLException if unable to begin the handshake
+     */
+    public void beginHandshake() throws SSLException {
+
+        startNanos = System.nanoTime();
+
+        startMillis = System.currentTimeMillis();
+
+        delegate.beginHandshake();
+    }
+
+    /**
+     * Wrap application data into network data.
+     * @param srcs The buffers that hold the application data
+     * @param offset The offset of the first buffer
+     * @param length The number of buffers
+     * @param dst The buffer that receives the network data
+     * @return The result of the operation
+     * @throws SSLException if unable to wrap the data
+     */
+    public SSLEngineResult wrap(
+        final ByteBuffer[] srcs,
+        final int offset,
+        final int length,
+        final ByteBuffer dst) throws SSLException {
+
+        return track(delegate.wrap(srcs, offset, length, dst));
+    }
+
+    /**
+     * Unwrap network data into application data.
+     * @param src The buffer that holds the network data
+     * @param dsts The buffers that receive the application data
+     * @param offset The offset of the first buffer
+     * @param length The number of buffers
+     * @return The result of the operation
+     * @throws SSLException if unable to unwrap the data
+     */
+    public SSLEngineResult unwrap(
+        final ByteBuffer src,
+        final ByteBuffer[] dsts,
+        final int offset,
+        final int length) throws SSLException {
+
+        return track(delegate.unwrap(src, dsts, offset, length));
+    }
+
+    /**
+     * Record the handshake if the operation finished it.
+     * @param result The result of the operation
+     * @return The result of the operation
+     */
+    private SSLEngineResult track(
+        final SSLEngineResult result) {
+
+        if ((startNanos != 0) && (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED)) {
+            statistics.record(System.nanoTime() - startNanos, delegate.getSession().getCreationTime() < startMillis);
+
+            startNanos = 0;
+        }
+
+        return result;
+    }
+
+    /**
+     * Get delegated task.
+     * @return The delegated task, or {@code null} if there is none
+     */
+    public Runnable getDelegatedTask() {
+        return delegate.getDelegatedTask();
+    }
+
+    /**
+     * Close inbound side of the engine.
+     * @throws SSLException if the peer did not close the connection properly
+     */
+    public void closeInbound() throws SSLException {
+        delegate.closeInbound();
+    }
+
+    /**
+     * Determine whether the inbound side of the engine is done.
+     * @return true if the inbound side is done, false otherwise
+     */
+    public boolean isInboundDone() {
+        return delegate.isInboundDone();
+    }
+
+    /**
+     * Close outbound side of the engine.
+     */
+    public void closeOutbound() {
+        delegate.closeOutbound();
+    }
+
+    /**
+     * Determine whether the outbound side of the engine is done.
+     * @return true if the outbound side is done, false otherwise
+     */
+    public boolean isOutboundDone() {
+        return delegate.isOutboundDone();
+    }
+
+    /**
+     * Get supported cipher suites.
+     * @return The supported cipher suites
+     */
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+
+    /**
+     * Get enabled cipher suites.
+     * @return The enabled cipher suites
+     */
+    public String[] getEnabledCipherSuites() {
+        return delegate.getEnabledCipherSuites();
+    }
+
+    /**
+     * Set enabled cipher suites.
+     * @param suites The enabled cipher suites
+     */
+    public void setEnabledCipherSuites(
+        final String[] suites) {
+        delegate.setEnabledCipherSuites(suites);
+    }
+
+    /**
+     * Get supported protocols.
+     * @return The supported protocols
+     */
+    public String[] getSupportedProtocols() {
+        return delegate.getSupportedProtocols();
+    }
+
+    /**
+     * Get enabled protocols.
+     * @return The enabled protocols
+     */
+    public String[] getEnabledProtocols() {
+        return delegate.getEnabledProtocols();
+    }
+
+    /**
+     * Set enabled protocols.
+     * @param protocols The enabled protocols
+     */
+    public void setEnabledProtocols(
+        final String[] protocols) {
+        delegate.setEnabledProtocols(protocols);
+    }
+
+    /**
+     * Get SSL session.
+     * @return The SSL session
+     */
+    public SSLSession getSession() {
+        return delegate.getSession();
+    }
+
+    /**
+     * Get SSL session that is being established.
+     * @return The SSL session, or {@code null} if no handshake is in progress
+     */
+    public SSLSession getHandshakeSession() {
+        return delegate.getHandshakeSession();
+    }
+
+    /**
+     * Get handshake status.
+     * @return The handshake status
+     */
+    public SSLEngineResult.HandshakeStatus getHandshakeStatus() {
+        return delegate.getHandshakeStatus();
+    }
+
+    /**
+     * Set client mode.
+     * @param mode true if the engine acts as a client, false otherwise
+     */
+    public void setUseClientMode(
+        final boolean mode) {
+        delegate.setUseClientMode(mode);
+    }
+
+    /**
+     * Determine whether the engine acts as a client.
+     * @return true if the engine acts as a client, false otherwise
+     */
+    public boolean getUseClientMode() {
+        return delegate.getUseClientMode();
+    }
+
+    /**
+     * Set whether client authentication is required.
+     * @param need true if client authentication is required, false otherwise
+     */
+    public void setNeedClientAuth(
+        final boolean need) {
+        delegate.setNeedClientAuth(need);
+    }
+
+    /**
+     * Determine whether client authentication is required.
+     * @return true if client authentication is required, false otherwise
+     */
+    public boolean getNeedClientAuth() {
+        return delegate.getNeedClientAuth();
+    }
+
+    /**
+     * Set whether client authentication is requested.
+     * @param want true if client authentication is requested, false otherwise
+     */
+    public void setWantClientAuth(
+        final boolean want) {
+        delegate.setWantClientAuth(want);
+    }
+
+    /**
+     * Determine whether client authentication is requested.
+     * @return true if client authentication is requested, false otherwise
+     */
+    public boolean getWantClientAuth() {
+        return delegate.getWantClientAuth();
+    }
+
+    /**
+     * Set whether new SSL sessions may be established.
+     * @param flag true if new sessions may be established, false otherwise
+     */
+    public void setEnableSessionCreation(
+        final boolean flag) {
+        delegate.setEnableSessionCreation(flag);
+    }
+
+    /**
+     * Determine whether new SSL sessions may be established.
+     * @return true if new sessions may be established, false otherwise
+     */
+    public boolean getEnableSessionCreation() {
+        return delegate.getEnableSessionCreation();
+    }
+
+    /**
+     * Get SSL parameters.
+     * @return The SSL parameters
+     */
+    public SSLParameters getSSLParameters() {
+        return delegate.getSSLParameters();
+    }
+
+    /**
+     * Set SSL parameters.
+     * @param params The SSL parameters
+     */
+    public void setSSLParameters(
+        final SSLParameters params) {
+        delegate.setSSLParameters(params);
+    }
+
+    /**
+     * Get negotiated application protocol.
+     * @return The application protocol
+     */
+    public String getApplicationProtocol() {
+        return delegate.getApplicationProtocol();
+    }
+
+    /**
+     * Get application protocol that is being negotiated.
+     * @return The application protocol
+     */
+    public String getHandshakeApplicationProtocol() {
+        return delegate.getHandshakeApplicationProtocol();
+    }
+
+    /**
+     * Set application protocol selector.
+     * @param selector The application protocol selector
+     */
+    public void setHandshakeApplicationProtocolSelector(
+        final BiFunction<SSLEngine, List<String>, String> selector) {
+        delegate.setHandshakeApplicationProtocolSelector(selector);
+    }
+
+    /**
+     * Get application protocol selector.
+     * @return The application protocol selector
+     */
+    public BiFunction<SSLEngine, List<String>, String> getHandshakeApplicationProtocolSelector() {
+        return delegate.getHandshakeApplicationProtocolSelector();
+    }
+
+}
@@ -0,0 +1,412 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * Limits the number of messages and the number of bytes that a {@code KafkaClient}
+ * has in flight to the Kafka server, and applies the overload policy when a message
+ * would exceed either limit.  A permit for a message is held from the moment that the
+ * message is handed to the producer until the outcome of the message is known.
+ * Permits are reserved under a lock, but the record is handed to the producer
+ * after the lock has been released, as the producer may report the outcome of a
+ * record, which releases its permits, on the thread that hands over the record.
+ * <p>
+ * A message that is larger than the byte limit is let through when no other
+ * messages are in flight, so that it does not wait forever.
+ * @author Melior
+ * @since 2.3
+ */
+final class InFlightLimiter {
+
+    private int maxMessages;
+
+    private long maxBytes;
+
+    private OverloadPolicy policy;
+
+    private long timeout;
+
+    private int stagingCapacity;
+
+    private Function<ProducerRecord<String, byte[]>, ListenableFuture<SendResult<String, byte[]>>> sender;
+
+    private ReentrantLock lock;
+
+    private Condition released;
+
+    private int messages;
+
+    private long bytes;
+
+    private ArrayDeque<Staged> staged;
+
+    private ExecutorService stagingExecutor;
+
+    /**
+     * Constructor.
+     * @param maxMessages The maximum number of messages in flight, or 0 if unlimited
+     * @param maxBytes The maximum number of bytes in flight, or 0 if unlimited
+     * @param policy The overload policy
+     * @param timeout The amount of time in milliseconds that a caller may be blocked
+     * @param sender The function that hands a record to the producer
+     */
+    InFlightLimiter(
+        final int maxMessages,
+        final long maxBytes,
+        final OverloadPolicy policy,
+        final long timeout,
+        final Function<ProducerRecord<String, byte[]>, ListenableFuture<SendResult<String, byte[]>>> sender) {
+
+        super();
+
+        this.maxMessages = (maxMessages > 0) ? maxMessages : Integer.MAX_VALUE;
+
+        this.maxBytes = (maxBytes > 0) ? maxBytes : Long.MAX_VALUE;
+
+        this.policy = policy;
+
+        this.timeout = timeout;
+
+        this.stagingCapacity = (maxMessages > 0) ? maxMessages : 1000;
+
+        this.sender = sender;
+
+        this.lock = new ReentrantLock();
+
+        this.released = lock.newCondition();
+
+        this.staged = new ArrayDeque<Staged>();
+
+        if (policy == OverloadPolicy.DROP_OLDEST) {
+
+            this.stagingExecutor = Executors.newSingleThreadExecutor(runnable -> {
+
+                Thread thread;
+
+                thread = new Thread(runnable, "kafka-staging");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+
+    }
+
+    /**
+     * Hand record to the producer when the limits allow, applying the overload
+     * policy when they do not.  The permits of a record that the producer refuses
+     * are returned straight away.
+     * @param record The record
+     * @return The future outcome of the record
+     * @throws OverloadException if the record is refused
+     */
+    ListenableFuture<SendResult<String, byte[]>> submit(
+        final ProducerRecord<String, byte[]> record) throws OverloadException {
+
+        int size;
+        ListenableFuture<SendResult<String, byte[]>> stagedResult;
+
+        size = (record.value() == null) ? 0 : record.value().length;
+
+        stagedResult = admit(record, size);
+
+        if (stagedResult != null) {
+            return stagedResult;
+        }
+
+        return send(record, size);
+    }
+
+    /**
+     * Reserve permits for record when the limits allow, applying the overload
+     * policy when they do not.
+     * @param record The record
+     * @param size The size of the message in bytes
+     * @return {@code null} if the permits have been reserved, or the future outcome of the record if it has been staged
+     * @throws OverloadException if the record is refused
+     */
+    private ListenableFuture<SendResult<String, byte[]>> admit(
+        final ProducerRecord<String, byte[]> record,
+        final int size) throws OverloadException {
+
+        long remaining;
+        SettableListenableFuture<SendResult<String, byte[]>> stagedResult;
+        Staged dropped = null;
+
+        lock.lock();
+
+        try {
+
+            if ((staged.isEmpty() == true) && (reserve(size) == true)) {
+                return null;
+            }
+
+            switch (policy) {
+
+            case BLOCK:
+                remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+                while (reserve(size) == false) {
+
+                    if (remaining <= 0) {
+                        throw new OverloadException("In-flight limit reached.  Message refused after waiting " + timeout + " ms.");
+                    }
+
+                    remaining = released.awaitNanos(remaining);
+                }
+
+                return null;
+
+            case DROP_OLDEST:
+
+                if (staged.size() >= stagingCapacity) {
+                    dropped = staged.removeFirst();
+                }
+
+                stagedResult = new SettableListenableFuture<SendResult<String, byte[]>>();
+
+                staged.add(new Staged(record, size, stagedResult));
+
+                return stagedResult;
+
+            default:
+                throw new OverloadException("In-flight limit reached.  Message refused.");
+            }
+
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+
+            throw new OverloadException("Thread has been interrupted while waiting for in-flight limit.");
+        }
+        finally {
+            lock.unlock();
+
+            if (dropped != null) {
+                dropped.result.setException(new OverloadException("In-flight limit reached.  Oldest staged message discarded."));
+            }
+
+        }
+
+    }
+
+    /**
+     * Get number of message permits that are available.
+     * @return The number of message permits
+     */
+    double getAvailableMessages() {
+        return (maxMessages == Integer.MAX_VALUE) ? Double.NaN : maxMessages - messages;
+    }
+
+    /**
+     * Get number of byte permits that are available.
+     * @return The number of byte permits
+     */
+    double getAvailableBytes() {
+        return (maxBytes == Long.MAX_VALUE) ? Double.NaN : maxBytes - bytes;
+    }
+
+    /**
+     * Close limiter.  Any messages that are still staged are discarded.
+     */
+    void close() {
+
+        List<Staged> discarded;
+
+        lock.lock();
+
+        try {
+
+            discarded = new ArrayList<Staged>(staged);
+
+            staged.clear();
+        }
+        finally {
+            lock.unlock();
+        }
+
+        for (Staged message : discarded) {
+            message.result.setException(new OverloadException("Client closed.  Staged message discarded."));
+        }
+
+        if (stagingExecutor != null) {
+            stagingExecutor.shutdown();
+        }
+
+    }
+
+    /**
+     * Reserve permits for message.  The caller must hold the lock.
+     * @param size The size of the message in bytes
+     * @return true if the permits have been reserved, false otherwise
+     */
+    private boolean reserve(
+        final int size) {
+
+        if ((messages >= maxMessages) || ((bytes + size > maxBytes) && (messages > 0))) {
+            return false;
+        }
+
+        messages++;
+
+        bytes += size;
+
+        return true;
+    }
+
+    /**
+     * Hand record to the producer, for which permits have been reserved.  The
+     * permits of the message are released when the outcome of the message is
+     * known, or straight away if the producer refuses the record.  The caller
+     * must not hold the lock.
+     * @param record The record
+     * @param size The size of the message in bytes
+     * @return The future outcome of the record
+     */
+    private ListenableFuture<SendResult<String, byte[]>> send(
+        final ProducerRecord<String, byte[]> record,
+        final int size) {
+
+        ListenableFuture<SendResult<String, byte[]>> sendResult;
+
+        try {
+
+            sendResult = sender.apply(record);
+        }
+        catch (RuntimeException exception) {
+            release(size);
+
+            throw exception;
+        }
+
+        sendResult.addCallback(result -> release(size), exception -> release(size));
+
+        return sendResult;
+    }
+
+    /**
+     * Release permits of message.  Any staged messages for which permits
+     * are now available are sent on the staging thread.
+     * @param size The size of the message in bytes
+     */
+    private void release(
+        final int size) {
+
+        List<Staged> ready;
+
+        lock.lock();
+
+        try {
+
+            messages--;
+
+            bytes -= size;
+
+            released.signalAll();
+
+            ready = takeReady();
+        }
+        finally {
+            lock.unlock();
+        }
+
+        if (ready.isEmpty() == false) {
+            stagingExecutor.execute(() -> ready.forEach(this::forward));
+        }
+
+    }
+
+    /**
+     * Take the staged messages for which permits are available, in the order
+     * in which they were staged.  The caller must hold the lock.
+     * @return The staged messages
+     */
+    private List<Staged> takeReady() {
+
+        List<Staged> ready;
+
+        if ((staged.isEmpty() == true) || (reserve(staged.peekFirst().size) == false)) {
+            return Collections.emptyList();
+        }
+
+        ready = new ArrayList<Staged>();
+        ready.add(staged.removeFirst());
+
+        while ((staged.isEmpty() == false) && (reserve(staged.peekFirst().size) == true)) {
+            ready.add(staged.removeFirst());
+        }
+
+        return ready;
+    }
+
+    /**
+     * Hand staged message to the producer, for which permits have been reserved.
+     * @param message The staged message
+     */
+    private void forward(
+        final Staged message) {
+
+        try {
+
+            send(message.record, message.size).addCallback(message.result::set, message.result::setException);
+        }
+        catch (RuntimeException exception) {
+            message.result.setException(exception);
+        }
+
+    }
+
+    /**
+     * A message that is waiting for permits.
+     */
+    private static final class Staged {
+
+        private ProducerRecord<String, byte[]> record;
+
+        private int size;
+
+        private SettableListenableFuture<SendResult<String, byte[]>> result;
+
+        /**
+         * Constructor.
+         * @param record The record
+         * @param size The size of the message in bytes
+         * @param result The future outcome of the message
+         */
+        Staged(
+            final ProducerRecord<String, byte[]> record,
+            final int size,
+            final SettableListenableFuture<SendResult<String, byte[]>> result) {
+
+            super();
+
+            this.record = record;
+
+            this.size = size;
+
+            this.result = result;
+        }
+
+    }
+
+}
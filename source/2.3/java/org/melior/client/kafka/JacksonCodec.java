@@ -0,0 +1,303 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+
+/**
+ * A {@code MessageCodec} that maps messages with a Jackson {@code ObjectMapper},
+ * which may be configured for any data format that Jackson supports.  An object
+ * writer and an object reader are built only once for every message type, so that
+ * the serializers are not looked up again for every message.
+ * <p>
+ * Messages are written into an output buffer that is reused by the current thread,
+ * and only the encoded bytes are copied out of it, so that encoding a message only
+ * allocates the payload itself.  A thread retains at most 64 KB; a larger message
+ * grows a one-off buffer that is dropped as soon as the message has been encoded.
+ * @author Melior
+ * @since 2.3
+ */
+public class JacksonCodec implements MessageCodec {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<OutputBuffer> buffers = ThreadLocal.withInitial(OutputBuffer::new);
+
+    private ObjectMapper objectMapper;
+
+    private String contentType;
+
+    private Map<Class<?>, ObjectWriter> writers;
+
+    private Map<Class<?>, ObjectReader> readers;
+
+    /**
+     * Constructor.
+     * @param objectMapper The object mapper
+     * @param contentType The content type
+     */
+    public JacksonCodec(
+        final ObjectMapper objectMapper,
+        final String contentType) {
+
+        super();
+
+        this.objectMapper = objectMapper;
+
+        this.contentType = contentType;
+
+        this.writers = new ConcurrentHashMap<Class<?>, ObjectWriter>();
+
+        this.readers = new ConcurrentHashMap<Class<?>, ObjectReader>();
+    }
+
+    /**
+     * Configure object mapper in the same way as the object mapper that is
+     * shared by the Kafka clients.
+     * @param <M> The object mapper type
+     * @param objectMapper The object mapper
+     * @return The object mapper
+     */
+    protected static <M extends ObjectMapper> M configure(
+        final M objectMapper) {
+
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        return objectMapper;
+    }
+
+    /**
+     * Enable bytecode-generated accessors on object mapper, which replace the reflection
+     * that is otherwise used to get and set the properties of messages.
+     * Requires {@code jackson-module-afterburner}.
+     * @param <M> The object mapper type
+     * @param objectMapper The object mapper
+     * @return The object mapper
+     */
+    protected static <M extends ObjectMapper> M accelerate(
+        final M objectMapper) {
+
+        objectMapper.registerModule(Afterburner.create());
+
+        return objectMapper;
+    }
+
+    /**
+     * Get object mapper.
+     * @return The object mapper
+     */
+    protected ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * Get content type of the payloads that the codec produces.
+     * @return The content type
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Encode message.
+     * @param message The message object
+     * @return The message payload
+     * @throws Exception if unable to encode the message
+     */
+    public byte[] encode(
+        final Object message) throws Exception {
+
+        OutputBuffer buffer;
+        byte[] prefix;
+        byte[] payload;
+        byte[] prefixed;
+
+        if (message == null) {
+            return objectMapper.writeValueAsBytes(null);
+        }
+
+        prefix = getPrefix(message.getClass());
+
+        buffer = buffers.get();
+
+        if (buffer.inUse == true) {
+            payload = getWriter(message.getClass()).writeValueAsBytes(message);
+
+            if (prefix == null) {
+                return payload;
+            }
+
+            prefixed = new byte[prefix.length + payload.length];
+            System.arraycopy(prefix, 0, prefixed, 0, prefix.length);
+            System.arraycopy(payload, 0, prefixed, prefix.length, payload.length);
+
+            return prefixed;
+        }
+
+        buffer.inUse = true;
+
+        try {
+
+            if (prefix != null) {
+                buffer.write(prefix, 0, prefix.length);
+            }
+
+            getWriter(message.getClass()).writeValue(buffer, message);
+
+            return buffer.toByteArray();
+        }
+        finally {
+            buffer.release();
+        }
+
+    }
+
+    /**
+     * Decode message.
+     * @param <T> The message type
+     * @param payload The message payload
+     * @param type The message class
+     * @return The message object
+     * @throws Exception if unable to decode the message
+     */
+    public <T> T decode(
+        final byte[] payload,
+        final Class<T> type) throws Exception {
+
+        return getReader(type).readValue(payload);
+    }
+
+    /**
+     * Get prefix that is written ahead of the encoded messages of message type.
+     * @param type The message class
+     * @return The prefix, or {@code null} if no prefix is written
+     */
+    protected byte[] getPrefix(
+        final Class<?> type) {
+        return null;
+    }
+
+    /**
+     * Get object writer for message type.
+     * @param type The message class
+     * @return The object writer
+     */
+    protected ObjectWriter getWriter(
+        final Class<?> type) {
+
+        ObjectWriter writer;
+
+        writer = writers.get(type);
+
+        if (writer == null) {
+            writer = writers.computeIfAbsent(type, this::createWriter);
+        }
+
+        return writer;
+    }
+
+    /**
+     * Get object reader for message type.
+     * @param type The message class
+     * @return The object reader
+     */
+    protected ObjectReader getReader(
+        final Class<?> type) {
+
+        ObjectReader reader;
+
+        reader = readers.get(type);
+
+        if (reader == null) {
+            reader = readers.computeIfAbsent(type, this::createReader);
+        }
+
+        return reader;
+    }
+
+    /**
+     * Create object writer for message type.
+     * @param type The message class
+     * @return The object writer
+     */
+    protected ObjectWriter createWriter(
+        final Class<?> type) {
+
+        return objectMapper.writerFor(type);
+    }
+
+    /**
+     * Create object reader for message type.
+     * @param type The message class
+     * @return The object reader
+     */
+    protected ObjectReader createReader(
+        final Class<?> type) {
+
+        return objectMapper.readerFor(type);
+    }
+
+    /**
+     * An output buffer that is reused by a thread.
+     */
+    private static final class OutputBuffer extends ByteArrayOutputStream {
+
+        private boolean inUse;
+
+        /**
+         * Constructor.
+         */
+        OutputBuffer() {
+
+            super(BUFFER_SIZE);
+        }
+
+        /**
+         * Release buffer for reuse.  A buffer that has grown beyond the
+         * retained size is dropped and replaced by a buffer of the initial size.
+         */
+        void release() {
+
+            if (buf.length > MAX_BUFFER_SIZE) {
+                buf = new byte[BUFFER_SIZE];
+            }
+
+            count = 0;
+
+            inUse = false;
+        }
+
+    }
+
+    /**
+     * Creates the Afterburner module.  The module is only loaded when
+     * bytecode-generated accessors are enabled, as the library is optional.
+     */
+    private static final class Afterburner {
+
+        /**
+         * Create module.
+         * @return The module
+         */
+        static Module create() {
+            return new AfterburnerModule();
+        }
+
+    }
+
+}
@@ -0,0 +1,41 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+
+/**
+ * A {@code MessageCodec} that maps messages to JSON, with the object mapper
+ * that is shared by the Kafka clients.
+ * @author Melior
+ * @since 2.3
+ */
+public class JsonCodec extends JacksonCodec {
+
+    public static final String CONTENT_TYPE = "application/json";
+
+    /**
+     * Constructor.
+     */
+    public JsonCodec() {
+
+        this(false);
+    }
+
+    /**
+     * Constructor.  When bytecode-generated accessors are enabled, the codec uses
+     * a copy of the shared object mapper, with the accessors enabled on it.
+     * @param afterburner The bytecode-generated accessors indicator
+     */
+    public JsonCodec(
+        final boolean afterburner) {
+
+        super((afterburner == true) ? accelerate(ObjectMapperFactory.getObjectMapper().copy())
+            : ObjectMapperFactory.getObjectMapper(), CONTENT_TYPE);
+    }
+
+}
@@ -7,37 +7,59 @@
         Service Harness
 */
 package org.melior.client.kafka;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import org.apache.kafka.clients.CommonClientConfigs;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.common.config.SaslConfigs;
-import org.apache.kafka.common.config.SslConfigs;
-import org.apache.kafka.common.security.plain.PlainLoginModule;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.ApiException;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.melior.client.exception.RemotingException;
 import org.melior.context.service.ServiceContext;
 import org.melior.context.transaction.TransactionContext;
 import org.melior.logging.core.Logger;
 import org.melior.logging.core.LoggerFactory;
-import org.melior.logging.core.StreamSink;
 import org.melior.service.exception.ExceptionType;
-import org.melior.util.collection.NoNullsHashMap;
 import org.melior.util.object.ObjectUtil;
-import org.melior.util.string.StringUtil;
 import org.melior.util.time.Timer;
-import org.springframework.boot.logging.LogLevel;
+import org.reactivestreams.Publisher;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.kafka.KafkaException;
-import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.util.StringUtils;
 import org.springframework.util.concurrent.ListenableFuture;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.sun.security.auth.module.Krb5LoginModule;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import reactor.core.publisher.Flux;
 
 /**
  * Implements an easy to use, auto-configuring Kafka client with connection
@@ -47,42 +69,119 @@ import com.sun.security.auth.module.Krb5LoginModule;
  * to the Kafka server.  The client automatically converts any exception that
  * occurs during communication with the Kafka server into a standard
  * {@code RemotingException}.
+ * <p>
+ * When a spool directory is configured, messages that the producer refuses or
+ * cannot deliver in time because the Kafka server is unavailable are written to
+ * a journal on local disk instead, and are replayed in order by a background
+ * thread once the Kafka server is available again.  While the journal holds
+ * messages, new messages are written to the journal as well, so that they are
+ * not delivered ahead of the messages that are waiting to be replayed.
+ * <p>
+ * Without a spool directory, a circuit breaker trips when a number of consecutive
+ * messages could not be delivered because the Kafka server is unavailable.  While
+ * the circuit breaker is tripped, messages are refused straight away, and a single
+ * trial message is let through once the backoff period has passed.
+ * <p>
+ * Traffic lanes may be configured, each of which is backed by its own producer
+ * with its own settings, so that latency-critical messages do not queue behind
+ * large or bulk messages.  A lane is selected by name when a message is sent,
+ * or otherwise by the size of the message payload.
+ * <p>
+ * When a transactional identifier prefix is configured, batches of messages may be
+ * sent atomically in Kafka transactions.  Transactions run on a small pool of
+ * transactional producers, so that concurrent callers do not wait for each other,
+ * and may be grouped so that many small batches share a single commit.  Messages
+ * that are sent in transactions bypass the spool, the circuit breaker, the in-flight
+ * limit and the traffic lanes.
  * @author Melior
  * @since 2.3
  */
-@SuppressWarnings("restriction")
-public class KafkaClient extends KafkaClientConfig {
+public class KafkaClient extends KafkaClientSupport implements SmartLifecycle {
+
+    private static final int SPOOL_MAX_BLOCK = 100;
+
+    private static final int REPLAY_BATCH_SIZE = 500;
+
+    private static final long MIN_REPLAY_BACKOFF = 100;
+
+    private static final String DEAD_LETTER_DIRECTORY = "dead-letter";
+
+    private static final String DEFAULT_LANE = "default";
+
+    private static final int PHASE = Integer.MAX_VALUE - 2048;
+
+    private static final ThreadLocal<Serialization> serializations = ThreadLocal.withInitial(Serialization::new);
 
     private Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private boolean async;
 
-    private boolean kerberos;
+    private ProducerProfile profile;
+
+    private boolean eager;
+
+    private MeterRegistry meterRegistry;
+
+    private volatile boolean running;
+
+    private volatile boolean closed;
+
+    private KafkaClientMetrics metrics;
 
-    private boolean ssl;
+    private MessageCodec codec;
 
-    private ObjectMapper objectMapper;
+    private ProducerStripes stripes;
 
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private IntFunction<ProducerFactory<String, byte[]>> fixedProducerFactories;
+
+    private volatile KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    private volatile SpoolJournal spool;
+
+    private SpoolJournal deadLetters;
+
+    private Lane defaultLane;
+
+    private Map<String, Lane> lanes;
+
+    private Lane[] sizedLanes;
+
+    private CircuitBreaker breaker;
+
+    private TransactionalProducerPool transactions;
+
+    private volatile Thread replayThread;
+
+    private long instanceId;
 
     /**
      * Constructor.
      * @param async The asynchronous transport indicator
      * @param kerberos The Kerberos indicator
      * @param ssl The SSL indicator
+     * @param profile The producer profile
+     * @param eager The eager initialization indicator
+     * @param meterRegistry The meter registry, or {@code null} if metrics are not required
      */
     KafkaClient(
         final boolean async,
         final boolean kerberos,
-        final boolean ssl) {
+        final boolean ssl,
+        final ProducerProfile profile,
+        final boolean eager,
+        final MeterRegistry meterRegistry) {
 
-        super();
+        super(kerberos, ssl);
 
         this.async = async;
 
-        this.kerberos = kerberos;
+        this.profile = profile;
+
+        this.eager = eager;
+
+        this.meterRegistry = meterRegistry;
 
-        this.ssl = ssl;
+        this.instanceId = ThreadLocalRandom.current().nextLong();
     }
 
     /**
@@ -98,94 +197,128 @@ public class KafkaClient extends KafkaClientConfig {
     }
 
     /**
-     * Initialize client.
+     * Set producer factory.  The client uses the specified producer factory
+     * instead of obtaining a shared one, which allows the client to be driven
+     * against an in-process stand-in for the Kafka server.
+     * @param producerFactory The producer factory
+     */
+    void setProducerFactory(
+        final ProducerFactory<String, byte[]> producerFactory) {
+        this.fixedProducerFactories = stripe -> producerFactory;
+    }
+
+    /**
+     * Set producer factories.  The client uses the producer factory that the
+     * specified function returns for every producer stripe, instead of obtaining
+     * shared ones.
+     * @param producerFactories The function that returns the producer factory of a stripe
+     */
+    void setProducerFactories(
+        final IntFunction<ProducerFactory<String, byte[]>> producerFactories) {
+        this.fixedProducerFactories = producerFactories;
+    }
+
+    /**
+     * Initialize client for sending messages to the specified topic.
+     * @param topic The topic
      * @throws RemotingException if unable to initialize the client
      */
+    private void initialize(
+        final String topic) throws RemotingException {
+
+        if (StringUtils.hasLength(topic) == false) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Topic must be configured.");
+        }
+
+        initialize();
+    }
+
+    /**
+     * Initialize client.
+     * @throws RemotingException if the client is closed, or if unable to initialize the client
+     */
     private void initialize() throws RemotingException {
 
-        String protocol;
-        String moduleName;
-        java.util.Map<String, Object> properties;
-        ProducerFactory<String, String> producerFactory;
+        if (closed == true) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Kafka client is closed.");
+        }
 
         if (kafkaTemplate != null) {
             return;
         }
 
-        if (StringUtils.hasLength(getUrl()) == false) {
-            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "URL must be configured.");
-        }
+        build();
+    }
+
+    /**
+     * Build producer.  Concurrent callers are serialized, so that the
+     * producer is only built once.
+     * @throws RemotingException if the client is closed, or if unable to build the producer
+     */
+    private synchronized void build() throws RemotingException {
+
+        Map<String, Object> properties;
+        Map<String, Map<String, Object>> laneProperties;
+        ProducerStripes producerStripes;
+        InFlightLimiter limiter = null;
+        Lane lane;
 
-        if ((kerberos == true) && (getKerberosConfig() == null)) {
-            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Kerberos configuration must be configured.");
+        if (closed == true) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Kafka client is closed.");
         }
 
-        if ((kerberos == true) && (getKerberosConfig().isFile() == false)) {
-            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Kerberos configuration not found.");
+        if (kafkaTemplate != null) {
+            return;
         }
 
-        if (StringUtils.hasLength(getUsername()) == false) {
-            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "User name must be configured.");
+        validateConnection();
+
+        if ((getPartitioningFairness() < 0) || (getPartitioningFairness() > 1)) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Partitioning fairness must be between 0 and 1.");
         }
 
-        if ((getKeytab() == null) && (StringUtils.hasLength(getPassword()) == false)) {
-            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Keytab or password must be configured.");
+        if (getOverloadTimeout() < 0) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Overload timeout must not be negative.");
         }
 
-        if ((getKeytab() != null) && (getKeytab().isFile() == false)) {
-            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Keytab not found.");
+        if (getProducerStripes() < 1) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Producer stripes must be at least 1.");
         }
 
-        if (StringUtils.hasLength(getTopic()) == false) {
-            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Topic must be configured.");
+        if ((StringUtils.hasLength(getSpool()) == true) && (getSpoolSegmentSize() > getSpoolLimit())) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Spool segment size must not exceed spool limit.");
         }
 
-        objectMapper = new ObjectMapper();
-        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        for (Map.Entry<String, KafkaLaneConfig> entry : getLanes().entrySet()) {
 
-        try {
+            if (DEFAULT_LANE.equals(entry.getKey()) == true) {
+                throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Traffic lane name " + DEFAULT_LANE + " is reserved.");
+            }
 
-            if (kerberos == true) {
-                System.setProperty("java.security.krb5.conf", getKerberosConfig().getFile().getAbsolutePath());
+            if (entry.getValue().getMinPayloadSize() < 0) {
+                throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Minimum payload size of traffic lane " + entry.getKey() + " must not be negative.");
             }
 
-            protocol = ((kerberos == false) ? "" : "SASL_") + ((ssl == false) ? "PLAINTEXT" : "SSL");
+        }
+
+        try {
 
-            moduleName = (kerberos == false) ? PlainLoginModule.class.getName() : Krb5LoginModule.class.getName();
+            codec = MessageCodecs.forName(getCodec(), isAfterburner());
+        }
+        catch (IllegalArgumentException exception) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, exception.getMessage(), exception);
+        }
 
-            properties = new NoNullsHashMap<String, Object>();
-            properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-            properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-            properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, StringUtil.replaceAll(getUrl(), "tcp://", ""));
-            properties.put(ProducerConfig.CLIENT_ID_CONFIG, ServiceContext.getServiceName());
-            properties.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, getRequestTimeout());
-            properties.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, getRequestTimeout());
-            properties.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, getRequestTimeout());
-            properties.put(ProducerConfig.RECONNECT_BACKOFF_MS_CONFIG, getBackoffPeriod());
-            properties.put(ProducerConfig.RECONNECT_BACKOFF_MAX_MS_CONFIG, getBackoffLimit());
-            properties.put(ProducerConfig.CONNECTIONS_MAX_IDLE_MS_CONFIG, getInactivityTimeout());
-            properties.put(CommonClientConfigs.SECURITY_PROTOCOL_CONFIG, protocol);
-            properties.put(SaslConfigs.SASL_KERBEROS_SERVICE_NAME, (kerberos == false) ? null : getServiceName());
-            properties.put(SaslConfigs.SASL_JAAS_CONFIG, buildJaasConfig(moduleName));
+        laneProperties = new LinkedHashMap<String, Map<String, Object>>();
 
-            if (ssl == true) {
+        try {
 
-                properties.put(SslConfigs.SSL_ENGINE_FACTORY_CLASS_CONFIG, SSLEngineFactory.class);
-                properties.put(SslConfigs.SSL_KEYSTORE_TYPE_CONFIG, getKeyStoreType());
-                properties.put(SslConfigs.SSL_KEYSTORE_LOCATION_CONFIG, (getKeyStore() == null) ? null : getKeyStore().getURL().toString());
-                properties.put(SslConfigs.SSL_KEYSTORE_PASSWORD_CONFIG, getKeyStorePassword());
-                properties.put(SslConfigs.SSL_KEY_PASSWORD_CONFIG, ObjectUtil.coalesce(getKeyPassword(), getKeyStorePassword()));
-                properties.put(SslConfigs.SSL_TRUSTSTORE_TYPE_CONFIG, getTrustStoreType());
-                properties.put(SslConfigs.SSL_TRUSTSTORE_LOCATION_CONFIG, (getTrustStore() == null) ? null : getTrustStore().getURL().toString());
-                properties.put(SslConfigs.SSL_TRUSTSTORE_PASSWORD_CONFIG, getTrustStorePassword());
-                properties.put(SslConfigs.SSL_ENDPOINT_IDENTIFICATION_ALGORITHM_CONFIG, "");
-            }
+            properties = buildProducerProperties(profile, null, null);
 
-            if (logger.isTraceEnabled() == true) {
+            for (Map.Entry<String, KafkaLaneConfig> entry : getLanes().entrySet()) {
 
-                System.setProperty("sun.security.krb5.debug", "true");
-                System.setOut(StreamSink.of(logger, "krb5debug", LogLevel.TRACE).getStream());
-                System.setErr(StreamSink.of(logger, "krb5debug", LogLevel.ERROR).getStream());
+                laneProperties.put(entry.getKey(), buildProducerProperties((entry.getValue().getProfile() == null)
+                    ? profile : entry.getValue().getProfile(), entry.getKey(), entry.getValue().getProducer()));
             }
 
         }
@@ -193,139 +326,2134 @@ public class KafkaClient extends KafkaClientConfig {
             throw new RemotingException("Failed to parse producer configuration: " + exception.getMessage(), exception);
         }
 
-        producerFactory = new DefaultKafkaProducerFactory<String, String>(properties);
+        logConfiguration("Producer configuration with profile " + profile, ProducerConfig.configDef(), properties);
+
+        producerStripes = buildStripes(properties);
+
+        stripes = producerStripes;
+
+        metrics = new KafkaClientMetrics((meterRegistry == null) ? new CompositeMeterRegistry() : meterRegistry,
+            ObjectUtil.coalesce(getName(), ServiceContext.getServiceName()));
+        metrics.bindProducer(producerStripes);
+
+        if (StringUtils.hasLength(getSpool()) == true) {
+
+            try {
+
+                spool = new SpoolJournal(new File(getSpool()), getSpoolSegmentSize(), getSpoolLimit(), getSpoolOverflowPolicy());
+
+                deadLetters = new SpoolJournal(new File(getSpool(), DEAD_LETTER_DIRECTORY), getSpoolSegmentSize(),
+                    getSpoolLimit(), SpoolOverflowPolicy.DROP_OLDEST);
+            }
+            catch (IOException exception) {
+                throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Failed to open spool: " + exception.getMessage(), exception);
+            }
+
+            metrics.bindSpool(spool, deadLetters);
+        }
+
+        if ((getMaxInFlightMessages() > 0) || (getMaxInFlightBytes() > 0)) {
+
+            limiter = new InFlightLimiter(getMaxInFlightMessages(), getMaxInFlightBytes(),
+                getOverloadPolicy(), getOverloadTimeout(), record -> producerStripes.send(record, this::handOver));
+
+            metrics.bindLimiter(limiter, (laneProperties.isEmpty() == true) ? null : DEFAULT_LANE);
+        }
+
+        breaker = null;
+
+        if ((getFailureThreshold() > 0) && (spool == null)) {
+
+            breaker = new CircuitBreaker(getFailureThreshold(), getBackoffPeriod(),
+                getBackoffMultiplier(), getBackoffLimit(), 2L * getRequestTimeout());
+
+            metrics.bindBreaker(breaker);
+        }
+
+        if (StringUtils.hasLength(getTransactionIdPrefix()) == true) {
+
+            transactions = new TransactionalProducerPool(getTransactionPoolSize(), getGroupCommitSize(),
+                getGroupCommitWindow(), getRequestTimeout(), index -> createTransactionalProducer(properties, index));
+        }
+
+        defaultLane = new Lane(DEFAULT_LANE, 0, producerStripes, limiter,
+            (laneProperties.isEmpty() == true) ? null : metrics.forLane(DEFAULT_LANE, producerStripes));
+
+        lanes = new LinkedHashMap<String, Lane>();
+
+        for (Map.Entry<String, Map<String, Object>> entry : laneProperties.entrySet()) {
+
+            logConfiguration("Producer configuration of traffic lane " + entry.getKey(), ProducerConfig.configDef(), entry.getValue());
+
+            lane = buildLane(entry.getKey(), getLanes().get(entry.getKey()).getMinPayloadSize(), entry.getValue());
+
+            lanes.put(lane.name, lane);
+        }
+
+        sizedLanes = lanes.values().stream()
+            .filter(candidate -> candidate.minPayloadSize > 0)
+            .sorted(Comparator.comparingInt((Lane candidate) -> candidate.minPayloadSize).reversed())
+            .toArray(Lane[]::new);
+
+        if (getSslStatistics() != null) {
+            metrics.bindSsl(collectSslStatistics());
+        }
+
+        kafkaTemplate = producerStripes.get(0);
+
+        if (spool != null) {
+
+            replayThread = new Thread(this::replay, "kafka-spool-" + ObjectUtil.coalesce(getName(), ServiceContext.getServiceName()));
+            replayThread.setDaemon(true);
+            replayThread.start();
+        }
 
-        kafkaTemplate = new KafkaTemplate<String, String>(producerFactory);
-        kafkaTemplate.setDefaultTopic(getTopic());
     }
 
     /**
-     * Send message.
-     * @param <Rq> The request type
-     * @param message The message object
-     * @throws RemotingException if unable to send the message
+     * Build producer configuration.  The configuration of a traffic lane is derived
+     * from the configuration of the client, with the profile and the producer
+     * properties of the lane applied on top.  The client identifier of a lane is
+     * suffixed with the name of the lane, so the producers of a lane are never shared
+     * with clients that do not have the same lane.
+     * @param producerProfile The producer profile
+     * @param lane The name of the traffic lane, or {@code null} for the default lane
+     * @param laneProducer The producer properties of the traffic lane, or {@code null} for the default lane
+     * @return The producer configuration
+     * @throws Exception if unable to build the producer configuration
      */
-    public <Rq> void send(
-        final Rq message) throws RemotingException {
+    private Map<String, Object> buildProducerProperties(
+        final ProducerProfile producerProfile,
+        final String lane,
+        final Map<String, String> laneProducer) throws Exception {
 
-        String methodName = "send";
-        String payload;
-        TransactionContext transactionContext;
-        Timer timer;
-        ListenableFuture<SendResult<String, String>> sendResult;
-        long duration;
+        Map<String, Object> properties;
 
-        initialize();
+        properties = buildConnectionProperties();
+        properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, (isTracing() == true) ? TracingSerializer.class : ByteArraySerializer.class);
+        properties.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, getRequestTimeout());
+        properties.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, getRequestTimeout());
 
-        try {
+        if (lane != null) {
+            properties.put(ProducerConfig.CLIENT_ID_CONFIG, properties.get(ProducerConfig.CLIENT_ID_CONFIG) + "-" + lane);
+        }
+
+        if (isLatencyAwarePartitioning() == true) {
 
-            payload = (message instanceof String) ? (String) message : objectMapper.writeValueAsString(message);
+            properties.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, LatencyAwarePartitioner.class);
+            properties.put(ProducerConfig.INTERCEPTOR_CLASSES_CONFIG, LatencyTrackingInterceptor.class.getName());
+            properties.put(LatencyAwarePartitioner.TRACKER_CONFIG, new PartitionLatencyTracker());
+            properties.put(LatencyAwarePartitioner.FAIRNESS_CONFIG, getPartitioningFairness());
         }
-        catch (Exception exception) {
-            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Failed to serialize message: " + exception.getMessage(), exception);
+
+        producerProfile.apply(properties);
+
+        properties.putAll(getProducer());
+
+        if (laneProducer != null) {
+            properties.putAll(laneProducer);
         }
 
-        if (payload != null) {
-            logger.debug(methodName, "message = ", payload);
+        if (StringUtils.hasLength(getSpool()) == true) {
+            properties.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, SPOOL_MAX_BLOCK);
         }
 
-        transactionContext = TransactionContext.get();
+        return properties;
+    }
 
-        timer = Timer.ofNanos().start();
+    /**
+     * Create transactional producer.  The producer is configured like the producer of
+     * the client, with idempotence enabled and with its own transactional identifier.
+     * @param properties The producer configuration of the client
+     * @param index The index of the producer in the pool
+     * @return The transactional producer
+     */
+    private Producer<String, byte[]> createTransactionalProducer(
+        final Map<String, Object> properties,
+        final int index) {
 
-        try {
+        Map<String, Object> transactionalProperties;
 
-            sendResult = kafkaTemplate.send(ProducerRecordFactory.create(getTopic(), payload, transactionContext.getTransactionId()));
+        if (fixedProducerFactories != null) {
+            return fixedProducerFactories.apply(index).createProducer();
+        }
 
-            if (async == false) {
+        transactionalProperties = new HashMap<String, Object>(properties);
+        transactionalProperties.put(ProducerConfig.CLIENT_ID_CONFIG, properties.get(ProducerConfig.CLIENT_ID_CONFIG) + "-tx-" + index);
+        transactionalProperties.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, getTransactionIdPrefix() + "-" + index);
+        transactionalProperties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        transactionalProperties.put(ProducerConfig.ACKS_CONFIG, "all");
+        transactionalProperties.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, Math.min(5,
+            Integer.parseInt(String.valueOf(properties.getOrDefault(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5)))));
+        transactionalProperties.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, getRequestTimeout());
 
-                try {
+        return new KafkaProducer<String, byte[]>(transactionalProperties);
+    }
 
-                    sendResult.get();
-                }
-                catch (InterruptedException exception) {
-                    throw new KafkaException("Thread has been interrupted.", exception);
-                }
-                catch (ExecutionException exception) {
-                    throw exception.getCause();
-                }
+    /**
+     * Build producer stripes.  When more than one stripe is configured, every stripe
+     * has its own producer, whose client identifier is suffixed with the index of the
+     * stripe.
+     * @param properties The producer configuration
+     * @return The producer stripes
+     */
+    private ProducerStripes buildStripes(
+        final Map<String, Object> properties) {
+
+        List<ProducerFactory<String, byte[]>> stripeProducerFactories;
+        Map<String, Object> stripeProperties;
+
+        stripeProducerFactories = new ArrayList<ProducerFactory<String, byte[]>>(getProducerStripes());
 
+        for (int i = 0; i < getProducerStripes(); i++) {
+
+            if (fixedProducerFactories != null) {
+                stripeProducerFactories.add(fixedProducerFactories.apply(i));
+
+                continue;
             }
 
-            duration = timer.elapsedTime(TimeUnit.MILLISECONDS);
+            stripeProperties = properties;
+
+            if (getProducerStripes() > 1) {
+                stripeProperties = new HashMap<String, Object>(properties);
+                stripeProperties.put(ProducerConfig.CLIENT_ID_CONFIG, properties.get(ProducerConfig.CLIENT_ID_CONFIG) + "-stripe-" + i);
+            }
 
-            logger.debug(methodName, "Message sent successfully.  Duration = ", duration, " ms.");
+            stripeProducerFactories.add(ProducerRegistry.acquire(stripeProperties));
         }
-        catch (KafkaException exception) {
 
-            duration = timer.elapsedTime(TimeUnit.MILLISECONDS);
+        return new ProducerStripes(stripeProducerFactories, getTopic(), getStripeSelection());
+    }
+
+    /**
+     * Release producers of producer stripes.  Producers are closed if no other
+     * client shares them.
+     * @param producerStripes The producer stripes
+     */
+    private void release(
+        final ProducerStripes producerStripes) {
 
-            logger.debug(methodName, "Message send failed.  Duration = ", duration, " ms.");
+        if (fixedProducerFactories != null) {
+            return;
+        }
 
-            throw new RemotingException(ExceptionType.REMOTING_COMMUNICATION, translate(exception), exception);
+        for (ProducerFactory<String, byte[]> stripeProducerFactory : producerStripes.getProducerFactories()) {
+            ProducerRegistry.release(stripeProducerFactory);
         }
-        catch (org.apache.kafka.common.KafkaException exception) {
 
-            duration = timer.elapsedTime(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Collect SSL statistics of the producers of all traffic lanes.  A producer that
+     * is shared with another client records its SSL handshakes in the SSL statistics
+     * of the client that created it, rather than in those of this client.
+     * @return The SSL statistics
+     */
+    private Collection<SSLStatistics> collectSslStatistics() {
+
+        Map<SSLStatistics, Boolean> statistics;
+        Object candidate;
 
-            logger.debug(methodName, "Message send failed.  Duration = ", duration, " ms.");
+        statistics = new IdentityHashMap<SSLStatistics, Boolean>();
 
-            throw new RemotingException(ExceptionType.REMOTING_COMMUNICATION, translate(exception), exception);
+        if (fixedProducerFactories != null) {
+            statistics.put(getSslStatistics(), Boolean.TRUE);
+
+            return statistics.keySet();
         }
-        catch (Throwable exception) {
-            throw new RemotingException(ExceptionType.REMOTING_COMMUNICATION, "Failed to send message: " + exception.getMessage(), exception);
+
+        for (Lane lane : Stream.concat(Stream.of(defaultLane), lanes.values().stream()).toArray(Lane[]::new)) {
+
+            for (ProducerFactory<String, byte[]> stripeProducerFactory : lane.stripes.getProducerFactories()) {
+
+                candidate = ProducerRegistry.getShared(stripeProducerFactory, SSLEngineFactory.STATISTICS_CONFIG, getSslStatistics());
+
+                if (candidate instanceof SSLStatistics) {
+                    statistics.put((SSLStatistics) candidate, Boolean.TRUE);
+                }
+
+            }
+
         }
 
+        return statistics.keySet();
     }
 
     /**
-     * Build JAAS configuration.
-     * @param moduleName The module name
-     * @return The JAAS configuration
-     * @throws IOException if a keytab is provided but cannot be accessed
+     * Build traffic lane.  Every lane has its own producer stripes and, when an
+     * in-flight limit is configured, its own in-flight limit.
+     * @param name The name of the lane
+     * @param minPayloadSize The minimum payload size of the lane in bytes
+     * @param properties The producer configuration of the lane
+     * @return The traffic lane
      */
-    private String buildJaasConfig(
-        final String moduleName) throws IOException {
+    private Lane buildLane(
+        final String name,
+        final int minPayloadSize,
+        final Map<String, Object> properties) {
+
+        ProducerStripes laneStripes;
+        InFlightLimiter limiter = null;
+
+        laneStripes = buildStripes(properties);
 
-        String methodName = "buildJaasConfig";
-        String jaasConfig;
+        if ((getMaxInFlightMessages() > 0) || (getMaxInFlightBytes() > 0)) {
 
-        jaasConfig = moduleName + " required doNotPrompt=true"
-            + ((kerberos == false) ? "" : " serviceName=\"" + getServiceName() + "\"") + ((getKeytab() != null)
-            ? " principal=\"" + getUsername() + "\" useKeyTab=true keyTab=\"" + getKeytab().getFile().getAbsolutePath().replace('\\', '/') + "\" "
-            : " username=\"" + getUsername() + "\" password=\"" + getPassword() + "\" ") + getJaas() + " client=true;";
+            limiter = new InFlightLimiter(getMaxInFlightMessages(), getMaxInFlightBytes(),
+                getOverloadPolicy(), getOverloadTimeout(), record -> laneStripes.send(record, this::handOver));
 
-        if (logger.isTraceEnabled() == true) {
-            logger.debug(methodName, "jaasConfig = ", jaasConfig);
+            metrics.bindLimiter(limiter, name);
         }
 
-        return jaasConfig;
+        return new Lane(name, minPayloadSize, laneStripes, limiter, metrics.forLane(name, laneStripes));
     }
 
     /**
-     * Translate exception message.
-     * @param exception The exception
-     * @return The translated exception message
+     * Send message to the configured topic.
+     * @param <Rq> The request type
+     * @param message The message object
+     * @throws RemotingException if unable to send the message
      */
-    private String translate(
-        Throwable exception) {
+    public <Rq> void send(
+        final Rq message) throws RemotingException {
+
+        send(getTopic(), message);
+    }
 
-        String message = exception.getMessage();
+    /**
+     * Send message to the specified topic.
+     * @param <Rq> The request type
+     * @param topic The topic
+     * @param message The message object
+     * @throws RemotingException if unable to send the message
+     */
+    public <Rq> void send(
+        final String topic,
+        final Rq message) throws RemotingException {
 
-        while ((kerberos == true) && (exception != null)) {
+        send(topic, message, null);
+    }
 
-            if (StringUtil.contains(exception.getMessage(), "Unable to obtain password from user") == true) {
+    /**
+     * Send message to the specified topic on the specified traffic lane.
+     * @param <Rq> The request type
+     * @param topic The topic
+     * @param message The message object
+     * @param lane The name of the traffic lane, or {@code null} to select the lane by payload size
+     * @throws RemotingException if unable to send the message
+     */
+    public <Rq> void send(
+        final String topic,
+        final Rq message,
+        final String lane) throws RemotingException {
 
-                message = "Unable to authenticate user.  User domain does not match realm (case sensitive), "
-                    + "or keytab does not contain valid key for user.";
+        KafkaClientMetrics.TopicMetrics topicMetrics;
 
-                break;
+        initialize(topic);
+
+        topicMetrics = metrics.forTopic(topic);
+
+        dispatch(topicMetrics, topic, serialize(topicMetrics, message), getContentType(message), lane);
+    }
+
+    /**
+     * Send message which has already been encoded to the configured topic.
+     * The payload is handed to the producer as is, without being copied.
+     * @param payload The message payload
+     * @throws RemotingException if unable to send the message
+     */
+    public void send(
+        final byte[] payload) throws RemotingException {
+
+        send(getTopic(), payload);
+    }
+
+    /**
+     * Send message which has already been encoded to the specified topic.
+     * The payload is handed to the producer as is, without being copied.
+     * @param topic The topic
+     * @param payload The message payload
+     * @throws RemotingException if unable to send the message
+     */
+    public void send(
+        final String topic,
+        final byte[] payload) throws RemotingException {
+
+        initialize(topic);
+
+        dispatch(metrics.forTopic(topic), topic, payload, null, null);
+    }
+
+    /**
+     * Send message which has already been encoded to the configured topic.
+     * The remaining content of the buffer is the payload.  When the buffer is
+     * backed by an array that holds exactly the remaining content, the array is
+     * handed to the producer without being copied.
+     * @param payload The message payload
+     * @throws RemotingException if unable to send the message
+     */
+    public void send(
+        final ByteBuffer payload) throws RemotingException {
+
+        send(getTopic(), payload);
+    }
+
+    /**
+     * Send message which has already been encoded to the specified topic.
+     * The remaining content of the buffer is the payload.  When the buffer is
+     * backed by an array that holds exactly the remaining content, the array is
+     * handed to the producer without being copied.
+     * @param topic The topic
+     * @param payload The message payload
+     * @throws RemotingException if unable to send the message
+     */
+    public void send(
+        final String topic,
+        final ByteBuffer payload) throws RemotingException {
+
+        KafkaClientMetrics.TopicMetrics topicMetrics;
+
+        initialize(topic);
+
+        topicMetrics = metrics.forTopic(topic);
+
+        dispatch(topicMetrics, topic, serialize(topicMetrics, payload), null, null);
+    }
+
+    /**
+     * Dispatch message payload to the Kafka server.  No objects are allocated
+     * here on the steady-state path, beyond those that are required by the
+     * producer record and by the producer itself.
+     * @param topicMetrics The metrics of the topic
+     * @param topic The topic
+     * @param payload The message payload
+     * @param contentType The content type of the payload, or {@code null} if it is not known
+     * @param lane The name of the traffic lane, or {@code null} to select the lane by payload size
+     * @throws RemotingException if unable to send the message
+     */
+    private void dispatch(
+        final KafkaClientMetrics.TopicMetrics topicMetrics,
+        final String topic,
+        final byte[] payload,
+        final String contentType,
+        final String lane) throws RemotingException {
+
+        String methodName = "send";
+        long start;
+        ListenableFuture<SendResult<String, byte[]>> sendResult = null;
+        SendResult<String, byte[]> result;
+        long duration;
+
+        if ((payload != null) && (logger.isDebugEnabled() == true)) {
+            logger.debug(methodName, "message = ", new String(payload, StandardCharsets.UTF_8));
+        }
+
+        start = System.nanoTime();
+
+        try {
+
+            sendResult = submit(topicMetrics, topic, payload, TransactionContext.get().getTransactionId(), contentType, lane);
+
+            if (async == true) {
+
+                sendResult.addCallback(new SendCallback(topicMetrics, start, null, true));
+
+                return;
             }
 
-            exception = exception.getCause();
+            try {
+
+                result = sendResult.get();
+            }
+            catch (InterruptedException exception) {
+                throw new KafkaException("Thread has been interrupted.", exception);
+            }
+            catch (ExecutionException exception) {
+                throw exception.getCause();
+            }
+
+            duration = System.nanoTime() - start;
+
+            if (result.getRecordMetadata() == null) {
+                topicMetrics.spooled();
+            }
+            else {
+                topicMetrics.acknowledged(duration, (payload == null) ? 0 : payload.length);
+            }
+
+            if (logger.isDebugEnabled() == true) {
+                logger.debug(methodName, "Message sent successfully.  Duration = ", TimeUnit.NANOSECONDS.toMillis(duration), " ms.");
+            }
+
+        }
+        catch (RemotingException exception) {
+
+            undelivered(topicMetrics, sendResult, start);
+
+            throw exception;
         }
+        catch (KafkaException exception) {
+
+            undelivered(topicMetrics, sendResult, start);
+
+            throw new RemotingException(ExceptionType.REMOTING_COMMUNICATION, translate(exception), exception);
+        }
+        catch (org.apache.kafka.common.KafkaException exception) {
+
+            undelivered(topicMetrics, sendResult, start);
+
+            throw new RemotingException(ExceptionType.REMOTING_COMMUNICATION, translate(exception), exception);
+        }
+        catch (Throwable exception) {
+
+            undelivered(topicMetrics, sendResult, start);
+
+            throw new RemotingException(ExceptionType.REMOTING_COMMUNICATION, "Failed to send message: " + exception.getMessage(), exception);
+        }
+
+    }
+
+    /**
+     * Record that message could not be delivered.  If the message was never handed
+     * to the producer then the failure has already been recorded by {@code submit}.
+     * @param topicMetrics The metrics of the topic
+     * @param sendResult The future outcome of the message, or {@code null} if the message was never handed to the producer
+     * @param start The time at which the message was handed to the producer
+     */
+    private void undelivered(
+        final KafkaClientMetrics.TopicMetrics topicMetrics,
+        final ListenableFuture<SendResult<String, byte[]>> sendResult,
+        final long start) {
+
+        String methodName = "send";
+
+        if (sendResult != null) {
+            topicMetrics.undelivered(ExceptionType.REMOTING_COMMUNICATION);
+        }
+
+        if (logger.isDebugEnabled() == true) {
+            logger.debug(methodName, "Message send failed.  Duration = ", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), " ms.");
+        }
+
+    }
+
+    /**
+     * Send message to the configured topic without blocking.  The returned stage
+     * completes when the Kafka server has acknowledged the message, or completes
+     * exceptionally with a {@code RemotingException} when the message could not
+     * be sent.  This applies regardless of whether asynchronous transport is enabled.
+     * When the message is written to the spool, the stage completes with {@code null}.
+     * @param <Rq> The request type
+     * @param message The message object
+     * @return The stage that completes with the record metadata
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <Rq> CompletionStage<RecordMetadata> sendAsync(
+        final Rq message) throws RemotingException {
+
+        return sendAsync(getTopic(), message);
+    }
+
+    /**
+     * Send message to the specified topic without blocking.  The returned stage
+     * completes when the Kafka server has acknowledged the message, or completes
+     * exceptionally with a {@code RemotingException} when the message could not
+     * be sent.  This applies regardless of whether asynchronous transport is enabled.
+     * When the message is written to the spool, the stage completes with {@code null}.
+     * @param <Rq> The request type
+     * @param topic The topic
+     * @param message The message object
+     * @return The stage that completes with the record metadata
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <Rq> CompletionStage<RecordMetadata> sendAsync(
+        final String topic,
+        final Rq message) throws RemotingException {
+
+        return sendAsync(topic, message, null);
+    }
+
+    /**
+     * Send message to the specified topic on the specified traffic lane without blocking.
+     * The returned stage completes when the Kafka server has acknowledged the message, or
+     * completes exceptionally with a {@code RemotingException} when the message could not
+     * be sent.  This applies regardless of whether asynchronous transport is enabled.
+     * When the message is written to the spool, the stage completes with {@code null}.
+     * @param <Rq> The request type
+     * @param topic The topic
+     * @param message The message object
+     * @param lane The name of the traffic lane, or {@code null} to select the lane by payload size
+     * @return The stage that completes with the record metadata
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <Rq> CompletionStage<RecordMetadata> sendAsync(
+        final String topic,
+        final Rq message,
+        final String lane) throws RemotingException {
+
+        initialize(topic);
+
+        return dispatchAsync(metrics.forTopic(topic), topic, message, TransactionContext.get().getTransactionId(), lane);
+    }
+
+    /**
+     * Send messages from a reactive publisher to the configured topic.  Messages are only
+     * requested from the publisher while fewer than the configured number of messages are
+     * in flight, and the returned stream emits the outcome of every message in the order in
+     * which the publisher emitted the messages.  A message that cannot be sent does not
+     * terminate the stream; its outcome holds the {@code RemotingException} instead.
+     * Nothing is sent until the returned stream is subscribed to.
+     * @param <Rq> The request type
+     * @param messages The publisher of the message objects
+     * @return The stream of outcomes
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <Rq> Flux<SendOutcome<Rq>> send(
+        final Publisher<Rq> messages) throws RemotingException {
+
+        return send(getTopic(), messages);
+    }
+
+    /**
+     * Send messages from a reactive publisher to the specified topic.  Messages are only
+     * requested from the publisher while fewer than the configured number of messages are
+     * in flight, and the returned stream emits the outcome of every message in the order in
+     * which the publisher emitted the messages.  A message that cannot be sent does not
+     * terminate the stream; its outcome holds the {@code RemotingException} instead.
+     * Nothing is sent until the returned stream is subscribed to.
+     * @param <Rq> The request type
+     * @param topic The topic
+     * @param messages The publisher of the message objects
+     * @return The stream of outcomes
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <Rq> Flux<SendOutcome<Rq>> send(
+        final String topic,
+        final Publisher<Rq> messages) throws RemotingException {
+
+        return send(topic, messages, null);
+    }
+
+    /**
+     * Send messages from a reactive publisher to the specified topic on the specified
+     * traffic lane.  Messages are only requested from the publisher while fewer than the
+     * configured number of messages are in flight, and the returned stream emits the outcome
+     * of every message in the order in which the publisher emitted the messages.  A message
+     * that cannot be sent does not terminate the stream; its outcome holds the
+     * {@code RemotingException} instead.  Nothing is sent until the returned stream is
+     * subscribed to.
+     * @param <Rq> The request type
+     * @param topic The topic
+     * @param messages The publisher of the message objects
+     * @param lane The name of the traffic lane, or {@code null} to select the lane by payload size
+     * @return The stream of outcomes
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <Rq> Flux<SendOutcome<Rq>> send(
+        final String topic,
+        final Publisher<Rq> messages,
+        final String lane) throws RemotingException {
+
+        KafkaClientMetrics.TopicMetrics topicMetrics;
+        String transactionId;
+        int concurrency;
+
+        initialize(topic);
+
+        topicMetrics = metrics.forTopic(topic);
+
+        transactionId = TransactionContext.get().getTransactionId();
+
+        concurrency = Math.max(1, ((getMaxInFlightMessages() > 0) && (getMaxInFlightMessages() < getPublisherConcurrency()))
+            ? getMaxInFlightMessages() : getPublisherConcurrency());
+
+        return PublisherDispatcher.dispatch(messages, concurrency,
+            message -> dispatchAsync(topicMetrics, topic, message, transactionId, lane));
+    }
+
+    /**
+     * Dispatch message to the Kafka server without blocking.  The returned stage
+     * completes when the Kafka server has acknowledged the message, or completes
+     * exceptionally with a {@code RemotingException} when the message could not
+     * be sent.
+     * @param <Rq> The request type
+     * @param topicMetrics The metrics of the topic
+     * @param topic The topic
+     * @param message The message object
+     * @param transactionId The transaction identifier
+     * @param lane The name of the traffic lane, or {@code null} to select the lane by payload size
+     * @return The stage that completes with the record metadata
+     */
+    private <Rq> CompletionStage<RecordMetadata> dispatchAsync(
+        final KafkaClientMetrics.TopicMetrics topicMetrics,
+        final String topic,
+        final Rq message,
+        final String transactionId,
+        final String lane) {
+
+        byte[] payload;
+        long start;
+        CompletableFuture<RecordMetadata> sendResult;
+
+        sendResult = new CompletableFuture<RecordMetadata>();
+
+        try {
+
+            payload = serialize(topicMetrics, message);
+
+            start = System.nanoTime();
+
+            submit(topicMetrics, topic, payload, transactionId, getContentType(message), lane)
+                .addCallback(new SendCallback(topicMetrics, start, sendResult, false));
+        }
+        catch (Throwable exception) {
+            sendResult.completeExceptionally(toRemotingException(exception));
+        }
+
+        return sendResult;
+    }
+
+    /**
+     * Send batch of messages to the configured topic.  All messages are serialized
+     * and handed to the producer before the client waits for the outcome of any of
+     * them, which allows the producer to group the messages into as few requests to
+     * the Kafka server as possible.
+     * @param <Rq> The request type
+     * @param messages The message objects
+     * @return The outcome of every message in the batch
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <Rq> BatchResult sendAll(
+        final Collection<Rq> messages) throws RemotingException {
+
+        return sendAll(getTopic(), messages.stream());
+    }
+
+    /**
+     * Send batch of messages to the configured topic.  All messages are serialized
+     * and handed to the producer before the client waits for the outcome of any of
+     * them, which allows the producer to group the messages into as few requests to
+     * the Kafka server as possible.
+     * @param <Rq> The request type
+     * @param messages The message objects
+     * @return The outcome of every message in the batch
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <Rq> BatchResult sendAll(
+        final Stream<Rq> messages) throws RemotingException {
+
+        return sendAll(getTopic(), messages);
+    }
+
+    /**
+     * Send batch of messages to the specified topic.  All messages are serialized
+     * and handed to the producer before the client waits for the outcome of any of
+     * them, which allows the producer to group the messages into as few requests to
+     * the Kafka server as possible.
+     * @param <Rq> The request type
+     * @param topic The topic
+     * @param messages The message objects
+     * @return The outcome of every message in the batch
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <Rq> BatchResult sendAll(
+        final String topic,
+        final Collection<Rq> messages) throws RemotingException {
+
+        return sendAll(topic, messages.stream());
+    }
+
+    /**
+     * Send batch of messages to the specified topic.  All messages are serialized
+     * and handed to the producer before the client waits for the outcome of any of
+     * them, which allows the producer to group the messages into as few requests to
+     * the Kafka server as possible.
+     * @param <Rq> The request type
+     * @param topic The topic
+     * @param messages The message objects
+     * @return The outcome of every message in the batch
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <Rq> BatchResult sendAll(
+        final String topic,
+        final Stream<Rq> messages) throws RemotingException {
+
+        String methodName = "sendAll";
+        KafkaClientMetrics.TopicMetrics topicMetrics;
+        String transactionId;
+        long start;
+        List<ListenableFuture<SendResult<String, byte[]>>> sendResults;
+        BatchResult batchResult;
+        RecordMetadata metadata;
+        int index;
+        long duration;
+
+        initialize(topic);
+
+        topicMetrics = metrics.forTopic(topic);
+
+        transactionId = TransactionContext.get().getTransactionId();
+
+        sendResults = new ArrayList<ListenableFuture<SendResult<String, byte[]>>>();
+
+        start = System.nanoTime();
+
+        messages.forEachOrdered(message -> sendResults.add(enqueue(topicMetrics, topic, message, transactionId)));
+
+        batchResult = new BatchResult(sendResults.size());
+
+        for (index = 0; index < sendResults.size(); index++) {
+
+            try {
+
+                metadata = sendResults.get(index).get().getRecordMetadata();
+
+                if (metadata == null) {
+                    batchResult.spooled(index);
+                }
+                else {
+                    batchResult.succeeded(index, metadata);
+                }
+
+            }
+            catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+
+                break;
+            }
+            catch (ExecutionException exception) {
+                batchResult.failed(index, toRemotingException(exception.getCause()));
+            }
+
+        }
+
+        for (; index < sendResults.size(); index++) {
+            batchResult.pending(index);
+        }
+
+        duration = System.nanoTime() - start;
+
+        topicMetrics.batched(duration);
+
+        if (batchResult.getPendingCount() > 0) {
+            logger.warn(methodName, "Thread has been interrupted while waiting for batch.  Messages = ", batchResult.size(),
+                ", pending = ", batchResult.getPendingCount(), ".");
+        }
+        else if (logger.isDebugEnabled() == true) {
+            logger.debug(methodName, "Batch sent.  Messages = ", batchResult.size(), ", failures = ",
+                batchResult.getFailureCount(), ", spooled = ", batchResult.getSpooledCount(), ".  Duration = ", TimeUnit.NANOSECONDS.toMillis(duration), " ms.");
+        }
+
+        return batchResult;
+    }
+
+    /**
+     * Hand message to the producer without waiting for the outcome.  If the
+     * message cannot be serialized or handed to the producer then the returned
+     * future holds the exception.
+     * @param <Rq> The request type
+     * @param topicMetrics The metrics of the topic
+     * @param topic The topic
+     * @param message The message object
+     * @param transactionId The transaction identifier
+     * @return The future outcome of the message
+     */
+    private <Rq> ListenableFuture<SendResult<String, byte[]>> enqueue(
+        final KafkaClientMetrics.TopicMetrics topicMetrics,
+        final String topic,
+        final Rq message,
+        final String transactionId) {
+
+        byte[] payload;
+        long start;
+        ListenableFuture<SendResult<String, byte[]>> sendResult;
+        SettableListenableFuture<SendResult<String, byte[]>> failedResult;
+
+        try {
+
+            payload = serialize(topicMetrics, message);
+
+            start = System.nanoTime();
+
+            sendResult = submit(topicMetrics, topic, payload, transactionId, getContentType(message), null);
+            sendResult.addCallback(new SendCallback(topicMetrics, start, null, false));
+
+            return sendResult;
+        }
+        catch (Throwable exception) {
+
+            failedResult = new SettableListenableFuture<SendResult<String, byte[]>>();
+            failedResult.setException(exception);
+
+            return failedResult;
+        }
+
+    }
+
+    /**
+     * Send batch of messages to the configured topic in a single transaction.  Either
+     * all messages are committed, or none of them are.
+     * @param <Rq> The request type
+     * @param messages The message objects
+     * @return The record metadata of every message, in the same order as the messages
+     * @throws RemotingException if unable to send the messages, in which case the transaction has been aborted
+     */
+    public <Rq> List<RecordMetadata> sendInTransaction(
+        final Collection<Rq> messages) throws RemotingException {
+
+        return sendInTransaction(getTopic(), messages);
+    }
+
+    /**
+     * Send batch of messages to the specified topic in a single transaction.  Either
+     * all messages are committed, or none of them are.
+     * @param <Rq> The request type
+     * @param topic The topic
+     * @param messages The message objects
+     * @return The record metadata of every message, in the same order as the messages
+     * @throws RemotingException if unable to send the messages, in which case the transaction has been aborted
+     */
+    public <Rq> List<RecordMetadata> sendInTransaction(
+        final String topic,
+        final Collection<Rq> messages) throws RemotingException {
+
+        List<Future<RecordMetadata>> sendResults;
+        List<RecordMetadata> metadata;
+
+        initialize(topic);
+
+        sendResults = sendInTransaction(transaction -> {
+
+            List<Future<RecordMetadata>> results;
+
+            results = new ArrayList<Future<RecordMetadata>>(messages.size());
+
+            for (Rq message : messages) {
+                results.add(transaction.send(topic, message));
+            }
+
+            return results;
+        });
+
+        metadata = new ArrayList<RecordMetadata>(sendResults.size());
+
+        try {
+
+            for (Future<RecordMetadata> sendResult : sendResults) {
+                metadata.add(sendResult.get());
+            }
+
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+
+            throw toRemotingException(new KafkaException("Thread has been interrupted.", exception));
+        }
+        catch (ExecutionException exception) {
+            throw toRemotingException(exception.getCause());
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Send messages in a single transaction.  The callback sends the messages, and
+     * the transaction is committed when the callback returns.  The transaction is
+     * aborted when the callback throws an exception, or when another batch that
+     * shares the transaction through group commit fails.  Transactions must not be
+     * nested.
+     * @param <T> The result type
+     * @param callback The callback that sends the messages
+     * @return The result of the callback
+     * @throws RemotingException if unable to send the messages, in which case the transaction has been aborted
+     */
+    public <T> T sendInTransaction(
+        final TransactionCallback<T> callback) throws RemotingException {
+
+        String methodName = "sendInTransaction";
+        TransactionalProducerPool producerPool;
+        String transactionId;
+        long start;
+        T result;
+
+        initialize();
+
+        producerPool = transactions;
+
+        if (producerPool == null) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Transactional identifier prefix must be configured.");
+        }
+
+        transactionId = TransactionContext.get().getTransactionId();
+
+        start = System.nanoTime();
+
+        try {
+
+            result = producerPool.execute(producer -> callback.doInTransaction(new Transaction(producer, transactionId)));
+        }
+        catch (Exception exception) {
+
+            if (logger.isDebugEnabled() == true) {
+                logger.debug(methodName, "Transaction aborted.  Duration = ", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), " ms.");
+            }
+
+            throw toRemotingException(exception);
+        }
+
+        if (logger.isDebugEnabled() == true) {
+            logger.debug(methodName, "Transaction committed.  Duration = ", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), " ms.");
+        }
+
+        return result;
+    }
+
+    /**
+     * Start client.  When eager initialization is enabled, the producer is built
+     * and the partition metadata of the configured topics is fetched, which
+     * authenticates with and connects to the Kafka server before the application
+     * reports that it is ready.
+     */
+    public void start() {
+
+        String methodName = "start";
+        Timer timer;
+
+        ProducerStripes producerStripes;
+
+        timer = Timer.ofNanos().start();
+
+        closed = false;
+
+        try {
+
+            initialize();
+        }
+        catch (RemotingException exception) {
+            throw new IllegalStateException("Failed to initialize Kafka client: " + exception.getMessage(), exception);
+        }
+
+        producerStripes = stripes;
+
+        for (String topic : getWarmUpTopics()) {
+
+            try {
+
+                for (int i = 0; (producerStripes != null) && (i < producerStripes.size()); i++) {
+                    producerStripes.get(i).partitionsFor(topic);
+                }
+
+            }
+            catch (Exception exception) {
+                logger.warn(methodName, "Failed to fetch partition metadata for topic ", topic, ": ", translate(exception));
+            }
+
+        }
+
+        running = true;
+
+        logger.info(methodName, "Kafka client started.  Duration = ", timer.elapsedTime(TimeUnit.MILLISECONDS), " ms.");
+    }
+
+    /**
+     * Stop client.  Any records that are still in flight are flushed to the
+     * Kafka server, waiting no longer than the shutdown timeout, after which
+     * the client is closed.
+     */
+    public void stop() {
+
+        String methodName = "stop";
+        ProducerStripes producerStripes;
+        Collection<Lane> laneList;
+
+        running = false;
+
+        producerStripes = stripes;
+
+        laneList = (lanes == null) ? Collections.emptyList() : new ArrayList<Lane>(lanes.values());
+
+        if (producerStripes != null) {
+
+            try {
+
+                CompletableFuture.runAsync(() -> {
+                    producerStripes.flush();
+                    laneList.forEach(lane -> lane.stripes.flush());
+                }).get(getShutdownTimeout(), TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            catch (Exception exception) {
+                logger.warn(methodName, "Failed to flush records within shutdown timeout: ", exception.getMessage());
+            }
+
+        }
+
+        close();
+    }
+
+    /**
+     * Determine whether client is running.
+     * @return true if the client is running, false otherwise
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Determine whether client must be started automatically.
+     * @return true if eager initialization is enabled, false otherwise
+     */
+    public boolean isAutoStartup() {
+        return eager;
+    }
+
+    /**
+     * Get lifecycle phase of client.  The phase is below that of the web server and
+     * of its graceful shutdown, so that the client is started before the web server
+     * accepts requests, and is only stopped once the requests have drained.
+     * @return The lifecycle phase
+     */
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Get topics to fetch partition metadata for during start up.
+     * @return The topics
+     */
+    private List<String> getWarmUpTopics() {
+
+        List<String> topics;
+
+        topics = new ArrayList<String>();
+
+        if (StringUtils.hasLength(getTopic()) == true) {
+            topics.add(getTopic());
+        }
+
+        topics.addAll(getTopics());
+
+        return topics;
+    }
+
+    /**
+     * Hand message payload to the producer.  The caller is responsible for recording
+     * the outcome in the metrics of the topic, unless the message is refused.
+     * @param topicMetrics The metrics of the topic
+     * @param topic The topic
+     * @param payload The message payload
+     * @param transactionId The transaction identifier
+     * @param contentType The content type of the payload, or {@code null} if it is not known
+     * @param lane The name of the traffic lane, or {@code null} to select the lane by payload size
+     * @return The future outcome of the message
+     * @throws RemotingException if the lane is not configured, or if the message is refused by the circuit breaker or the in-flight limit
+     */
+    private ListenableFuture<SendResult<String, byte[]>> submit(
+        final KafkaClientMetrics.TopicMetrics topicMetrics,
+        final String topic,
+        final byte[] payload,
+        final String transactionId,
+        final String contentType,
+        final String lane) throws RemotingException {
+
+        CircuitBreaker circuitBreaker;
+        int admission = CircuitBreaker.CLOSED;
+        ProducerRecord<String, byte[]> record;
+        ListenableFuture<SendResult<String, byte[]>> sendResult;
+
+        topicMetrics.dispatched();
+
+        circuitBreaker = breaker;
+
+        try {
+
+            admission = (circuitBreaker == null) ? CircuitBreaker.CLOSED : circuitBreaker.admit();
+
+            if (admission == CircuitBreaker.OPEN) {
+                throw new RemotingException(ExceptionType.REMOTING_COMMUNICATION, "Circuit breaker is open.  Kafka server is unavailable.");
+            }
+
+            record = trace(ProducerRecordFactory.create(topic, payload, transactionId, contentType));
+
+            sendResult = submit(selectLane(lane, payload), record);
+        }
+        catch (RuntimeException | RemotingException exception) {
+
+            if (admission == CircuitBreaker.HALF_OPEN) {
+                circuitBreaker.abandon();
+            }
+
+            topicMetrics.undelivered(getExceptionType(exception));
+
+            throw exception;
+        }
+
+        if (admission == CircuitBreaker.HALF_OPEN) {
+            sendResult.addCallback(result -> { }, exception -> abandonTrial(circuitBreaker, exception));
+        }
+
+        return sendResult;
+
+    }
+
+    /**
+     * Let another trial message through if the trial message failed without being
+     * handed to the producer, because it was discarded by the in-flight limit.
+     * @param circuitBreaker The circuit breaker
+     * @param exception The exception that the trial message failed with
+     */
+    private static void abandonTrial(
+        final CircuitBreaker circuitBreaker,
+        final Throwable exception) {
+
+        if (exception instanceof OverloadException) {
+            circuitBreaker.abandon();
+        }
+
+    }
+
+    /**
+     * Select traffic lane for message.  When no lane is named, the message is sent on
+     * the lane with the largest minimum payload size that the payload reaches, or on
+     * the default lane if the payload does not reach the minimum size of any lane.
+     * @param lane The name of the traffic lane, or {@code null} to select the lane by payload size
+     * @param payload The message payload
+     * @return The traffic lane
+     * @throws RemotingException if the lane is not configured
+     */
+    private Lane selectLane(
+        final String lane,
+        final byte[] payload) throws RemotingException {
+
+        Lane selectedLane;
+        int size;
+
+        if (lane != null) {
+            selectedLane = (DEFAULT_LANE.equals(lane) == true) ? defaultLane : lanes.get(lane);
+
+            if (selectedLane == null) {
+                throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Traffic lane " + lane + " is not configured.");
+            }
+
+            return selectedLane;
+        }
+
+        size = (payload == null) ? 0 : payload.length;
+
+        for (Lane candidate : sizedLanes) {
+
+            if (size >= candidate.minPayloadSize) {
+                return candidate;
+            }
+
+        }
+
+        return defaultLane;
+    }
+
+    /**
+     * Hand record to the producer of the traffic lane, subject to the in-flight limit
+     * of the lane.  The outcome is recorded in the metrics of the lane if traffic
+     * lanes are configured.
+     * @param lane The traffic lane
+     * @param record The record
+     * @return The future outcome of the record
+     * @throws OverloadException if the record is refused by the in-flight limit
+     */
+    private ListenableFuture<SendResult<String, byte[]>> submit(
+        final Lane lane,
+        final ProducerRecord<String, byte[]> record) throws OverloadException {
+
+        KafkaClientMetrics.LaneMetrics laneMetrics;
+        ListenableFuture<SendResult<String, byte[]>> sendResult;
+        long start;
+        int size;
+
+        laneMetrics = lane.metrics;
+
+        if (laneMetrics == null) {
+            return (lane.limiter == null) ? lane.stripes.send(record, this::handOver) : lane.limiter.submit(record);
+        }
+
+        laneMetrics.dispatched();
+
+        start = System.nanoTime();
+
+        size = (record.value() == null) ? 0 : record.value().length;
+
+        try {
+
+            sendResult = (lane.limiter == null) ? lane.stripes.send(record, this::handOver) : lane.limiter.submit(record);
+        }
+        catch (RuntimeException | OverloadException exception) {
+
+            laneMetrics.undelivered();
+
+            throw exception;
+        }
+
+        sendResult.addCallback(result -> laneMetrics.acknowledged(System.nanoTime() - start, size), exception -> laneMetrics.undelivered());
+
+        return sendResult;
+    }
+
+    /**
+     * Hand record to the producer, or to the spool if one is configured.
+     * @param template The Kafka template that wraps the producer
+     * @param record The record
+     * @return The future outcome of the record
+     */
+    private ListenableFuture<SendResult<String, byte[]>> handOver(
+        final KafkaTemplate<String, byte[]> template,
+        final ProducerRecord<String, byte[]> record) {
+
+        if (spool != null) {
+            return sendOrSpool(template, record);
+        }
+
+        return (breaker == null) ? template.send(record) : sendAndTrack(template, record);
+    }
+
+    /**
+     * Hand record to the producer, and report the outcome to the circuit breaker.
+     * The template reports a refusal by throwing an exception rather than through
+     * the future, so a refusal is reported to the circuit breaker as a failure too.
+     * @param template The Kafka template that wraps the producer
+     * @param record The record
+     * @return The future outcome of the record
+     */
+    private ListenableFuture<SendResult<String, byte[]>> sendAndTrack(
+        final KafkaTemplate<String, byte[]> template,
+        final ProducerRecord<String, byte[]> record) {
+
+        ListenableFuture<SendResult<String, byte[]>> future;
+
+        try {
+
+            future = template.send(record);
+        }
+        catch (RuntimeException exception) {
+
+            breaker.onFailure(exception);
+
+            throw exception;
+        }
+
+        future.addCallback(breaker);
+
+        return future;
+    }
+
+    /**
+     * Hand record to the producer, or write it to the spool.  The record is written
+     * to the spool straight away if the spool holds records that have not been replayed
+     * yet, or when the producer refuses the record or cannot deliver it in time.  The
+     * template reports a refusal by throwing an exception rather than through the future.  The
+     * future outcome of a record that has been written to the spool holds no metadata.
+     * @param template The Kafka template that wraps the producer
+     * @param record The record
+     * @return The future outcome of the record
+     */
+    private ListenableFuture<SendResult<String, byte[]>> sendOrSpool(
+        final KafkaTemplate<String, byte[]> template,
+        final ProducerRecord<String, byte[]> record) {
+
+        SettableListenableFuture<SendResult<String, byte[]>> sendResult;
+
+        sendResult = new SettableListenableFuture<SendResult<String, byte[]>>();
+
+        if (spool.isEmpty() == false) {
+            spool(record, sendResult, null);
+
+            return sendResult;
+        }
+
+        try {
+
+            template.send(record).addCallback(sendResult::set, exception -> spool(record, sendResult, exception));
+        }
+        catch (RuntimeException exception) {
+            spool(record, sendResult, exception);
+        }
+
+        return sendResult;
+    }
+
+    /**
+     * Write record to the spool.  The record is only written to the spool if the
+     * producer has not attempted to send it, or timed out while attempting to send it.
+     * @param record The record
+     * @param sendResult The future outcome of the record
+     * @param exception The exception of the producer, or {@code null} if the producer has not attempted to send the record
+     */
+    private void spool(
+        final ProducerRecord<String, byte[]> record,
+        final SettableListenableFuture<SendResult<String, byte[]>> sendResult,
+        final Throwable exception) {
+
+        String methodName = "spool";
+        SpoolJournal journal;
+        Header requestId;
+        Header contentType;
+        RemotingException closedException;
+
+        if ((exception != null) && (isTimeout(exception) == false)) {
+            sendResult.setException(exception);
+
+            return;
+        }
+
+        journal = spool;
+
+        if (journal == null) {
+            closedException = new RemotingException(ExceptionType.LOCAL_APPLICATION, "Kafka client is closed.");
+
+            if (exception != null) {
+                closedException.addSuppressed(exception);
+            }
+
+            sendResult.setException(closedException);
+
+            return;
+        }
+
+        requestId = record.headers().lastHeader(ProducerRecordFactory.REQUEST_ID);
+
+        contentType = record.headers().lastHeader(ProducerRecordFactory.CONTENT_TYPE);
+
+        try {
+
+            journal.append(record.topic(), (requestId == null) ? null : requestId.value(),
+                (contentType == null) ? null : contentType.value(), record.value());
+
+            sendResult.set(new SendResult<String, byte[]>(record, null));
+
+            if (logger.isDebugEnabled() == true) {
+                logger.debug(methodName, "Message written to spool.");
+            }
+
+        }
+        catch (RemotingException spoolException) {
+
+            if (exception != null) {
+                spoolException.addSuppressed(exception);
+            }
+
+            sendResult.setException(spoolException);
+        }
+
+    }
+
+    /**
+     * Determine whether exception was caused by a producer time out.
+     * @param exception The exception
+     * @return true if the exception was caused by a time out, false otherwise
+     */
+    private boolean isTimeout(
+        Throwable exception) {
+
+        while (exception != null) {
+
+            if (exception instanceof TimeoutException) {
+                return true;
+            }
+
+            exception = exception.getCause();
+        }
+
+        return false;
+    }
+
+    /**
+     * Replay the records in the spool, in the order in which they were written to
+     * the spool, until the client is closed.  The records are handed to the producer
+     * in batches, and only the records up to the first record that could not be
+     * delivered are removed from the spool.  When a record could not be delivered,
+     * the replay backs off before trying again.  A record that the Kafka server
+     * refuses for good, for example because it is too large or because the client
+     * is not authorized to write to its topic, is moved to the dead letter journal
+     * instead, so that it does not hold up the records behind it.
+     */
+    private void replay() {
+
+        String methodName = "replay";
+        long backoff;
+        List<SpoolJournal.Entry> entries;
+        List<ListenableFuture<SendResult<String, byte[]>>> results;
+        RuntimeException failure;
+        int replayed;
+
+        backoff = getReplayBackoff();
+
+        while (replayThread == Thread.currentThread()) {
+
+            try {
+
+                if (spool.await(1000) == false) {
+                    continue;
+                }
+
+                entries = spool.read(REPLAY_BATCH_SIZE);
+
+                results = new ArrayList<ListenableFuture<SendResult<String, byte[]>>>(entries.size());
+
+                failure = null;
+
+                for (SpoolJournal.Entry entry : entries) {
+
+                    try {
+
+                        results.add(kafkaTemplate.send(ProducerRecordFactory.create(entry.getTopic(), entry.getPayload(),
+                            entry.getRequestId(), entry.getContentType())));
+                    }
+                    catch (RuntimeException exception) {
+                        failure = exception;
+
+                        break;
+                    }
+
+                }
+
+                for (replayed = 0; replayed < results.size(); replayed++) {
+
+                    try {
+
+                        results.get(replayed).get();
+                    }
+                    catch (ExecutionException exception) {
+
+                        if (deadLetter(entries.get(replayed), exception.getCause()) == false) {
+                            break;
+                        }
+
+                    }
+
+                }
+
+                if ((replayed == results.size()) && (failure != null) && (deadLetter(entries.get(replayed), failure) == true)) {
+                    replayed++;
+                }
+
+                spool.commit(entries.subList(0, replayed));
+
+                if (replayed < entries.size()) {
+                    Thread.sleep(backoff);
+
+                    backoff = getReplayBackoff(backoff);
+                }
+                else {
+                    backoff = getReplayBackoff();
+
+                    if (logger.isDebugEnabled() == true) {
+                        logger.debug(methodName, "Replayed ", replayed, " messages from spool.");
+                    }
+
+                }
+
+            }
+            catch (InterruptedException exception) {
+                return;
+            }
+            catch (Exception exception) {
+                logger.warn(methodName, "Failed to replay messages from spool: ", translate(exception));
+
+                try {
+
+                    Thread.sleep(backoff);
+                }
+                catch (InterruptedException interruptedException) {
+                    return;
+                }
+
+                backoff = getReplayBackoff(backoff);
+            }
+
+        }
+
+    }
+
+    /**
+     * Move record that the Kafka server refuses for good from the spool to the dead
+     * letter journal.  A record that fails for any other reason is left in the spool.
+     * @param entry The spool entry of the record
+     * @param exception The exception that the record failed with
+     * @return true if the record has been moved, or is to be discarded, false if it must be replayed again
+     */
+    private boolean deadLetter(
+        final SpoolJournal.Entry entry,
+        final Throwable exception) {
+
+        String methodName = "deadLetter";
+
+        logger.warn(methodName, "Failed to replay message from spool: ", translate(exception));
+
+        if ((replayThread != Thread.currentThread()) || (isUndeliverable(exception) == false)) {
+            return false;
+        }
+
+        try {
+
+            deadLetters.append(entry.getTopic(), entry.getRequestId(), entry.getContentType(), entry.getPayload());
+
+            logger.error(methodName, "Message for topic ", entry.getTopic(), " cannot be delivered and was moved to the dead letter journal.");
+        }
+        catch (RemotingException deadLetterException) {
+            logger.error(methodName, "Message for topic ", entry.getTopic(), " cannot be delivered and was discarded: ",
+                deadLetterException.getMessage());
+        }
+
+        return true;
+    }
+
+    /**
+     * Determine whether exception means that the Kafka server refuses the record for
+     * good, rather than that the record may be delivered when it is retried.
+     * @param exception The exception
+     * @return true if the record cannot be delivered, false otherwise
+     */
+    private boolean isUndeliverable(
+        Throwable exception) {
+
+        while (exception != null) {
+
+            if (exception instanceof RetriableException) {
+                return false;
+            }
+
+            if (exception instanceof ApiException) {
+                return true;
+            }
+
+            exception = exception.getCause();
+        }
+
+        return false;
+    }
+
+    /**
+     * Get initial backoff of replay, which is the backoff period of the client,
+     * but no less than the minimum replay backoff.
+     * @return The backoff in milliseconds
+     */
+    private long getReplayBackoff() {
+        return Math.max(getBackoffPeriod(), MIN_REPLAY_BACKOFF);
+    }
+
+    /**
+     * Get next backoff of replay, which is the current backoff multiplied by the
+     * backoff multiplier, up to the backoff limit, but no less than the minimum
+     * replay backoff.
+     * @param backoff The current backoff in milliseconds
+     * @return The backoff in milliseconds
+     */
+    private long getReplayBackoff(
+        final long backoff) {
+
+        return Math.max((long) Math.min(backoff * getBackoffMultiplier(),
+            (getBackoffLimit() > 0) ? getBackoffLimit() : Long.MAX_VALUE), MIN_REPLAY_BACKOFF);
+    }
+
+    /**
+     * Close client.  Messages are refused from now on, and once the messages that
+     * are being handed to the producer have been handed over, the producer is
+     * released, and is closed if no other client shares it.  The spool is closed
+     * last, so that records which time out while the producer is closed are still
+     * written to it.  The metrics of the client are removed from the meter registry.
+     * Any records that remain in the spool are replayed when the client is started again.
+     */
+    public synchronized void close() {
+
+        String methodName = "close";
+        Thread thread;
+        SpoolJournal journal;
+
+        closed = true;
+
+        if (stripes == null) {
+            return;
+        }
+
+        thread = replayThread;
+
+        if (thread != null) {
+            replayThread = null;
+
+            thread.interrupt();
+
+            try {
+
+                thread.join(getShutdownTimeout());
+            }
+            catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (thread.isAlive() == true) {
+                logger.warn(methodName, "Spool replay did not stop within ", getShutdownTimeout(), " ms.");
+            }
+
+        }
+
+        if (defaultLane.limiter != null) {
+            defaultLane.limiter.close();
+        }
+
+        stripes.close(getShutdownTimeout());
+
+        for (Lane lane : lanes.values()) {
+
+            if (lane.limiter != null) {
+                lane.limiter.close();
+            }
+
+            lane.stripes.close(getShutdownTimeout());
+
+            release(lane.stripes);
+        }
+
+        if (transactions != null) {
+            transactions.close();
+
+            transactions = null;
+        }
+
+        release(stripes);
+
+        journal = spool;
+
+        if (journal != null) {
+            spool = null;
+
+            journal.close();
+
+            deadLetters.close();
+
+            deadLetters = null;
+        }
+
+        metrics.close();
+
+        stripes = null;
+
+        kafkaTemplate = null;
+    }
+
+    /**
+     * Serialize message.  Objects are encoded with the configured codec, straight
+     * to bytes without an intermediate {@code String}.  Messages which have already been
+     * encoded are used as is.  When tracing is enabled, the serialization is noted
+     * on the current thread for the tracing header of the record.
+     * @param <Rq> The request type
+     * @param topicMetrics The metrics of the topic
+     * @param message The message object
+     * @return The message payload
+     * @throws RemotingException if unable to serialize the message
+     */
+    private <Rq> byte[] serialize(
+        final KafkaClientMetrics.TopicMetrics topicMetrics,
+        final Rq message) throws RemotingException {
+
+        long start;
+        long elapsed;
+        byte[] payload;
+        Serialization serialization;
+
+        start = System.nanoTime();
+
+        try {
+
+            payload = encode(message);
+        }
+        catch (Exception exception) {
+
+            topicMetrics.failed(ExceptionType.LOCAL_APPLICATION);
+
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Failed to serialize message: " + exception.getMessage(), exception);
+        }
+
+        elapsed = System.nanoTime() - start;
+
+        topicMetrics.serialized(elapsed);
+
+        if (isTracing() == true) {
+            serialization = serializations.get();
+            serialization.payload = payload;
+            serialization.sendTime = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(elapsed);
+            serialization.nanos = elapsed;
+        }
+
+        return payload;
+    }
+
+    /**
+     * Add tracing header to record, if tracing is enabled.  The header reports the
+     * serialization that was noted on the current thread if it produced the payload of
+     * the record.  Otherwise the payload was encoded by the caller, and the message is
+     * reported as sent now, without any serialization time.
+     * @param record The record
+     * @return The record
+     */
+    private ProducerRecord<String, byte[]> trace(
+        final ProducerRecord<String, byte[]> record) {
+
+        Serialization serialization;
+
+        if (isTracing() == false) {
+            return record;
+        }
+
+        serialization = serializations.get();
+
+        if (serialization.payload == record.value()) {
+            TraceHeader.add(record.headers(), serialization.sendTime, serialization.nanos, instanceId);
+        }
+        else {
+            TraceHeader.add(record.headers(), System.currentTimeMillis(), 0, instanceId);
+        }
+
+        serialization.payload = null;
+
+        return record;
+    }
+
+    /**
+     * Encode message.
+     * @param <Rq> The request type
+     * @param message The message object
+     * @return The message payload
+     * @throws Exception if unable to encode the message
+     */
+    private <Rq> byte[] encode(
+        final Rq message) throws Exception {
+
+        ByteBuffer buffer;
+        byte[] payload;
+
+        if (message instanceof byte[]) {
+            return (byte[]) message;
+        }
+
+        if (message instanceof String) {
+            return ((String) message).getBytes(StandardCharsets.UTF_8);
+        }
+
+        if (message instanceof ByteBuffer) {
+            buffer = (ByteBuffer) message;
+
+            if ((buffer.hasArray() == true) && (buffer.arrayOffset() + buffer.position() == 0)
+                && (buffer.remaining() == buffer.array().length)) {
+                return buffer.array();
+            }
+
+            payload = new byte[buffer.remaining()];
+            buffer.duplicate().get(payload);
+
+            return payload;
+        }
+
+        return codec.encode(message);
+    }
+
+    /**
+     * Get content type of message payload.  Messages which have already been encoded
+     * are sent without a content type, as only the application knows how they are encoded.
+     * @param message The message object
+     * @return The content type of the codec, or {@code null} if the message has already been encoded
+     */
+    private String getContentType(
+        final Object message) {
+
+        if ((message instanceof byte[]) || (message instanceof String) || (message instanceof ByteBuffer)) {
+            return null;
+        }
+
+        return codec.getContentType();
+    }
+
+    /**
+     * Convert exception that occurred while sending a message into
+     * a {@code RemotingException}.
+     * @param exception The exception
+     * @return The remoting exception
+     */
+    private RemotingException toRemotingException(
+        final Throwable exception) {
+
+        if (exception instanceof RemotingException) {
+            return (RemotingException) exception;
+        }
+
+        if ((exception instanceof KafkaException) || (exception instanceof org.apache.kafka.common.KafkaException)) {
+            return new RemotingException(ExceptionType.REMOTING_COMMUNICATION, translate(exception), exception);
+        }
+
+        return new RemotingException(ExceptionType.REMOTING_COMMUNICATION, "Failed to send message: " + exception.getMessage(), exception);
+    }
+
+    /**
+     * Get exception type of exception.
+     * @param exception The exception
+     * @return The exception type of a {@code RemotingException}, otherwise {@code REMOTING_COMMUNICATION}
+     */
+    private static ExceptionType getExceptionType(
+        final Throwable exception) {
+        return (exception instanceof RemotingException) ? ((RemotingException) exception).getType() : ExceptionType.REMOTING_COMMUNICATION;
+    }
+
+    /**
+     * Records the outcome of a message that was handed to the producer, and
+     * completes the stage of the caller if there is one.  A single callback
+     * object is allocated for each message.
+     */
+    private final class SendCallback implements ListenableFutureCallback<SendResult<String, byte[]>> {
+
+        private KafkaClientMetrics.TopicMetrics topicMetrics;
+
+        private long start;
+
+        private CompletableFuture<RecordMetadata> sendResult;
+
+        private boolean logFailure;
+
+        /**
+         * Constructor.
+         * @param topicMetrics The metrics of the topic
+         * @param start The time at which the message was submitted, before any wait for the in-flight limit or the producer
+         * @param sendResult The stage of the caller, or {@code null} if there is none
+         * @param logFailure true if a failure must be written to the logs, false otherwise
+         */
+        SendCallback(
+            final KafkaClientMetrics.TopicMetrics topicMetrics,
+            final long start,
+            final CompletableFuture<RecordMetadata> sendResult,
+            final boolean logFailure) {
+
+            super();
+
+            this.topicMetrics = topicMetrics;
+
+            this.start = start;
+
+            this.sendResult = sendResult;
+
+            this.logFailure = logFailure;
+        }
+
+        /**
+         * Handle acknowledgement of message.
+         * @param result The send result
+         */
+        public void onSuccess(
+            final SendResult<String, byte[]> result) {
+
+            String methodName = "send";
+            long duration;
+            byte[] payload;
+
+            duration = System.nanoTime() - start;
+
+            payload = result.getProducerRecord().value();
+
+            if (result.getRecordMetadata() == null) {
+                topicMetrics.spooled();
+            }
+            else {
+                topicMetrics.acknowledged(duration, (payload == null) ? 0 : payload.length);
+            }
+
+            if (logger.isDebugEnabled() == true) {
+                logger.debug(methodName, "Message sent successfully.  Duration = ", TimeUnit.NANOSECONDS.toMillis(duration), " ms.");
+            }
+
+            if (sendResult != null) {
+                sendResult.complete(result.getRecordMetadata());
+            }
+
+        }
+
+        /**
+         * Handle failure of message.
+         * @param exception The exception
+         */
+        public void onFailure(
+            final Throwable exception) {
+
+            String methodName = "send";
+            long duration;
+
+            duration = System.nanoTime() - start;
+
+            topicMetrics.undelivered(getExceptionType(exception));
+
+            if (logFailure == true) {
+                logger.error(methodName, "Message send failed.  Duration = ", TimeUnit.NANOSECONDS.toMillis(duration), " ms.  ", translate(exception));
+            }
+            else if (logger.isDebugEnabled() == true) {
+                logger.debug(methodName, "Message send failed.  Duration = ", TimeUnit.NANOSECONDS.toMillis(duration), " ms.");
+            }
+
+            if (sendResult != null) {
+                sendResult.completeExceptionally(toRemotingException(exception));
+            }
+
+        }
+
+    }
+
+    /**
+     * A transaction on a transactional producer from the pool.
+     */
+    private final class Transaction implements KafkaTransaction {
+
+        private Producer<String, byte[]> producer;
+
+        private String transactionId;
+
+        /**
+         * Constructor.
+         * @param producer The transactional producer
+         * @param transactionId The transaction identifier
+         */
+        Transaction(
+            final Producer<String, byte[]> producer,
+            final String transactionId) {
+
+            super();
+
+            this.producer = producer;
+
+            this.transactionId = transactionId;
+        }
+
+        /**
+         * Send message to the configured topic within the transaction.
+         * @param <Rq> The request type
+         * @param message The message object
+         * @return The future record metadata, which is available once the transaction has been committed,
+         * or which fails with a {@code RemotingException} if the message could not be sent
+         * @throws RemotingException if unable to send the message
+         */
+        public <Rq> Future<RecordMetadata> send(
+            final Rq message) throws RemotingException {
+
+            return send(getTopic(), message);
+        }
+
+        /**
+         * Send message to the specified topic within the transaction.
+         * @param <Rq> The request type
+         * @param topic The topic
+         * @param message The message object
+         * @return The future record metadata, which is available once the transaction has been committed,
+         * or which fails with a {@code RemotingException} if the message could not be sent
+         * @throws RemotingException if unable to send the message
+         */
+        public <Rq> Future<RecordMetadata> send(
+            final String topic,
+            final Rq message) throws RemotingException {
+
+            KafkaClientMetrics.TopicMetrics topicMetrics;
+            ProducerRecord<String, byte[]> record;
+            CompletableFuture<RecordMetadata> sendResult;
+            SendCallback callback;
+
+            initialize(topic);
+
+            topicMetrics = metrics.forTopic(topic);
+
+            record = trace(ProducerRecordFactory.create(topic, serialize(topicMetrics, message), transactionId, getContentType(message)));
+
+            sendResult = new CompletableFuture<RecordMetadata>();
+
+            callback = new SendCallback(topicMetrics, System.nanoTime(), sendResult, false);
+
+            topicMetrics.dispatched();
+
+            try {
+
+                producer.send(record, (metadata, exception) -> {
+
+                    if (exception == null) {
+                        callback.onSuccess(new SendResult<String, byte[]>(record, metadata));
+                    }
+                    else {
+                        callback.onFailure(exception);
+                    }
+
+                });
+
+            }
+            catch (Throwable exception) {
+                callback.onFailure(exception);
+
+                throw toRemotingException(exception);
+            }
+
+            return sendResult;
+        }
+
+    }
+
+    /**
+     * A traffic lane, which is backed by its own producer stripes.
+     */
+    private static final class Lane {
+
+        private String name;
+
+        private int minPayloadSize;
+
+        private ProducerStripes stripes;
+
+        private InFlightLimiter limiter;
+
+        private KafkaClientMetrics.LaneMetrics metrics;
+
+        /**
+         * Constructor.
+         * @param name The name of the lane
+         * @param minPayloadSize The minimum payload size in bytes, or 0 if the lane is only selected by name
+         * @param stripes The producer stripes of the lane
+         * @param limiter The in-flight limiter of the lane, or {@code null} if unlimited
+         * @param metrics The metrics of the lane, or {@code null} if no traffic lanes are configured
+         */
+        Lane(
+            final String name,
+            final int minPayloadSize,
+            final ProducerStripes stripes,
+            final InFlightLimiter limiter,
+            final KafkaClientMetrics.LaneMetrics metrics) {
+
+            super();
+
+            this.name = name;
+
+            this.minPayloadSize = minPayloadSize;
+
+            this.stripes = stripes;
+
+            this.limiter = limiter;
+
+            this.metrics = metrics;
+        }
+
+    }
+
+    /**
+     * The serialization of the message that was most recently serialized on a thread.
+     */
+    private static final class Serialization {
+
+        private byte[] payload;
+
+        private long sendTime;
+
+        private long nanos;
 
-        return message;
     }
 
 }
@@ -7,11 +7,13 @@
         Service Harness
 */
 package org.melior.client.kafka;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
- * Convenience class for building a {@code KafkaClient}.  Provides
- * switches for asynchronous transport, Kerberos authentication and
- * secure connections.
+ * Convenience class for building a {@code KafkaClient} or a
+ * {@code KafkaConsumerClient}.  Provides
+ * switches for asynchronous transport, Kerberos authentication,
+ * secure connections, eager initialization, metrics and producer tuning profiles.
  * @author Melior
  * @since 2.3
  */
@@ -23,6 +25,12 @@ public class KafkaClientBuilder {
 
     private boolean ssl = false;
 
+    private ProducerProfile profile = ProducerProfile.DEFAULT;
+
+    private boolean eager = false;
+
+    private MeterRegistry meterRegistry;
+
     /**
      * Constructor.
      */
@@ -46,7 +54,17 @@ public class KafkaClientBuilder {
      */
     public KafkaClient build() {
 
-        return new KafkaClient(async, kerberos, ssl);
+        return new KafkaClient(async, kerberos, ssl, profile, eager, meterRegistry);
+    }
+
+    /**
+     * Build Kafka consumer client.  The switches for asynchronous transport,
+     * eager initialization and producer tuning profiles do not apply.
+     * @return The Kafka consumer client
+     */
+    public KafkaConsumerClient buildConsumer() {
+
+        return new KafkaConsumerClient(kerberos, ssl);
     }
 
     /**
@@ -82,4 +100,64 @@ public class KafkaClientBuilder {
         return this;
     }
 
+    /**
+     * Enable eager initialization.  The producer is built, authenticated and
+     * connected to the Kafka server when the application context starts,
+     * rather than when the first message is sent.
+     * @return The Kafka client builder
+     */
+    public KafkaClientBuilder eager() {
+
+        this.eager = true;
+
+        return this;
+    }
+
+    /**
+     * Enable metrics.  The metrics of the client and of the underlying
+     * producer are published to the specified meter registry.
+     * @param meterRegistry The meter registry
+     * @return The Kafka client builder
+     */
+    public KafkaClientBuilder metrics(
+        final MeterRegistry meterRegistry) {
+
+        this.meterRegistry = meterRegistry;
+
+        return this;
+    }
+
+    /**
+     * Tune the producer for the lowest latency.
+     * @return The Kafka client builder
+     */
+    public KafkaClientBuilder lowLatency() {
+
+        this.profile = ProducerProfile.LOW_LATENCY;
+
+        return this;
+    }
+
+    /**
+     * Tune the producer for a balance between latency and throughput.
+     * @return The Kafka client builder
+     */
+    public KafkaClientBuilder balanced() {
+
+        this.profile = ProducerProfile.BALANCED;
+
+        return this;
+    }
+
+    /**
+     * Tune the producer for the highest throughput.
+     * @return The Kafka client builder
+     */
+    public KafkaClientBuilder highThroughput() {
+
+        this.profile = ProducerProfile.HIGH_THROUGHPUT;
+
+        return this;
+    }
+
 }
@@ -7,6 +7,10 @@
         Service Harness
 */
 package org.melior.client.kafka;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.melior.client.core.ClientConfig;
 import org.springframework.core.io.Resource;
 
@@ -25,8 +29,74 @@ public class KafkaClientConfig extends ClientConfig {
 
     private Resource keytab;
 
+    private int sslSessionCacheSize = 20480;
+
+    private int sslSessionTimeout = 86400 * 1000;
+
     private String topic;
 
+    private List<String> topics = new ArrayList<String>();
+
+    private int shutdownTimeout = 10 * 1000;
+
+    private boolean latencyAwarePartitioning = false;
+
+    private double partitioningFairness = 0.1;
+
+    private String codec = MessageCodecs.JSON;
+
+    private boolean afterburner = false;
+
+    private boolean tracing = false;
+
+    private Map<String, String> producer = new HashMap<String, String>();
+
+    private Map<String, KafkaLaneConfig> lanes = new HashMap<String, KafkaLaneConfig>();
+
+    private int producerStripes = 1;
+
+    private StripeSelection stripeSelection = StripeSelection.THREAD;
+
+    private int maxInFlightMessages = 0;
+
+    private long maxInFlightBytes = 0;
+
+    private OverloadPolicy overloadPolicy = OverloadPolicy.BLOCK;
+
+    private int overloadTimeout = 1000;
+
+    private int publisherConcurrency = 256;
+
+    private String transactionIdPrefix;
+
+    private int transactionPoolSize = 4;
+
+    private int groupCommitSize = 1;
+
+    private int groupCommitWindow = 0;
+
+    private int failureThreshold = 5;
+
+    private String spool;
+
+    private int spoolSegmentSize = 64 * 1024 * 1024;
+
+    private long spoolLimit = 1024L * 1024 * 1024;
+
+    private SpoolOverflowPolicy spoolOverflowPolicy = SpoolOverflowPolicy.FAIL;
+
+    private String groupId;
+
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+
+    private int maxPendingRecords = 10000;
+
+    private int retryAttempts = 3;
+
+    private int retryInterval = 1000;
+
+    private Map<String, String> consumer = new HashMap<String, String>();
+
     /**
      * Constructor.
      */
@@ -47,7 +117,40 @@ public class KafkaClientConfig extends ClientConfig {
         this.jaas = clientConfig.jaas;
         this.kerberosConfig = clientConfig.kerberosConfig;
         this.keytab = clientConfig.keytab;
+        this.sslSessionCacheSize = clientConfig.sslSessionCacheSize;
+        this.sslSessionTimeout = clientConfig.sslSessionTimeout;
         this.topic = clientConfig.topic;
+        this.topics = new ArrayList<String>(clientConfig.topics);
+        this.shutdownTimeout = clientConfig.shutdownTimeout;
+        this.latencyAwarePartitioning = clientConfig.latencyAwarePartitioning;
+        this.partitioningFairness = clientConfig.partitioningFairness;
+        this.codec = clientConfig.codec;
+        this.afterburner = clientConfig.afterburner;
+        this.tracing = clientConfig.tracing;
+        this.producer = new HashMap<String, String>(clientConfig.producer);
+        this.lanes = new HashMap<String, KafkaLaneConfig>(clientConfig.lanes);
+        this.producerStripes = clientConfig.producerStripes;
+        this.stripeSelection = clientConfig.stripeSelection;
+        this.maxInFlightMessages = clientConfig.maxInFlightMessages;
+        this.maxInFlightBytes = clientConfig.maxInFlightBytes;
+        this.overloadPolicy = clientConfig.overloadPolicy;
+        this.overloadTimeout = clientConfig.overloadTimeout;
+        this.publisherConcurrency = clientConfig.publisherConcurrency;
+        this.transactionIdPrefix = clientConfig.transactionIdPrefix;
+        this.transactionPoolSize = clientConfig.transactionPoolSize;
+        this.groupCommitSize = clientConfig.groupCommitSize;
+        this.groupCommitWindow = clientConfig.groupCommitWindow;
+        this.failureThreshold = clientConfig.failureThreshold;
+        this.spool = clientConfig.spool;
+        this.spoolSegmentSize = clientConfig.spoolSegmentSize;
+        this.spoolLimit = clientConfig.spoolLimit;
+        this.spoolOverflowPolicy = clientConfig.spoolOverflowPolicy;
+        this.groupId = clientConfig.groupId;
+        this.concurrency = clientConfig.concurrency;
+        this.maxPendingRecords = clientConfig.maxPendingRecords;
+        this.retryAttempts = clientConfig.retryAttempts;
+        this.retryInterval = clientConfig.retryInterval;
+        this.consumer = new HashMap<String, String>(clientConfig.consumer);
 
         return this;
     }
@@ -119,6 +222,43 @@ public class KafkaClientConfig extends ClientConfig {
         this.keytab = keytab;
     }
 
+    /**
+     * Get SSL session cache size.
+     * @return The SSL session cache size
+     */
+    public int getSslSessionCacheSize() {
+        return sslSessionCacheSize;
+    }
+
+    /**
+     * Set SSL session cache size.  This is the number of SSL sessions that are
+     * retained, so that reconnects to the Kafka servers may resume a session
+     * instead of performing a full handshake.  Set to 0 for no limit.
+     * @param sslSessionCacheSize The SSL session cache size
+     */
+    public void setSslSessionCacheSize(
+        final int sslSessionCacheSize) {
+        this.sslSessionCacheSize = sslSessionCacheSize;
+    }
+
+    /**
+     * Get SSL session timeout.
+     * @return The SSL session timeout
+     */
+    public int getSslSessionTimeout() {
+        return sslSessionTimeout;
+    }
+
+    /**
+     * Set SSL session timeout.  This is the amount of time that an SSL session
+     * may be resumed after it was established.
+     * @param sslSessionTimeout The SSL session timeout, specified in seconds
+     */
+    public void setSslSessionTimeout(
+        final int sslSessionTimeout) {
+        this.sslSessionTimeout = sslSessionTimeout * 1000;
+    }
+
     /**
      * Get topic.
      * @return The topic
@@ -136,4 +276,576 @@ public class KafkaClientConfig extends ClientConfig {
         this.topic = topic;
     }
 
+    /**
+     * Get additional topics.
+     * @return The additional topics
+     */
+    public List<String> getTopics() {
+        return topics;
+    }
+
+    /**
+     * Set additional topics.  The partition metadata of these topics is
+     * fetched when the client starts, along with that of the topic.
+     * @param topics The additional topics
+     */
+    public void setTopics(
+        final List<String> topics) {
+        this.topics = topics;
+    }
+
+    /**
+     * Get shutdown timeout.
+     * @return The shutdown timeout
+     */
+    public int getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    /**
+     * Set shutdown timeout.
+     * @param shutdownTimeout The shutdown timeout, specified in seconds
+     */
+    public void setShutdownTimeout(
+        final int shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout * 1000;
+    }
+
+    /**
+     * Get latency aware partitioning indicator.
+     * @return true if records without a key are assigned to partitions based on
+     * the latency of the partition leaders, false otherwise
+     */
+    public boolean isLatencyAwarePartitioning() {
+        return latencyAwarePartitioning;
+    }
+
+    /**
+     * Set latency aware partitioning indicator.
+     * @param latencyAwarePartitioning true if records without a key are assigned to
+     * partitions based on the latency of the partition leaders, false otherwise
+     */
+    public void setLatencyAwarePartitioning(
+        final boolean latencyAwarePartitioning) {
+        this.latencyAwarePartitioning = latencyAwarePartitioning;
+    }
+
+    /**
+     * Get partitioning fairness.
+     * @return The fraction of records that are assigned to a random partition
+     */
+    public double getPartitioningFairness() {
+        return partitioningFairness;
+    }
+
+    /**
+     * Set partitioning fairness.
+     * @param partitioningFairness The fraction of records that are assigned to a random partition
+     */
+    public void setPartitioningFairness(
+        final double partitioningFairness) {
+        this.partitioningFairness = partitioningFairness;
+    }
+
+    /**
+     * Get message codec.
+     * @return The message codec
+     */
+    public String getCodec() {
+        return codec;
+    }
+
+    /**
+     * Set message codec.  This is the name of a built-in codec, {@code json},
+     * {@code smile}, {@code cbor} or {@code avro}, or the class name of a custom
+     * {@code MessageCodec}.  A consumer decodes records that have no content type
+     * with this codec.
+     * @param codec The message codec
+     */
+    public void setCodec(
+        final String codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * Determine whether bytecode-generated accessors are enabled.
+     * @return true if bytecode-generated accessors are enabled, false otherwise
+     */
+    public boolean isAfterburner() {
+        return afterburner;
+    }
+
+    /**
+     * Set whether bytecode-generated accessors are enabled.  The built-in codecs then
+     * get and set the properties of messages with generated bytecode instead of
+     * reflection.  Requires {@code jackson-module-afterburner}.
+     * @param afterburner The bytecode-generated accessors indicator
+     */
+    public void setAfterburner(
+        final boolean afterburner) {
+        this.afterburner = afterburner;
+    }
+
+    /**
+     * Determine whether tracing headers are enabled.
+     * @return true if tracing headers are enabled, false otherwise
+     */
+    public boolean isTracing() {
+        return tracing;
+    }
+
+    /**
+     * Set whether tracing headers are enabled.  Every message is then sent with a
+     * compact header that holds the time at which it was sent, the time that was
+     * spent serializing it and handing it to the producer, and the identifier of
+     * the client that sent it, which a {@code LatencyRecorder} can measure on the
+     * consumer side.
+     * @param tracing The tracing headers indicator
+     */
+    public void setTracing(
+        final boolean tracing) {
+        this.tracing = tracing;
+    }
+
+    /**
+     * Get producer properties.
+     * @return The producer properties
+     */
+    public Map<String, String> getProducer() {
+        return producer;
+    }
+
+    /**
+     * Set producer properties.  These are passed to the Kafka producer as is,
+     * and override any producer properties that the client derives from its
+     * own configuration or from the selected profile.
+     * @param producer The producer properties
+     */
+    public void setProducer(
+        final Map<String, String> producer) {
+        this.producer = producer;
+    }
+
+    /**
+     * Get traffic lanes.
+     * @return The traffic lanes, keyed by name
+     */
+    public Map<String, KafkaLaneConfig> getLanes() {
+        return lanes;
+    }
+
+    /**
+     * Set traffic lanes.  Every traffic lane is backed by its own producer, which
+     * is configured like the producer of the client, except for the profile and
+     * the producer properties of the lane.
+     * @param lanes The traffic lanes, keyed by name
+     */
+    public void setLanes(
+        final Map<String, KafkaLaneConfig> lanes) {
+        this.lanes = lanes;
+    }
+
+    /**
+     * Get number of producer stripes.
+     * @return The number of producer stripes
+     */
+    public int getProducerStripes() {
+        return producerStripes;
+    }
+
+    /**
+     * Set number of producer stripes.  The messages of the client, and of every
+     * traffic lane, are spread over this many producers, so that concurrent senders
+     * do not all contend for the record accumulator of a single producer.  Messages
+     * with a key are always sent on the same producer, so that their order is kept.
+     * @param producerStripes The number of producer stripes
+     */
+    public void setProducerStripes(
+        final int producerStripes) {
+        this.producerStripes = producerStripes;
+    }
+
+    /**
+     * Get stripe selection.
+     * @return The stripe selection
+     */
+    public StripeSelection getStripeSelection() {
+        return stripeSelection;
+    }
+
+    /**
+     * Set stripe selection, which determines the producer stripe on which a
+     * message without a key is sent.
+     * @param stripeSelection The stripe selection
+     */
+    public void setStripeSelection(
+        final StripeSelection stripeSelection) {
+        this.stripeSelection = stripeSelection;
+    }
+
+    /**
+     * Get maximum number of messages in flight.
+     * @return The maximum number of messages in flight, or 0 if unlimited
+     */
+    public int getMaxInFlightMessages() {
+        return maxInFlightMessages;
+    }
+
+    /**
+     * Set maximum number of messages in flight.  A message is in flight from the
+     * moment that it is handed to the producer until its outcome is known.
+     * @param maxInFlightMessages The maximum number of messages in flight, or 0 if unlimited
+     */
+    public void setMaxInFlightMessages(
+        final int maxInFlightMessages) {
+        this.maxInFlightMessages = maxInFlightMessages;
+    }
+
+    /**
+     * Get maximum number of bytes in flight.
+     * @return The maximum number of bytes in flight, or 0 if unlimited
+     */
+    public long getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+    /**
+     * Set maximum number of bytes in flight.
+     * @param maxInFlightBytes The maximum number of bytes in flight, specified in megabytes, or 0 if unlimited
+     */
+    public void setMaxInFlightBytes(
+        final long maxInFlightBytes) {
+        this.maxInFlightBytes = maxInFlightBytes * 1024 * 1024;
+    }
+
+    /**
+     * Get overload policy.
+     * @return The overload policy
+     */
+    public OverloadPolicy getOverloadPolicy() {
+        return overloadPolicy;
+    }
+
+    /**
+     * Set overload policy.  The overload policy applies when a message would
+     * exceed the maximum number of messages or bytes in flight.
+     * @param overloadPolicy The overload policy
+     */
+    public void setOverloadPolicy(
+        final OverloadPolicy overloadPolicy) {
+        this.overloadPolicy = overloadPolicy;
+    }
+
+    /**
+     * Get overload timeout.
+     * @return The overload timeout
+     */
+    public int getOverloadTimeout() {
+        return overloadTimeout;
+    }
+
+    /**
+     * Set overload timeout.  This is the amount of time that a caller is blocked
+     * when the limit has been reached and the overload policy is to block.
+     * @param overloadTimeout The overload timeout, specified in milliseconds
+     */
+    public void setOverloadTimeout(
+        final int overloadTimeout) {
+        this.overloadTimeout = overloadTimeout;
+    }
+
+    /**
+     * Get publisher concurrency.
+     * @return The publisher concurrency
+     */
+    public int getPublisherConcurrency() {
+        return publisherConcurrency;
+    }
+
+    /**
+     * Set publisher concurrency.  This is the maximum number of messages from a
+     * reactive publisher that may be in flight to the Kafka server at any time.
+     * No more messages are requested from the publisher until the outcome of an
+     * earlier message is known.
+     * @param publisherConcurrency The publisher concurrency
+     */
+    public void setPublisherConcurrency(
+        final int publisherConcurrency) {
+        this.publisherConcurrency = publisherConcurrency;
+    }
+
+    /**
+     * Get transactional identifier prefix.
+     * @return The transactional identifier prefix
+     */
+    public String getTransactionIdPrefix() {
+        return transactionIdPrefix;
+    }
+
+    /**
+     * Set transactional identifier prefix.  Messages may only be sent in transactions
+     * when a prefix is set.  Every transactional producer of the client is identified
+     * by the prefix and its index in the pool, so the prefix must be unique to each
+     * instance of the application.
+     * @param transactionIdPrefix The transactional identifier prefix
+     */
+    public void setTransactionIdPrefix(
+        final String transactionIdPrefix) {
+        this.transactionIdPrefix = transactionIdPrefix;
+    }
+
+    /**
+     * Get transaction pool size.
+     * @return The transaction pool size
+     */
+    public int getTransactionPoolSize() {
+        return transactionPoolSize;
+    }
+
+    /**
+     * Set transaction pool size.  This is the number of transactional producers,
+     * and therefore the number of transactions that may be in progress at any time.
+     * @param transactionPoolSize The transaction pool size
+     */
+    public void setTransactionPoolSize(
+        final int transactionPoolSize) {
+        this.transactionPoolSize = transactionPoolSize;
+    }
+
+    /**
+     * Get group commit size.
+     * @return The group commit size
+     */
+    public int getGroupCommitSize() {
+        return groupCommitSize;
+    }
+
+    /**
+     * Set group commit size.  This is the maximum number of batches that may share
+     * a single transaction.  Group commit is disabled when set to 1.
+     * @param groupCommitSize The group commit size
+     */
+    public void setGroupCommitSize(
+        final int groupCommitSize) {
+        this.groupCommitSize = groupCommitSize;
+    }
+
+    /**
+     * Get group commit window.
+     * @return The group commit window
+     */
+    public int getGroupCommitWindow() {
+        return groupCommitWindow;
+    }
+
+    /**
+     * Set group commit window.  This is the amount of time that a transaction waits
+     * for other batches to join before it is committed.  When set to 0, only the
+     * batches that join while the batch that started the transaction is being sent
+     * share the transaction.
+     * @param groupCommitWindow The group commit window, specified in milliseconds
+     */
+    public void setGroupCommitWindow(
+        final int groupCommitWindow) {
+        this.groupCommitWindow = groupCommitWindow;
+    }
+
+    /**
+     * Get failure threshold.
+     * @return The failure threshold
+     */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Set failure threshold.  This is the number of consecutive messages that may fail
+     * to be delivered because of a transient failure before the circuit breaker trips.
+     * Set to 0 to disable the circuit breaker.
+     * @param failureThreshold The failure threshold
+     */
+    public void setFailureThreshold(
+        final int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * Get spool directory.
+     * @return The spool directory
+     */
+    public String getSpool() {
+        return spool;
+    }
+
+    /**
+     * Set spool directory.  When a spool directory is set, messages that cannot
+     * be handed to the Kafka server are written to a journal in this directory,
+     * from which they are replayed once the Kafka server is available again.
+     * @param spool The spool directory
+     */
+    public void setSpool(
+        final String spool) {
+        this.spool = spool;
+    }
+
+    /**
+     * Get spool segment size.
+     * @return The spool segment size
+     */
+    public int getSpoolSegmentSize() {
+        return spoolSegmentSize;
+    }
+
+    /**
+     * Set spool segment size.
+     * @param spoolSegmentSize The spool segment size, specified in megabytes
+     */
+    public void setSpoolSegmentSize(
+        final int spoolSegmentSize) {
+        this.spoolSegmentSize = spoolSegmentSize * 1024 * 1024;
+    }
+
+    /**
+     * Get spool limit.
+     * @return The spool limit
+     */
+    public long getSpoolLimit() {
+        return spoolLimit;
+    }
+
+    /**
+     * Set spool limit.
+     * @param spoolLimit The maximum amount of disk space that the spool may use, specified in megabytes
+     */
+    public void setSpoolLimit(
+        final long spoolLimit) {
+        this.spoolLimit = spoolLimit * 1024 * 1024;
+    }
+
+    /**
+     * Get spool overflow policy.
+     * @return The spool overflow policy
+     */
+    public SpoolOverflowPolicy getSpoolOverflowPolicy() {
+        return spoolOverflowPolicy;
+    }
+
+    /**
+     * Set spool overflow policy.
+     * @param spoolOverflowPolicy The spool overflow policy
+     */
+    public void setSpoolOverflowPolicy(
+        final SpoolOverflowPolicy spoolOverflowPolicy) {
+        this.spoolOverflowPolicy = spoolOverflowPolicy;
+    }
+
+    /**
+     * Get consumer group identifier.
+     * @return The consumer group identifier
+     */
+    public String getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * Set consumer group identifier.
+     * @param groupId The consumer group identifier
+     */
+    public void setGroupId(
+        final String groupId) {
+        this.groupId = groupId;
+    }
+
+    /**
+     * Get concurrency.
+     * @return The number of threads that process consumed records
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Set concurrency.
+     * @param concurrency The number of threads that process consumed records
+     */
+    public void setConcurrency(
+        final int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Get maximum number of pending records.
+     * @return The maximum number of pending records
+     */
+    public int getMaxPendingRecords() {
+        return maxPendingRecords;
+    }
+
+    /**
+     * Set maximum number of pending records.  When this many consumed records
+     * are waiting to be processed, or are being processed, the consumer stops
+     * fetching records until half of them have been processed.
+     * @param maxPendingRecords The maximum number of pending records
+     */
+    public void setMaxPendingRecords(
+        final int maxPendingRecords) {
+        this.maxPendingRecords = maxPendingRecords;
+    }
+
+    /**
+     * Get retry attempts.
+     * @return The retry attempts
+     */
+    public int getRetryAttempts() {
+        return retryAttempts;
+    }
+
+    /**
+     * Set retry attempts.  This is the number of times that the processing of a
+     * consumed record is retried when its handler fails, before the record is
+     * passed to the error handler.
+     * @param retryAttempts The retry attempts
+     */
+    public void setRetryAttempts(
+        final int retryAttempts) {
+        this.retryAttempts = retryAttempts;
+    }
+
+    /**
+     * Get retry interval.
+     * @return The retry interval
+     */
+    public int getRetryInterval() {
+        return retryInterval;
+    }
+
+    /**
+     * Set retry interval.  This is the amount of time to wait before the processing
+     * of a consumed record is retried.  The interval doubles with every attempt.
+     * @param retryInterval The retry interval, specified in milliseconds
+     */
+    public void setRetryInterval(
+        final int retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    /**
+     * Get consumer properties.
+     * @return The consumer properties
+     */
+    public Map<String, String> getConsumer() {
+        return consumer;
+    }
+
+    /**
+     * Set consumer properties.  These are passed to the Kafka consumer as is,
+     * and override any consumer properties that the client derives from its
+     * own configuration.
+     * @param consumer The consumer properties
+     */
+    public void setConsumer(
+        final Map<String, String> consumer) {
+        this.consumer = consumer;
+    }
+
 }
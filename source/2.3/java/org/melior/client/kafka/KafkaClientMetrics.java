@@ -0,0 +1,638 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.melior.service.exception.ExceptionType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Publishes the metrics of a {@code KafkaClient} to a Micrometer {@code MeterRegistry}.
+ * The metrics of the send path are tagged with the name of the client and with the
+ * topic, and the key metrics of the underlying producer are bridged as gauges that
+ * are tagged with the name of the client.  When traffic lanes are configured, the
+ * send path and the producer of every lane are measured separately as well.
+ * <p>
+ * The name of the client is made unique among the clients whose metrics are
+ * published, so that clients with the same name do not share meters, and all
+ * meters are removed from the registry when the metrics are closed.
+ * @author Melior
+ * @since 2.3
+ */
+public class KafkaClientMetrics {
+
+    private static final String PREFIX = "melior.kafka.";
+
+    private static final String[] PRODUCER_METRICS = {"record-queue-time-avg", "record-queue-time-max",
+        "batch-size-avg", "buffer-available-bytes", "request-latency-avg", "request-latency-max"};
+
+    private static final Set<String> clients = new HashSet<String>();
+
+    private MeterRegistry registry;
+
+    private String client;
+
+    private Tags tags;
+
+    private List<Meter> meters;
+
+    private volatile boolean closed;
+
+    private Map<String, TopicMetrics> topics;
+
+    /**
+     * Constructor.
+     * @param registry The meter registry
+     * @param client The name of the client
+     */
+    KafkaClientMetrics(
+        final MeterRegistry registry,
+        final String client) {
+
+        super();
+
+        this.registry = registry;
+
+        this.client = acquireClient(client);
+
+        this.tags = Tags.of("client", this.client);
+
+        this.meters = new CopyOnWriteArrayList<Meter>();
+
+        this.closed = false;
+
+        this.topics = new ConcurrentHashMap<String, TopicMetrics>();
+    }
+
+    /**
+     * Acquire unique name of client.  The name is suffixed with a sequence number
+     * if another client already uses it.
+     * @param client The name of the client
+     * @return The unique name of the client
+     */
+    private static synchronized String acquireClient(
+        final String client) {
+
+        String name;
+
+        name = client;
+
+        for (int i = 2; clients.contains(name) == true; i++) {
+            name = client + "-" + i;
+        }
+
+        clients.add(name);
+
+        return name;
+    }
+
+    /**
+     * Release unique name of client.
+     * @param client The unique name of the client
+     */
+    private static synchronized void releaseClient(
+        final String client) {
+
+        clients.remove(client);
+    }
+
+    /**
+     * Keep meter so that it is removed from the registry when the metrics are closed.
+     * A meter that is registered after the metrics have been closed is removed at once.
+     * @param <M> The meter type
+     * @param meter The meter
+     * @return The meter
+     */
+    private <M extends Meter> M track(
+        final M meter) {
+
+        meters.add(meter);
+
+        if (closed == true) {
+            registry.remove(meter);
+        }
+
+        return meter;
+    }
+
+    /**
+     * Close metrics.  All meters of the client are removed from the registry.
+     */
+    void close() {
+
+        if (closed == true) {
+            return;
+        }
+
+        closed = true;
+
+        for (Meter meter : meters) {
+            registry.remove(meter);
+        }
+
+        meters.clear();
+
+        releaseClient(client);
+    }
+
+    /**
+     * Get metrics of topic.
+     * @param topic The topic
+     * @return The metrics of the topic
+     */
+    TopicMetrics forTopic(
+        final String topic) {
+
+        TopicMetrics topicMetrics;
+
+        topicMetrics = topics.get(topic);
+
+        if (topicMetrics == null) {
+            topicMetrics = topics.computeIfAbsent(topic, key -> new TopicMetrics(key));
+        }
+
+        return topicMetrics;
+    }
+
+    /**
+     * Bridge the key metrics of the producers as gauges.  When there is more than
+     * one producer stripe, the gauges are tagged with the index of the stripe.
+     * @param stripes The producer stripes
+     */
+    void bindProducer(
+        final ProducerStripes stripes) {
+
+        for (int i = 0; i < stripes.size(); i++) {
+
+            for (String name : PRODUCER_METRICS) {
+
+                track(Gauge.builder(PREFIX + "producer." + name, stripes, getProducerMetric(i, name))
+                    .tags(getStripeTags(tags, stripes, i))
+                    .description("The " + name + " metric of the Kafka producer")
+                    .register(registry));
+            }
+
+        }
+
+    }
+
+    /**
+     * Get metrics of traffic lane, and bridge the key metrics of the producer
+     * of the lane as gauges.
+     * @param lane The name of the lane
+     * @param stripes The producer stripes of the lane
+     * @return The metrics of the lane
+     */
+    LaneMetrics forLane(
+        final String lane,
+        final ProducerStripes stripes) {
+
+        LaneMetrics laneMetrics;
+
+        laneMetrics = new LaneMetrics(lane);
+
+        for (int i = 0; i < stripes.size(); i++) {
+
+            for (String name : PRODUCER_METRICS) {
+
+                track(Gauge.builder(PREFIX + "lane.producer." + name, stripes, getProducerMetric(i, name))
+                    .tags(getStripeTags(laneMetrics.laneTags, stripes, i))
+                    .description("The " + name + " metric of the Kafka producer of the lane")
+                    .register(registry));
+            }
+
+        }
+
+        return laneMetrics;
+    }
+
+    /**
+     * Get tags of producer stripe.
+     * @param baseTags The tags of the client or of the lane
+     * @param stripes The producer stripes
+     * @param stripe The index of the stripe
+     * @return The tags of the stripe, which are the base tags if there is only one stripe
+     */
+    private static Tags getStripeTags(
+        final Tags baseTags,
+        final ProducerStripes stripes,
+        final int stripe) {
+        return (stripes.size() == 1) ? baseTags : baseTags.and("stripe", String.valueOf(stripe));
+    }
+
+    /**
+     * Publish the available in-flight permits as gauges.  When traffic lanes are
+     * configured, every lane has its own in-flight limiter, and the gauges are
+     * tagged with the lane.
+     * @param limiter The in-flight limiter
+     * @param lane The name of the lane, or {@code null} if no traffic lanes are configured
+     */
+    void bindLimiter(
+        final InFlightLimiter limiter,
+        final String lane) {
+
+        Tags limiterTags;
+
+        limiterTags = (lane == null) ? tags : tags.and("lane", lane);
+
+        track(Gauge.builder(PREFIX + "permits.messages", limiter, InFlightLimiter::getAvailableMessages)
+            .tags(limiterTags)
+            .description("The number of messages that may still be put in flight")
+            .register(registry));
+
+        track(Gauge.builder(PREFIX + "permits.bytes", limiter, InFlightLimiter::getAvailableBytes)
+            .tags(limiterTags)
+            .description("The number of bytes that may still be put in flight")
+            .baseUnit("bytes")
+            .register(registry));
+    }
+
+    /**
+     * Publish the SSL handshakes of the producer and the time that they took,
+     * and the reloads of the SSL context.
+     * @param statistics The SSL handshake statistics
+     */
+    void bindSsl(
+        final Collection<SSLStatistics> statistics) {
+
+        track(FunctionTimer.builder(PREFIX + "ssl.handshakes", statistics, list -> (long) sum(list, SSLStatistics::getHandshakes),
+            list -> sum(list, SSLStatistics::getTotalTime), TimeUnit.NANOSECONDS)
+            .tags(tags)
+            .description("The SSL handshakes that have been performed with the Kafka servers")
+            .register(registry));
+
+        track(FunctionCounter.builder(PREFIX + "ssl.handshakes.resumed", statistics, list -> sum(list, SSLStatistics::getResumedHandshakes))
+            .tags(tags)
+            .description("The SSL handshakes that resumed an earlier SSL session instead of establishing a new one")
+            .register(registry));
+
+        track(FunctionCounter.builder(PREFIX + "ssl.reloads", statistics, list -> sum(list, SSLStatistics::getReloads))
+            .tags(tags)
+            .description("The number of times that the SSL context was rebuilt because the key store or the trust store changed")
+            .register(registry));
+
+        track(FunctionCounter.builder(PREFIX + "ssl.reload.failures", statistics, list -> sum(list, SSLStatistics::getReloadFailures))
+            .tags(tags)
+            .description("The number of times that the key store or the trust store changed but the SSL context could not be rebuilt")
+            .register(registry));
+    }
+
+    /**
+     * Sum value over SSL statistics.
+     * @param statistics The SSL statistics
+     * @param value The function that gets the value from SSL statistics
+     * @return The sum
+     */
+    private static double sum(
+        final Collection<SSLStatistics> statistics,
+        final ToDoubleFunction<SSLStatistics> value) {
+
+        double sum = 0;
+
+        for (SSLStatistics candidate : statistics) {
+            sum += value.applyAsDouble(candidate);
+        }
+
+        return sum;
+    }
+
+    /**
+     * Publish the state of the circuit breaker as a gauge.
+     * @param breaker The circuit breaker
+     */
+    void bindBreaker(
+        final CircuitBreaker breaker) {
+
+        track(Gauge.builder(PREFIX + "circuit.state", breaker, CircuitBreaker::getState)
+            .tags(tags)
+            .description("The state of the circuit breaker, 0 if closed, 1 if open and 2 if half-open")
+            .register(registry));
+    }
+
+    /**
+     * Publish the size of the spool and of the dead letter journal as gauges.
+     * @param spool The spool journal
+     * @param deadLetters The dead letter journal
+     */
+    void bindSpool(
+        final SpoolJournal spool,
+        final SpoolJournal deadLetters) {
+
+        track(Gauge.builder(PREFIX + "spool.messages", spool, SpoolJournal::size)
+            .tags(tags)
+            .description("The number of messages in the spool that have not been replayed yet")
+            .register(registry));
+
+        track(Gauge.builder(PREFIX + "spool.bytes", spool, SpoolJournal::getDiskUsage)
+            .tags(tags)
+            .description("The amount of disk space that is used by the spool")
+            .baseUnit("bytes")
+            .register(registry));
+
+        track(Gauge.builder(PREFIX + "spool.dead.letters", deadLetters, SpoolJournal::size)
+            .tags(tags)
+            .description("The number of messages that the Kafka server refused for good and that were moved out of the spool")
+            .register(registry));
+    }
+
+    /**
+     * Get function that gets value of producer metric.  The metric is read from the
+     * producer that the stripe has sent records with, so that reading the metric
+     * never creates a producer.
+     * @param stripe The index of the stripe
+     * @param name The name of the metric
+     * @return The function, which returns {@code NaN} if the metric is not available
+     */
+    private static ToDoubleFunction<ProducerStripes> getProducerMetric(
+        final int stripe,
+        final String name) {
+
+        return stripes -> {
+
+            Object value;
+
+            for (Map.Entry<MetricName, ? extends Metric> entry : stripes.metrics(stripe).entrySet()) {
+
+                if ((entry.getKey().name().equals(name) == true) && (entry.getKey().group().equals("producer-metrics") == true)) {
+                    value = entry.getValue().metricValue();
+
+                    return (value instanceof Number) ? ((Number) value).doubleValue() : Double.NaN;
+                }
+
+            }
+
+            return Double.NaN;
+        };
+    }
+
+    /**
+     * The metrics of a traffic lane.
+     */
+    final class LaneMetrics {
+
+        private Tags laneTags;
+
+        private Timer acknowledgement;
+
+        private Counter bytes;
+
+        private Counter errors;
+
+        private AtomicInteger inFlight;
+
+        /**
+         * Constructor.
+         * @param lane The name of the lane
+         */
+        LaneMetrics(
+            final String lane) {
+
+            super();
+
+            this.laneTags = tags.and("lane", lane);
+
+            this.acknowledgement = track(Timer.builder(PREFIX + "lane.acknowledgement")
+                .tags(laneTags)
+                .description("The amount of time from handing messages to the lane until the Kafka server acknowledges them")
+                .publishPercentileHistogram()
+                .register(registry));
+
+            this.bytes = track(Counter.builder(PREFIX + "lane.bytes")
+                .tags(laneTags)
+                .description("The number of payload bytes on the lane that have been acknowledged by the Kafka server")
+                .baseUnit("bytes")
+                .register(registry));
+
+            this.errors = track(Counter.builder(PREFIX + "lane.errors")
+                .tags(laneTags)
+                .description("The number of messages on the lane that could not be delivered")
+                .register(registry));
+
+            this.inFlight = new AtomicInteger();
+
+            track(Gauge.builder(PREFIX + "lane.inflight", inFlight, AtomicInteger::get)
+                .tags(laneTags)
+                .description("The number of messages on the lane that are in flight")
+                .register(registry));
+        }
+
+        /**
+         * Record that message has been handed to the lane.
+         */
+        void dispatched() {
+
+            inFlight.incrementAndGet();
+        }
+
+        /**
+         * Record that message on the lane has been acknowledged by the Kafka server.
+         * @param nanos The acknowledgement time in nanoseconds
+         * @param size The size of the payload in bytes
+         */
+        void acknowledged(
+            final long nanos,
+            final int size) {
+
+            inFlight.decrementAndGet();
+
+            acknowledgement.record(nanos, TimeUnit.NANOSECONDS);
+
+            bytes.increment(size);
+        }
+
+        /**
+         * Record that message on the lane could not be delivered to the Kafka server.
+         */
+        void undelivered() {
+
+            inFlight.decrementAndGet();
+
+            errors.increment();
+        }
+
+    }
+
+    /**
+     * The metrics of a topic.
+     */
+    final class TopicMetrics {
+
+        private Tags topicTags;
+
+        private Timer serialization;
+
+        private Timer acknowledgement;
+
+        private Timer batch;
+
+        private Counter bytes;
+
+        private Counter spooled;
+
+        private AtomicInteger inFlight;
+
+        private Map<ExceptionType, Counter> errors;
+
+        /**
+         * Constructor.
+         * @param topic The topic
+         */
+        TopicMetrics(
+            final String topic) {
+
+            super();
+
+            this.topicTags = tags.and("topic", topic);
+
+            this.serialization = track(Timer.builder(PREFIX + "send.serialization")
+                .tags(topicTags)
+                .description("The amount of time spent serializing messages")
+                .publishPercentileHistogram()
+                .register(registry));
+
+            this.acknowledgement = track(Timer.builder(PREFIX + "send.acknowledgement")
+                .tags(topicTags)
+                .description("The amount of time from handing messages to the producer until the Kafka server acknowledges them")
+                .publishPercentileHistogram()
+                .register(registry));
+
+            this.batch = track(Timer.builder(PREFIX + "send.batch")
+                .tags(topicTags)
+                .description("The amount of time from handing a batch of messages to the producer until the outcome of every message is known")
+                .publishPercentileHistogram()
+                .register(registry));
+
+            this.bytes = track(Counter.builder(PREFIX + "send.bytes")
+                .tags(topicTags)
+                .description("The number of payload bytes that have been acknowledged by the Kafka server")
+                .baseUnit("bytes")
+                .register(registry));
+
+            this.spooled = track(Counter.builder(PREFIX + "send.spooled")
+                .tags(topicTags)
+                .description("The number of messages that have been written to the spool")
+                .register(registry));
+
+            this.inFlight = new AtomicInteger();
+
+            track(Gauge.builder(PREFIX + "send.inflight", inFlight, AtomicInteger::get)
+                .tags(topicTags)
+                .description("The number of messages that are in flight")
+                .register(registry));
+
+            this.errors = new ConcurrentHashMap<ExceptionType, Counter>();
+        }
+
+        /**
+         * Record serialization of message.
+         * @param nanos The serialization time in nanoseconds
+         */
+        void serialized(
+            final long nanos) {
+
+            serialization.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Record that batch of messages has been sent.
+         * @param nanos The time in nanoseconds from handing the batch to the producer until the outcome of every message is known
+         */
+        void batched(
+            final long nanos) {
+
+            batch.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Record that message has been handed to the producer.
+         */
+        void dispatched() {
+
+            inFlight.incrementAndGet();
+        }
+
+        /**
+         * Record that message has been acknowledged by the Kafka server.
+         * @param nanos The acknowledgement time in nanoseconds
+         * @param size The size of the payload in bytes
+         */
+        void acknowledged(
+            final long nanos,
+            final int size) {
+
+            inFlight.decrementAndGet();
+
+            acknowledgement.record(nanos, TimeUnit.NANOSECONDS);
+
+            bytes.increment(size);
+        }
+
+        /**
+         * Record that message has been written to the spool.
+         */
+        void spooled() {
+
+            inFlight.decrementAndGet();
+
+            spooled.increment();
+        }
+
+        /**
+         * Record that message could not be delivered to the Kafka server.
+         * @param exceptionType The exception type
+         */
+        void undelivered(
+            final ExceptionType exceptionType) {
+
+            inFlight.decrementAndGet();
+
+            failed(exceptionType);
+        }
+
+        /**
+         * Record that message could not be sent.
+         * @param exceptionType The exception type
+         */
+        void failed(
+            final ExceptionType exceptionType) {
+
+            Counter counter;
+
+            counter = errors.get(exceptionType);
+
+            if (counter == null) {
+                counter = errors.computeIfAbsent(exceptionType, type -> track(Counter.builder(PREFIX + "send.errors")
+                    .tags(topicTags.and("type", type.name()))
+                    .description("The number of messages that could not be sent")
+                    .register(registry)));
+            }
+
+            counter.increment();
+        }
+
+    }
+
+}
@@ -0,0 +1,295 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.config.SaslConfigs;
+import org.apache.kafka.common.config.SslConfigs;
+import org.apache.kafka.common.security.plain.PlainLoginModule;
+import org.melior.client.exception.RemotingException;
+import org.melior.context.service.ServiceContext;
+import org.melior.logging.core.Logger;
+import org.melior.logging.core.LoggerFactory;
+import org.melior.logging.core.StreamSink;
+import org.melior.service.exception.ExceptionType;
+import org.melior.util.collection.NoNullsHashMap;
+import org.melior.util.object.ObjectUtil;
+import org.melior.util.string.StringUtil;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.util.StringUtils;
+import com.sun.security.auth.module.Krb5LoginModule;
+
+/**
+ * Base class for Kafka clients.  Validates the connection configuration and
+ * derives the connection, authentication and SSL properties that producers and
+ * consumers have in common.
+ * @author Melior
+ * @since 2.3
+ */
+@SuppressWarnings("restriction")
+public abstract class KafkaClientSupport extends KafkaClientConfig {
+
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private boolean kerberos;
+
+    private boolean ssl;
+
+    private SSLStatistics sslStatistics;
+
+    /**
+     * Constructor.
+     * @param kerberos The Kerberos indicator
+     * @param ssl The SSL indicator
+     */
+    protected KafkaClientSupport(
+        final boolean kerberos,
+        final boolean ssl) {
+
+        super();
+
+        this.kerberos = kerberos;
+
+        this.ssl = ssl;
+
+        this.sslStatistics = (ssl == true) ? new SSLStatistics() : null;
+    }
+
+    /**
+     * Get SSL statistics.
+     * @return The SSL statistics, or {@code null} if SSL is not enabled
+     */
+    SSLStatistics getSslStatistics() {
+        return sslStatistics;
+    }
+
+    /**
+     * Validate connection configuration.
+     * @throws RemotingException if the connection configuration is invalid
+     */
+    void validateConnection() throws RemotingException {
+
+        if (StringUtils.hasLength(getUrl()) == false) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "URL must be configured.");
+        }
+
+        if ((kerberos == true) && (getKerberosConfig() == null)) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Kerberos configuration must be configured.");
+        }
+
+        if ((kerberos == true) && (getKerberosConfig().isFile() == false)) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Kerberos configuration not found.");
+        }
+
+        if (StringUtils.hasLength(getUsername()) == false) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "User name must be configured.");
+        }
+
+        if ((getKeytab() == null) && (StringUtils.hasLength(getPassword()) == false)) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Keytab or password must be configured.");
+        }
+
+        if ((getKeytab() != null) && (getKeytab().isFile() == false)) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Keytab not found.");
+        }
+
+    }
+
+    /**
+     * Build connection properties.  These are the properties that are common
+     * to producers and consumers.
+     * @return The connection properties
+     * @throws Exception if unable to build the connection properties
+     */
+    Map<String, Object> buildConnectionProperties() throws Exception {
+
+        String protocol;
+        String moduleName;
+        Map<String, Object> properties;
+
+        if (kerberos == true) {
+            applyKerberosConfig(getKerberosConfig().getFile());
+        }
+
+        protocol = ((kerberos == false) ? "" : "SASL_") + ((ssl == false) ? "PLAINTEXT" : "SSL");
+
+        moduleName = (kerberos == false) ? PlainLoginModule.class.getName() : Krb5LoginModule.class.getName();
+
+        properties = new NoNullsHashMap<String, Object>();
+        properties.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, StringUtil.replaceAll(getUrl(), "tcp://", ""));
+        properties.put(CommonClientConfigs.CLIENT_ID_CONFIG, ServiceContext.getServiceName());
+        properties.put(CommonClientConfigs.REQUEST_TIMEOUT_MS_CONFIG, getRequestTimeout());
+        properties.put(CommonClientConfigs.RECONNECT_BACKOFF_MS_CONFIG, getBackoffPeriod());
+        properties.put(CommonClientConfigs.RECONNECT_BACKOFF_MAX_MS_CONFIG, getBackoffLimit());
+        properties.put(CommonClientConfigs.CONNECTIONS_MAX_IDLE_MS_CONFIG, getInactivityTimeout());
+        properties.put(CommonClientConfigs.SECURITY_PROTOCOL_CONFIG, protocol);
+        properties.put(SaslConfigs.SASL_KERBEROS_SERVICE_NAME, (kerberos == false) ? null : getServiceName());
+        properties.put(SaslConfigs.SASL_JAAS_CONFIG, buildJaasConfig(moduleName));
+        properties.put(SaslConfigs.SASL_LOGIN_CLASS, (kerberos == false) ? null : SharedKerberosLogin.class);
+
+        if (ssl == true) {
+
+            properties.put(SslConfigs.SSL_ENGINE_FACTORY_CLASS_CONFIG, SSLEngineFactory.class);
+            properties.put(SslConfigs.SSL_KEYSTORE_TYPE_CONFIG, getKeyStoreType());
+            properties.put(SslConfigs.SSL_KEYSTORE_LOCATION_CONFIG, (getKeyStore() == null) ? null : getKeyStore().getURL().toString());
+            properties.put(SslConfigs.SSL_KEYSTORE_PASSWORD_CONFIG, getKeyStorePassword());
+            properties.put(SslConfigs.SSL_KEY_PASSWORD_CONFIG, ObjectUtil.coalesce(getKeyPassword(), getKeyStorePassword()));
+            properties.put(SslConfigs.SSL_TRUSTSTORE_TYPE_CONFIG, getTrustStoreType());
+            properties.put(SslConfigs.SSL_TRUSTSTORE_LOCATION_CONFIG, (getTrustStore() == null) ? null : getTrustStore().getURL().toString());
+            properties.put(SslConfigs.SSL_TRUSTSTORE_PASSWORD_CONFIG, getTrustStorePassword());
+            properties.put(SslConfigs.SSL_ENDPOINT_IDENTIFICATION_ALGORITHM_CONFIG, "");
+            properties.put(SSLEngineFactory.SESSION_CACHE_SIZE_CONFIG, getSslSessionCacheSize());
+            properties.put(SSLEngineFactory.SESSION_TIMEOUT_CONFIG, getSslSessionTimeout());
+            properties.put(SSLEngineFactory.STATISTICS_CONFIG, sslStatistics);
+        }
+
+        if (logger.isTraceEnabled() == true) {
+
+            System.setProperty("sun.security.krb5.debug", "true");
+            System.setOut(StreamSink.of(logger, "krb5debug", LogLevel.TRACE).getStream());
+            System.setErr(StreamSink.of(logger, "krb5debug", LogLevel.ERROR).getStream());
+        }
+
+        return properties;
+    }
+
+    /**
+     * Apply Kerberos configuration to the process.  The Kerberos configuration is shared
+     * by every client in the process, so a warning is written to the logs when a different
+     * Kerberos configuration is already in effect.  The configuration of the client is
+     * applied regardless, and the shared Kerberos logins are keyed by the configuration
+     * that was in effect when they were performed.
+     * @param kerberosConfig The Kerberos configuration file
+     * @throws IOException if unable to resolve the path of the Kerberos configuration file
+     */
+    private void applyKerberosConfig(
+        final File kerberosConfig) throws IOException {
+
+        String methodName = "applyKerberosConfig";
+        String current;
+
+        synchronized (KafkaClientSupport.class) {
+
+            current = System.getProperty("java.security.krb5.conf");
+
+            if ((current != null) && (new File(current).getCanonicalPath().equals(kerberosConfig.getCanonicalPath()) == false)) {
+                logger.warn(methodName, "Kerberos configuration ", kerberosConfig.getAbsolutePath(), " replaces ", current,
+                    " which is already in effect.  Kerberos configuration is shared by all clients in the process.");
+            }
+
+            System.setProperty("java.security.krb5.conf", kerberosConfig.getAbsolutePath());
+        }
+
+    }
+
+    /**
+     * Write client configuration that is in effect to the logs.  The final client
+     * configuration is parsed the way the Kafka client parses it, so that the values
+     * that the Kafka client runs with are written, including the defaults of the
+     * properties that are not set.  The values of sensitive properties are masked.
+     * @param title The title of the configuration
+     * @param configDef The definition of the configuration of the Kafka client
+     * @param properties The final client configuration
+     */
+    void logConfiguration(
+        final String title,
+        final ConfigDef configDef,
+        final Map<String, Object> properties) {
+
+        String methodName = "initialize";
+        Map<String, Object> effective;
+        StringBuilder configuration;
+
+        effective = new TreeMap<String, Object>(properties);
+
+        try {
+
+            effective.putAll(configDef.parse(properties));
+        }
+        catch (ConfigException exception) {
+            logger.warn(methodName, title, " is not valid: ", exception.getMessage());
+        }
+
+        configuration = new StringBuilder();
+
+        for (Map.Entry<String, Object> entry : effective.entrySet()) {
+
+            configuration.append("\n    ").append(entry.getKey()).append(" = ").append((isSensitive(entry.getKey()) == true)
+                ? "[hidden]" : (entry.getValue() instanceof Class) ? ((Class<?>) entry.getValue()).getName() : entry.getValue());
+        }
+
+        logger.info(methodName, title, ":", configuration);
+    }
+
+    /**
+     * Determine whether client property holds a sensitive value.
+     * @param name The property name
+     * @return true if the property holds a sensitive value, false otherwise
+     */
+    private boolean isSensitive(
+        final String name) {
+        return (name.endsWith(".password") == true) || (name.equals(SaslConfigs.SASL_JAAS_CONFIG) == true);
+    }
+
+    /**
+     * Build JAAS configuration.
+     * @param moduleName The module name
+     * @return The JAAS configuration
+     * @throws IOException if a keytab is provided but cannot be accessed
+     */
+    private String buildJaasConfig(
+        final String moduleName) throws IOException {
+
+        String methodName = "buildJaasConfig";
+        String jaasConfig;
+
+        jaasConfig = moduleName + " required doNotPrompt=true"
+            + ((kerberos == false) ? "" : " serviceName=\"" + getServiceName() + "\"") + ((getKeytab() != null)
+            ? " principal=\"" + getUsername() + "\" useKeyTab=true keyTab=\"" + getKeytab().getFile().getAbsolutePath().replace('\\', '/') + "\" "
+            : " username=\"" + getUsername() + "\" password=\"" + getPassword() + "\" ") + getJaas() + " client=true;";
+
+        if (logger.isTraceEnabled() == true) {
+            logger.debug(methodName, "jaasConfig = ", jaasConfig);
+        }
+
+        return jaasConfig;
+    }
+
+    /**
+     * Translate exception message.
+     * @param exception The exception
+     * @return The translated exception message
+     */
+    String translate(
+        Throwable exception) {
+
+        String message = exception.getMessage();
+
+        while ((kerberos == true) && (exception != null)) {
+
+            if (StringUtil.contains(exception.getMessage(), "Unable to obtain password from user") == true) {
+
+                message = "Unable to authenticate user.  User domain does not match realm (case sensitive), "
+                    + "or keytab does not contain valid key for user.";
+
+                break;
+            }
+
+            exception = exception.getCause();
+        }
+
+        return message;
+    }
+
+}
@@ -0,0 +1,1134 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.melior.client.exception.RemotingException;
+import org.melior.context.service.ServiceContext;
+import org.melior.logging.core.Logger;
+import org.melior.logging.core.LoggerFactory;
+import org.melior.service.exception.ExceptionType;
+import org.melior.util.object.ObjectUtil;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.util.StringUtils;
+
+/**
+ * Implements an easy to use, auto-configuring Kafka consumer client which
+ * processes the consumed records on a bounded pool of worker threads.
+ * <p>
+ * Records are assigned to the worker threads by the hash of their key, so
+ * that the records with the same key are processed one after the other, in
+ * the order in which they were written to the partition, while records with
+ * different keys are processed in parallel.  This allows consumption to scale
+ * beyond the number of partitions.  Records without a key are assigned to the
+ * worker threads in turn and are processed in no particular order.
+ * <p>
+ * The client commits the offsets itself.  Only the offsets up to the first
+ * record of each partition that has not yet been processed are committed, so
+ * that no record is lost when the consumer fails, although some records may
+ * then be processed again.  When too many records are waiting to be processed,
+ * the client stops fetching records until the worker threads have caught up.
+ * <p>
+ * When a handler fails, the processing of the record is retried with a growing
+ * interval, after which the record is passed to the error handler.  The record is
+ * skipped if the error handler accepts it, or if no error handler is set, in which
+ * case the failure is written to the logs.  Otherwise the offset of the record is
+ * not committed, and the client stops fetching records from its partition until
+ * the partition is assigned again.  When partitions are revoked, the records of
+ * the partitions that are being processed are waited for before the offsets of
+ * the partitions are committed.
+ * <p>
+ * Alternatively, the records may be consumed in batches, in which case the records
+ * of every partition that are fetched from the Kafka server together are passed to
+ * the handler as a list of messages.  The batches of a partition are processed one
+ * after the other on the worker thread of the partition, while the batches of different
+ * partitions are processed in parallel, and the records of large batches are decoded
+ * in parallel.
+ * @author Melior
+ * @since 2.3
+ */
+public class KafkaConsumerClient extends KafkaClientSupport implements SmartLifecycle {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+
+    private static final int PARALLEL_DECODE_THRESHOLD = 64;
+
+    private static final long MAX_RETRY_INTERVAL = 60 * 1000;
+
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private volatile boolean running;
+
+    private MessageCodec codec;
+
+    private ConsumerFactory<String, byte[]> consumerFactory;
+
+    private ConsumerFactory<String, byte[]> fixedConsumerFactory;
+
+    private volatile Listener<?> listener;
+
+    private volatile RecordErrorHandler errorHandler;
+
+    private Thread pollThread;
+
+    private volatile Consumer<String, byte[]> consumer;
+
+    private ExecutorService[] workers;
+
+    private AtomicInteger pending;
+
+    private AtomicInteger nextWorker;
+
+    private Map<TopicPartition, PartitionOffsets> offsets;
+
+    /**
+     * Constructor.
+     * @param kerberos The Kerberos indicator
+     * @param ssl The SSL indicator
+     */
+    KafkaConsumerClient(
+        final boolean kerberos,
+        final boolean ssl) {
+
+        super(kerberos, ssl);
+
+        this.pending = new AtomicInteger();
+
+        this.nextWorker = new AtomicInteger();
+
+        this.offsets = new ConcurrentHashMap<TopicPartition, PartitionOffsets>();
+    }
+
+    /**
+     * Configure client.
+     * @param clientConfig The new client configuration parameters
+     * @return The Kafka consumer client
+     */
+    public KafkaConsumerClient configure(
+        final KafkaClientConfig clientConfig) {
+        super.configure(clientConfig);
+
+        return this;
+    }
+
+    /**
+     * Set consumer factory.  The client uses the specified consumer factory
+     * instead of creating one, which allows the client to be driven from an
+     * in-process stand-in for the Kafka server.
+     * @param consumerFactory The consumer factory
+     */
+    void setConsumerFactory(
+        final ConsumerFactory<String, byte[]> consumerFactory) {
+        this.fixedConsumerFactory = consumerFactory;
+    }
+
+    /**
+     * Set error handler.  The error handler is passed the records that could not
+     * be processed, once their processing has been retried as often as configured.
+     * @param errorHandler The error handler, or {@code null} to write the failures to the logs and skip the records
+     */
+    public void setErrorHandler(
+        final RecordErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Initialize client.
+     * @throws RemotingException if unable to initialize the client
+     */
+    private synchronized void initialize() throws RemotingException {
+
+        Map<String, Object> properties;
+
+        if (consumerFactory != null) {
+            return;
+        }
+
+        validateConnection();
+
+        if (StringUtils.hasLength(getGroupId()) == false) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Group identifier must be configured.");
+        }
+
+        if (getConcurrency() < 1) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Concurrency must be at least 1.");
+        }
+
+        if (getMaxPendingRecords() < 1) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Maximum pending records must be at least 1.");
+        }
+
+        if ((getRetryAttempts() < 0) || (getRetryInterval() < 0)) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Retry attempts and retry interval must not be negative.");
+        }
+
+        try {
+
+            codec = MessageCodecs.forName(getCodec(), isAfterburner());
+        }
+        catch (IllegalArgumentException exception) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, exception.getMessage(), exception);
+        }
+
+        try {
+
+            properties = buildConnectionProperties();
+            properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+            properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+            properties.put(ConsumerConfig.GROUP_ID_CONFIG, getGroupId());
+            properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+            properties.put(ConsumerConfig.DEFAULT_API_TIMEOUT_MS_CONFIG, getRequestTimeout());
+            properties.putAll(getConsumer());
+        }
+        catch (Exception exception) {
+            throw new RemotingException("Failed to parse consumer configuration: " + exception.getMessage(), exception);
+        }
+
+        logConfiguration("Consumer configuration", ConsumerConfig.configDef(), properties);
+
+        consumerFactory = (fixedConsumerFactory != null) ? fixedConsumerFactory
+            : new DefaultKafkaConsumerFactory<String, byte[]>(properties);
+    }
+
+    /**
+     * Listen for messages on the configured topic.  The messages are consumed
+     * once the client has started, or immediately if it is already running.
+     * @param <T> The message type
+     * @param type The message class
+     * @param handler The message handler
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <T> void listen(
+        final Class<T> type,
+        final MessageHandler<T> handler) throws RemotingException {
+
+        listen(getTopic(), type, handler);
+    }
+
+    /**
+     * Listen for messages on the specified topic.  The messages are consumed
+     * once the client has started, or immediately if it is already running.
+     * @param <T> The message type
+     * @param topic The topic
+     * @param type The message class
+     * @param handler The message handler
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <T> void listen(
+        final String topic,
+        final Class<T> type,
+        final MessageHandler<T> handler) throws RemotingException {
+
+        register(new Listener<T>(topic, type, handler, null));
+    }
+
+    /**
+     * Listen for batches of messages on the configured topic.  The messages are
+     * consumed once the client has started, or immediately if it is already running.
+     * @param <T> The message type
+     * @param type The message class
+     * @param handler The batch handler
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <T> void listenBatch(
+        final Class<T> type,
+        final BatchHandler<T> handler) throws RemotingException {
+
+        listenBatch(getTopic(), type, handler);
+    }
+
+    /**
+     * Listen for batches of messages on the specified topic.  The messages are
+     * consumed once the client has started, or immediately if it is already running.
+     * @param <T> The message type
+     * @param topic The topic
+     * @param type The message class
+     * @param handler The batch handler
+     * @throws RemotingException if unable to initialize the client
+     */
+    public <T> void listenBatch(
+        final String topic,
+        final Class<T> type,
+        final BatchHandler<T> handler) throws RemotingException {
+
+        register(new Listener<T>(topic, type, null, handler));
+    }
+
+    /**
+     * Register listener.
+     * @param newListener The listener
+     * @throws RemotingException if unable to initialize the client
+     */
+    private synchronized void register(
+        final Listener<?> newListener) throws RemotingException {
+
+        if (StringUtils.hasLength(newListener.topic) == false) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Topic must be configured.");
+        }
+
+        if (listener != null) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Client is already listening on topic " + listener.topic + ".");
+        }
+
+        initialize();
+
+        listener = newListener;
+
+        if (running == true) {
+            startConsumer();
+        }
+
+    }
+
+    /**
+     * Start client.  If a handler has been registered then the client starts
+     * consuming messages.
+     */
+    public synchronized void start() {
+
+        running = true;
+
+        if (listener != null) {
+            startConsumer();
+        }
+
+    }
+
+    /**
+     * Start consumer.  The consumer is polled on a dedicated thread, which
+     * dispatches the records to the worker threads.
+     */
+    private void startConsumer() {
+
+        String name;
+
+        name = ObjectUtil.coalesce(getName(), ServiceContext.getServiceName());
+
+        workers = new ExecutorService[getConcurrency()];
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = createWorker("kafka-worker-" + name + "-" + i);
+        }
+
+        pollThread = new Thread(this::consume, "kafka-consumer-" + name);
+        pollThread.start();
+    }
+
+    /**
+     * Create worker.  A worker processes the records that are dispatched
+     * to it one after the other, on a single thread.
+     * @param threadName The name of the worker thread
+     * @return The worker
+     */
+    private ExecutorService createWorker(
+        final String threadName) {
+
+        return Executors.newSingleThreadExecutor(runnable -> {
+
+            Thread thread;
+
+            thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Stop client.  The client stops fetching records, waits no longer than the
+     * shutdown timeout for the records that have already been fetched to be
+     * processed, commits the offsets of the processed records and closes the
+     * consumer.
+     */
+    public void stop() {
+
+        Thread thread;
+        Consumer<String, byte[]> activeConsumer;
+
+        synchronized (this) {
+
+            running = false;
+
+            thread = pollThread;
+
+            pollThread = null;
+        }
+
+        if (thread == null) {
+            return;
+        }
+
+        activeConsumer = consumer;
+
+        if (activeConsumer != null) {
+            activeConsumer.wakeup();
+        }
+
+        try {
+
+            thread.join(2L * getShutdownTimeout());
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
+    /**
+     * Determine whether client is running.
+     * @return true if the client is running, false otherwise
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Consume records until the client is stopped.
+     */
+    private void consume() {
+
+        String methodName = "consume";
+        Listener<?> activeListener;
+        ConsumerRecords<String, byte[]> records;
+
+        activeListener = listener;
+
+        consumer = consumerFactory.createConsumer();
+
+        try {
+
+            consumer.subscribe(Collections.singletonList(activeListener.topic), new RebalanceListener());
+
+            logger.info(methodName, "Kafka consumer started on topic ", activeListener.topic, ".");
+
+            while (running == true) {
+
+                try {
+
+                    records = consumer.poll(POLL_TIMEOUT);
+
+                    if (activeListener.batchHandler != null) {
+                        dispatch(activeListener, records);
+                    }
+                    else {
+
+                        for (ConsumerRecord<String, byte[]> record : records) {
+                            dispatch(activeListener, record);
+                        }
+
+                    }
+
+                    applyBackpressure();
+
+                    commit(false);
+                }
+                catch (WakeupException exception) {
+                    // client is stopping
+                }
+                catch (Exception exception) {
+                    logger.error(methodName, "Failed to consume records: ", translate(exception));
+
+                    Thread.sleep(getBackoffPeriod());
+                }
+
+            }
+
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            shutdown();
+        }
+
+    }
+
+    /**
+     * Dispatch record to the worker thread of its key.
+     * @param activeListener The listener
+     * @param record The record
+     */
+    private void dispatch(
+        final Listener<?> activeListener,
+        final ConsumerRecord<String, byte[]> record) {
+
+        PartitionOffsets partitionOffsets;
+        int worker;
+
+        partitionOffsets = track(record);
+
+        worker = (record.key() == null) ? nextWorker.getAndIncrement() : record.key().hashCode();
+
+        workers[Math.floorMod(worker, workers.length)].execute(() -> process(activeListener, record, partitionOffsets));
+    }
+
+    /**
+     * Dispatch records in a batch for every partition.
+     * @param activeListener The listener
+     * @param records The records
+     */
+    private void dispatch(
+        final Listener<?> activeListener,
+        final ConsumerRecords<String, byte[]> records) {
+
+        for (TopicPartition partition : records.partitions()) {
+            dispatch(activeListener, partition, records.records(partition));
+        }
+
+    }
+
+    /**
+     * Dispatch batch of records of partition to the worker thread of the partition,
+     * so that the batches of a partition are processed one after the other, while the
+     * batches of different partitions are processed in parallel.
+     * @param activeListener The listener
+     * @param partition The partition
+     * @param batch The records of the partition
+     */
+    private void dispatch(
+        final Listener<?> activeListener,
+        final TopicPartition partition,
+        final List<ConsumerRecord<String, byte[]>> batch) {
+
+        PartitionOffsets partitionOffsets = null;
+        List<PartitionOffsets> batchOffsets;
+
+        if (batch.isEmpty() == true) {
+            return;
+        }
+
+        for (ConsumerRecord<String, byte[]> record : batch) {
+            partitionOffsets = track(record);
+        }
+
+        batchOffsets = Collections.nCopies(batch.size(), partitionOffsets);
+
+        workers[Math.floorMod(partition.hashCode(), workers.length)].execute(() -> process(activeListener, batch, batchOffsets));
+    }
+
+    /**
+     * Track record until it has been processed.
+     * @param record The record
+     * @return The offsets of the partition of the record
+     */
+    private PartitionOffsets track(
+        final ConsumerRecord<String, byte[]> record) {
+
+        PartitionOffsets partitionOffsets;
+
+        partitionOffsets = offsets.get(new TopicPartition(record.topic(), record.partition()));
+
+        if (partitionOffsets == null) {
+            partitionOffsets = offsets.computeIfAbsent(new TopicPartition(record.topic(), record.partition()),
+                key -> new PartitionOffsets());
+        }
+
+        partitionOffsets.dispatched(record.offset());
+
+        pending.incrementAndGet();
+
+        return partitionOffsets;
+    }
+
+    /**
+     * Process record.  When the handler fails, the processing of the record is
+     * retried, after which the record is passed to the error handler.  A record
+     * that cannot be decoded is passed to the error handler at once.  The record
+     * is abandoned without being processed if its partition has been revoked, or
+     * if an earlier record of its partition failed and was not skipped.
+     * @param <T> The message type
+     * @param activeListener The listener
+     * @param record The record
+     * @param partitionOffsets The offsets of the partition of the record
+     */
+    private <T> void process(
+        final Listener<T> activeListener,
+        final ConsumerRecord<String, byte[]> record,
+        final PartitionOffsets partitionOffsets) {
+
+        T message;
+        Exception failure;
+        boolean completed = false;
+
+        if (partitionOffsets.isProcessable() == false) {
+            partitionOffsets.abandoned(record.offset());
+
+            pending.decrementAndGet();
+
+            return;
+        }
+
+        RecordContext.set(record);
+
+        try {
+
+            try {
+
+                message = read(activeListener, record);
+            }
+            catch (Exception exception) {
+                completed = recover(record, exception, partitionOffsets);
+
+                return;
+            }
+
+            failure = retry(() -> {
+                activeListener.handler.handle(message);
+
+                return null;
+            });
+
+            completed = (failure == null) || recover(record, failure, partitionOffsets);
+        }
+        finally {
+            RecordContext.clear();
+
+            if (completed == true) {
+                partitionOffsets.completed(record.offset());
+            }
+            else {
+                partitionOffsets.abandoned(record.offset());
+            }
+
+            pending.decrementAndGet();
+        }
+
+    }
+
+    /**
+     * Perform action, and retry it when it fails, with an interval that doubles with
+     * every attempt.  The action is not retried once the client is stopping.
+     * @param action The action
+     * @return {@code null} if the action succeeded, otherwise the exception of the last attempt
+     */
+    private Exception retry(
+        final Callable<?> action) {
+
+        long interval;
+        long deadline;
+
+        interval = getRetryInterval();
+
+        for (int attempt = 0; true; attempt++) {
+
+            try {
+
+                action.call();
+
+                return null;
+            }
+            catch (Exception exception) {
+
+                if ((attempt >= getRetryAttempts()) || (running == false)) {
+                    return exception;
+                }
+
+                deadline = System.currentTimeMillis() + interval;
+
+                try {
+
+                    while ((running == true) && (System.currentTimeMillis() < deadline)) {
+                        Thread.sleep(Math.min(POLL_TIMEOUT.toMillis(), deadline - System.currentTimeMillis() + 1));
+                    }
+
+                }
+                catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+
+                    return exception;
+                }
+
+                interval = Math.min(2 * interval, MAX_RETRY_INTERVAL);
+            }
+
+        }
+
+    }
+
+    /**
+     * Recover record that could not be processed.  The record is passed to the
+     * error handler, or is written to the logs if no error handler is set.  When
+     * the client is stopping, the record is not recovered, so that it is consumed
+     * again when the client is restarted.
+     * @param record The record
+     * @param exception The exception that the processing of the record failed with
+     * @param partitionOffsets The offsets of the partition of the record
+     * @return true if the record may be skipped, false otherwise
+     */
+    private boolean recover(
+        final ConsumerRecord<String, byte[]> record,
+        final Exception exception,
+        final PartitionOffsets partitionOffsets) {
+
+        String methodName = "recover";
+        RecordErrorHandler activeErrorHandler;
+
+        if (running == false) {
+            logger.warn(methodName, "Failed to process record ", record.topic(), "-", record.partition(),
+                "@", record.offset(), " while stopping: ", exception.getMessage());
+
+            return false;
+        }
+
+        activeErrorHandler = errorHandler;
+
+        if (activeErrorHandler == null) {
+            logger.error(methodName, "Failed to process record ", record.topic(), "-", record.partition(),
+                "@", record.offset(), ": ", exception.getMessage());
+
+            return true;
+        }
+
+        try {
+
+            activeErrorHandler.handle(record, exception);
+
+            return true;
+        }
+        catch (Exception handlerException) {
+            logger.error(methodName, "Failed to process record ", record.topic(), "-", record.partition(),
+                "@", record.offset(), ": ", exception.getMessage(), ".  Error handler refused to skip record: ",
+                handlerException.getMessage(), ".  Partition is held until it is assigned again.");
+
+            partitionOffsets.block();
+
+            return false;
+        }
+
+    }
+
+    /**
+     * Process batch of records.  The records of large batches are decoded in
+     * parallel.  A record that cannot be decoded is passed to the error handler
+     * and is left out of the batch, as are the records of partitions that have been
+     * revoked, or in which an earlier record failed and was not skipped.  When the
+     * handler fails, the processing of the batch is retried, after which every
+     * record of the batch is passed to the error handler.
+     * @param <T> The message type
+     * @param activeListener The listener
+     * @param batch The records
+     * @param batchOffsets The offsets of the partitions of the records
+     */
+    private <T> void process(
+        final Listener<T> activeListener,
+        final List<ConsumerRecord<String, byte[]>> batch,
+        final List<PartitionOffsets> batchOffsets) {
+
+        Object[] decoded;
+        boolean[] completed;
+        List<T> messages;
+        List<ConsumerRecord<String, byte[]>> records;
+        List<Integer> indexes;
+        Exception failure;
+
+        decoded = new Object[batch.size()];
+
+        completed = new boolean[batch.size()];
+
+        try {
+
+            if (batch.size() >= PARALLEL_DECODE_THRESHOLD) {
+                IntStream.range(0, batch.size()).parallel().forEach(i -> decoded[i] = decode(activeListener, batch.get(i), batchOffsets.get(i)));
+            }
+            else {
+
+                for (int i = 0; i < batch.size(); i++) {
+                    decoded[i] = decode(activeListener, batch.get(i), batchOffsets.get(i));
+                }
+
+            }
+
+            messages = new ArrayList<T>(batch.size());
+
+            records = new ArrayList<ConsumerRecord<String, byte[]>>(batch.size());
+
+            indexes = new ArrayList<Integer>(batch.size());
+
+            for (int i = 0; i < decoded.length; i++) {
+
+                if (decoded[i] instanceof Exception) {
+                    completed[i] = recover(batch.get(i), (Exception) decoded[i], batchOffsets.get(i));
+                }
+                else if ((decoded[i] != null) && (batchOffsets.get(i).isProcessable() == true)) {
+                    messages.add(activeListener.type.cast(decoded[i]));
+
+                    records.add(batch.get(i));
+
+                    indexes.add(i);
+                }
+
+            }
+
+            if (messages.isEmpty() == true) {
+                return;
+            }
+
+            RecordContext.set(records);
+
+            failure = retry(() -> {
+                activeListener.batchHandler.handle(messages);
+
+                return null;
+            });
+
+            for (int i : indexes) {
+                completed[i] = (failure == null)
+                    || ((batchOffsets.get(i).isBlocked() == false) && (recover(batch.get(i), failure, batchOffsets.get(i)) == true));
+            }
+
+        }
+        finally {
+            RecordContext.clear();
+
+            for (int i = 0; i < batch.size(); i++) {
+
+                if (completed[i] == true) {
+                    batchOffsets.get(i).completed(batch.get(i).offset());
+                }
+                else {
+                    batchOffsets.get(i).abandoned(batch.get(i).offset());
+                }
+
+            }
+
+            pending.addAndGet(-batch.size());
+        }
+
+    }
+
+    /**
+     * Read message from record, with the codec that matches the content type of
+     * the record, or with the configured codec if the record has no content type.
+     * @param <T> The message type
+     * @param activeListener The listener
+     * @param record The record
+     * @return The message object
+     * @throws Exception if unable to read the message
+     */
+    private <T> T read(
+        final Listener<T> activeListener,
+        final ConsumerRecord<String, byte[]> record) throws Exception {
+
+        Header contentType;
+
+        contentType = record.headers().lastHeader(ProducerRecordFactory.CONTENT_TYPE);
+
+        return ((contentType == null) ? codec : MessageCodecs.forContentType(contentType.value(), codec))
+            .decode(record.value(), activeListener.type);
+    }
+
+    /**
+     * Decode record, unless the records of its partition are abandoned.
+     * @param activeListener The listener
+     * @param record The record
+     * @param partitionOffsets The offsets of the partition of the record
+     * @return The message object, the exception if the record cannot be decoded,
+     * or {@code null} if the record is abandoned
+     */
+    private Object decode(
+        final Listener<?> activeListener,
+        final ConsumerRecord<String, byte[]> record,
+        final PartitionOffsets partitionOffsets) {
+
+        if (partitionOffsets.isProcessable() == false) {
+            return null;
+        }
+
+        try {
+
+            return read(activeListener, record);
+        }
+        catch (Exception exception) {
+            return exception;
+        }
+
+    }
+
+    /**
+     * Pause fetching of records when too many records are pending, and resume
+     * fetching of records when half of them have been processed.  Fetching of
+     * records from partitions in which a record failed and was not skipped stays
+     * paused until the partitions are assigned again.
+     */
+    private void applyBackpressure() {
+
+        Set<TopicPartition> blocked;
+        Set<TopicPartition> resumable;
+
+        blocked = new HashSet<TopicPartition>();
+
+        for (Map.Entry<TopicPartition, PartitionOffsets> entry : offsets.entrySet()) {
+
+            if (entry.getValue().isBlocked() == true) {
+                blocked.add(entry.getKey());
+            }
+
+        }
+
+        if (pending.get() >= getMaxPendingRecords()) {
+            consumer.pause(consumer.assignment());
+        }
+        else if ((consumer.paused().isEmpty() == false) && (pending.get() <= getMaxPendingRecords() / 2)) {
+            resumable = new HashSet<TopicPartition>(consumer.paused());
+            resumable.removeAll(blocked);
+
+            consumer.resume(resumable);
+        }
+
+        blocked.retainAll(consumer.assignment());
+
+        if (blocked.isEmpty() == false) {
+            consumer.pause(blocked);
+        }
+
+    }
+
+    /**
+     * Commit the offsets of the records that have been processed.
+     * @param sync true if the commit must complete before returning, false otherwise
+     */
+    private void commit(
+        final boolean sync) {
+
+        String methodName = "commit";
+        Map<TopicPartition, OffsetAndMetadata> commits;
+        long committable;
+
+        commits = new HashMap<TopicPartition, OffsetAndMetadata>();
+
+        for (Map.Entry<TopicPartition, PartitionOffsets> entry : offsets.entrySet()) {
+            committable = entry.getValue().getCommittable();
+
+            if (committable > entry.getValue().getCommitted()) {
+                commits.put(entry.getKey(), new OffsetAndMetadata(committable));
+
+                entry.getValue().setCommitted(committable);
+            }
+
+        }
+
+        if (commits.isEmpty() == true) {
+            return;
+        }
+
+        if (sync == true) {
+            consumer.commitSync(commits);
+        }
+        else {
+            consumer.commitAsync(commits, (committed, exception) -> {
+
+                if (exception != null) {
+                    logger.warn(methodName, "Failed to commit offsets: ", exception.getMessage());
+                }
+
+            });
+        }
+
+    }
+
+    /**
+     * Shut down consumer.  The worker threads are given the shutdown timeout to
+     * process the records that have already been dispatched to them, after which
+     * the offsets of the processed records are committed and the consumer is closed.
+     */
+    private void shutdown() {
+
+        String methodName = "shutdown";
+        long deadline;
+
+        deadline = System.currentTimeMillis() + getShutdownTimeout();
+
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+
+        try {
+
+            for (ExecutorService worker : workers) {
+                worker.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (pending.get() > 0) {
+            logger.warn(methodName, pending.get(), " records were not processed within shutdown timeout.");
+        }
+
+        try {
+
+            commit(true);
+        }
+        catch (Exception exception) {
+            logger.warn(methodName, "Failed to commit offsets: ", translate(exception));
+        }
+
+        offsets.clear();
+
+        consumer.close();
+
+        consumer = null;
+
+        logger.info(methodName, "Kafka consumer stopped.");
+    }
+
+    /**
+     * Commits the offsets of the partitions that are revoked from the consumer,
+     * so that the consumer that takes over the partitions does not process the
+     * records that have already been processed again.  The records of the revoked
+     * partitions that are waiting to be processed are abandoned, and the records
+     * that are being processed are waited for, no longer than the shutdown timeout.
+     */
+    private final class RebalanceListener implements ConsumerRebalanceListener {
+
+        /**
+         * Handle revocation of partitions.
+         * @param partitions The revoked partitions
+         */
+        public void onPartitionsRevoked(
+            final Collection<TopicPartition> partitions) {
+
+            String methodName = "onPartitionsRevoked";
+            Map<TopicPartition, OffsetAndMetadata> commits;
+            PartitionOffsets partitionOffsets;
+            long committable;
+            long deadline;
+
+            commits = new HashMap<TopicPartition, OffsetAndMetadata>();
+
+            for (TopicPartition partition : partitions) {
+                partitionOffsets = offsets.get(partition);
+
+                if (partitionOffsets != null) {
+                    partitionOffsets.revoke();
+                }
+
+            }
+
+            deadline = System.currentTimeMillis() + getShutdownTimeout();
+
+            for (TopicPartition partition : partitions) {
+                partitionOffsets = offsets.remove(partition);
+
+                if (partitionOffsets == null) {
+                    continue;
+                }
+
+                try {
+
+                    if (partitionOffsets.awaitIdle(Math.max(0, deadline - System.currentTimeMillis())) == false) {
+                        logger.warn(methodName, "Records of revoked partition ", partition, " were not processed within shutdown timeout.");
+                    }
+
+                }
+                catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+
+                committable = partitionOffsets.getCommittable();
+
+                if (committable > partitionOffsets.getCommitted()) {
+                    commits.put(partition, new OffsetAndMetadata(committable));
+                }
+
+            }
+
+            try {
+
+                if (commits.isEmpty() == false) {
+                    consumer.commitSync(commits);
+                }
+
+            }
+            catch (Exception exception) {
+                logger.warn(methodName, "Failed to commit offsets of revoked partitions: ", translate(exception));
+            }
+
+        }
+
+        /**
+         * Handle assignment of partitions.
+         * @param partitions The assigned partitions
+         */
+        public void onPartitionsAssigned(
+            final Collection<TopicPartition> partitions) {
+        }
+
+    }
+
+    /**
+     * Holds the topic, the message type and the handler of a listener.
+     * @param <T> The message type
+     */
+    private static final class Listener<T> {
+
+        private String topic;
+
+        private Class<T> type;
+
+        private MessageHandler<T> handler;
+
+        private BatchHandler<T> batchHandler;
+
+        /**
+         * Constructor.
+         * @param topic The topic
+         * @param type The message class
+         * @param handler The message handler, or {@code null} if the messages are consumed in batches
+         * @param batchHandler The batch handler, or {@code null} if the messages are consumed one by one
+         */
+        Listener(
+            final String topic,
+            final Class<T> type,
+            final MessageHandler<T> handler,
+            final BatchHandler<T> batchHandler) {
+
+            super();
+
+            this.topic = topic;
+
+            this.type = type;
+
+            this.handler = handler;
+
+            this.batchHandler = batchHandler;
+        }
+
+    }
+
+}
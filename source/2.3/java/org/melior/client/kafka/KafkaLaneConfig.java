@@ -0,0 +1,89 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration parameters for a traffic lane of a {@code KafkaClient}, with defaults.
+ * Every traffic lane is backed by its own producer, so that the messages on one lane
+ * do not queue behind the messages on another lane.
+ * @author Melior
+ * @since 2.3
+ */
+public class KafkaLaneConfig {
+
+    private ProducerProfile profile;
+
+    private int minPayloadSize = 0;
+
+    private Map<String, String> producer = new HashMap<String, String>();
+
+    /**
+     * Constructor.
+     */
+    public KafkaLaneConfig() {
+
+        super();
+    }
+
+    /**
+     * Get producer profile.
+     * @return The producer profile, or {@code null} if the profile of the client applies
+     */
+    public ProducerProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Set producer profile.
+     * @param profile The producer profile
+     */
+    public void setProfile(
+        final ProducerProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Get minimum payload size.
+     * @return The minimum payload size, or 0 if the lane is only selected by name
+     */
+    public int getMinPayloadSize() {
+        return minPayloadSize;
+    }
+
+    /**
+     * Set minimum payload size.  Messages that are sent without naming a lane are
+     * sent on the lane with the largest minimum payload size that the payload reaches.
+     * @param minPayloadSize The minimum payload size, specified in kilobytes
+     */
+    public void setMinPayloadSize(
+        final int minPayloadSize) {
+        this.minPayloadSize = minPayloadSize * 1024;
+    }
+
+    /**
+     * Get producer properties.
+     * @return The producer properties
+     */
+    public Map<String, String> getProducer() {
+        return producer;
+    }
+
+    /**
+     * Set producer properties.  These are passed to the producer of the lane as is,
+     * and override the producer properties of the client.
+     * @param producer The producer properties
+     */
+    public void setProducer(
+        final Map<String, String> producer) {
+        this.producer = producer;
+    }
+
+}
@@ -0,0 +1,47 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.concurrent.Future;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.melior.client.exception.RemotingException;
+
+/**
+ * Sends messages within a Kafka transaction that was started by a {@code KafkaClient}.
+ * The messages only become visible to consumers that read committed messages once
+ * the transaction has been committed.
+ * @author Melior
+ * @since 2.3
+ */
+public interface KafkaTransaction {
+
+    /**
+     * Send message to the configured topic within the transaction.
+     * @param <Rq> The request type
+     * @param message The message object
+     * @return The future record metadata, which is available once the transaction has been committed,
+     * or which fails with a {@code RemotingException} if the message could not be sent
+     * @throws RemotingException if unable to send the message
+     */
+    public <Rq> Future<RecordMetadata> send(
+        final Rq message) throws RemotingException;
+
+    /**
+     * Send message to the specified topic within the transaction.
+     * @param <Rq> The request type
+     * @param topic The topic
+     * @param message The message object
+     * @return The future record metadata, which is available once the transaction has been committed,
+     * or which fails with a {@code RemotingException} if the message could not be sent
+     * @throws RemotingException if unable to send the message
+     */
+    public <Rq> Future<RecordMetadata> send(
+        final String topic,
+        final Rq message) throws RemotingException;
+
+}
@@ -0,0 +1,579 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+import org.apache.kafka.common.security.auth.AuthenticateCallbackHandler;
+import org.melior.logging.core.Logger;
+import org.melior.logging.core.LoggerFactory;
+
+/**
+ * Keeps track of the Kerberos logins that are in use by Kafka clients, to allow every
+ * producer and consumer whose JAAS configuration is identical to share a single login,
+ * and with it the ticket-granting ticket and the service tickets that have been obtained
+ * from the KDC.
+ * <p>
+ * The logins are keyed by the login modules and their options, and are reference
+ * counted.  A login that is no longer in use lingers for a while before it is logged
+ * out, so that clients which are closed and created again, or which reconnect, find
+ * the login in place and do not have to wait on the KDC.
+ * <p>
+ * A new login is performed without holding the lock of the cache, so that a slow
+ * KDC only delays the clients that need that login.  Clients that need the same login
+ * while it is in progress wait for that login instead of performing their own.
+ * <p>
+ * The ticket-granting ticket of every login is renewed in the background before it
+ * expires.  The renewal logs in afresh with a separate subject and then replaces the
+ * credentials of the shared subject in a single step, so that connections that are
+ * established while the renewal is in progress always find a valid ticket.  If the
+ * renewal fails then the current ticket is retained and the renewal is retried.
+ * @author Melior
+ * @since 2.3
+ */
+final class KerberosLoginCache {
+
+    private static final double RENEW_FACTOR = 0.8;
+
+    private static final long MINIMUM_RENEW_DELAY = 1000;
+
+    private static final long RETRY_DELAY = 60000;
+
+    private static final long LINGER_TIME = 300000;
+
+    private static Logger logger = LoggerFactory.getLogger(KerberosLoginCache.class);
+
+    private static Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private static Map<String, CompletableFuture<Entry>> logins = new HashMap<String, CompletableFuture<Entry>>();
+
+    private static ScheduledExecutorService executor;
+
+    /**
+     * Constructor.
+     */
+    private KerberosLoginCache() {
+
+        super();
+    }
+
+    /**
+     * Acquire login for JAAS configuration.  If a login with the same JAAS configuration
+     * is already in place then that login is shared, and if it is in progress then it is
+     * awaited, otherwise a new login is performed.
+     * @param contextName The name of the JAAS login context
+     * @param configuration The JAAS configuration
+     * @param callbackHandler The callback handler of the login modules
+     * @return The login
+     * @throws LoginException if unable to log in
+     */
+    static Entry acquire(
+        final String contextName,
+        final Configuration configuration,
+        final AuthenticateCallbackHandler callbackHandler) throws LoginException {
+
+        String key;
+        Entry entry;
+        CompletableFuture<Entry> login;
+
+        key = getKey(contextName, configuration);
+
+        while (true) {
+
+            synchronized (KerberosLoginCache.class) {
+
+                entry = entries.get(key);
+
+                if (entry != null) {
+                    return retain(entry);
+                }
+
+                login = logins.get(key);
+
+                if (login == null) {
+                    login = new CompletableFuture<Entry>();
+
+                    logins.put(key, login);
+
+                    entry = new Entry(key, contextName, configuration, callbackHandler);
+                }
+
+            }
+
+            if (entry != null) {
+                return login(entry, login);
+            }
+
+            await(login);
+        }
+
+    }
+
+    /**
+     * Perform new login, and make the login available to the clients that are waiting for it.
+     * @param entry The login
+     * @param login The future that the waiting clients wait on
+     * @return The login
+     * @throws LoginException if unable to log in
+     */
+    private static Entry login(
+        final Entry entry,
+        final CompletableFuture<Entry> login) throws LoginException {
+
+        try {
+
+            entry.login();
+        }
+        catch (LoginException | RuntimeException | Error exception) {
+
+            synchronized (KerberosLoginCache.class) {
+                logins.remove(entry.key);
+            }
+
+            login.completeExceptionally(exception);
+
+            throw exception;
+        }
+
+        synchronized (KerberosLoginCache.class) {
+
+            logins.remove(entry.key);
+
+            entries.put(entry.key, entry);
+
+            schedule(entry, getRenewDelay(entry));
+
+            retain(entry);
+        }
+
+        login.complete(entry);
+
+        return entry;
+    }
+
+    /**
+     * Wait for login that another client is performing.
+     * @param login The future of the login
+     * @throws LoginException if the login has failed, or if the thread has been interrupted
+     */
+    private static void await(
+        final CompletableFuture<Entry> login) throws LoginException {
+
+        LoginException loginException;
+
+        try {
+
+            login.get();
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+
+            loginException = new LoginException("Thread has been interrupted while waiting for Kerberos login.");
+            loginException.initCause(exception);
+
+            throw loginException;
+        }
+        catch (ExecutionException exception) {
+
+            if (exception.getCause() instanceof LoginException) {
+                throw (LoginException) exception.getCause();
+            }
+
+            loginException = new LoginException("Kerberos login failed: " + exception.getCause().getMessage());
+            loginException.initCause(exception.getCause());
+
+            throw loginException;
+        }
+
+    }
+
+    /**
+     * Add reference to login, and cancel its eviction if it is no longer in use.
+     * @param entry The login
+     * @return The login
+     */
+    private static Entry retain(
+        final Entry entry) {
+
+        if (entry.eviction != null) {
+            entry.eviction.cancel(false);
+            entry.eviction = null;
+        }
+
+        entry.references++;
+
+        return entry;
+    }
+
+    /**
+     * Release login.  If no other client is using the login then the login is logged
+     * out once it has not been used for a while.
+     * @param entry The login
+     */
+    static synchronized void release(
+        final Entry entry) {
+
+        if ((entry == null) || (--entry.references > 0)) {
+            return;
+        }
+
+        entry.eviction = getExecutor().schedule(() -> evict(entry), LINGER_TIME, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Log out login if it is still not in use.
+     * @param entry The login
+     */
+    private static synchronized void evict(
+        final Entry entry) {
+
+        if ((entry.references > 0) || (entries.remove(entry.key, entry) == false)) {
+            return;
+        }
+
+        if (entry.renewal != null) {
+            entry.renewal.cancel(false);
+        }
+
+        entry.logout(entry.loginContext);
+    }
+
+    /**
+     * Schedule renewal of login.
+     * @param entry The login
+     * @param delay The delay in milliseconds, or -1 if the login does not need to be renewed
+     */
+    private static void schedule(
+        final Entry entry,
+        final long delay) {
+
+        entry.renewal = (delay < 0) ? null : getExecutor().schedule(() -> renew(entry), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Renew login.  A new login is performed, and its credentials replace those of the
+     * current login once it has succeeded.  If the new login fails then the current
+     * credentials are retained, and the renewal is retried later.
+     * @param entry The login
+     */
+    private static void renew(
+        final Entry entry) {
+
+        String methodName = "renew";
+        Subject subject;
+        LoginContext loginContext;
+        LoginContext previous;
+
+        try {
+
+            subject = new Subject();
+
+            loginContext = new LoginContext(entry.contextName, subject, entry.callbackHandler, entry.configuration);
+            loginContext.login();
+        }
+        catch (LoginException | RuntimeException exception) {
+            logger.error(methodName, "Failed to renew Kerberos login for ", entry.getPrincipal(), ".  Retrying in ",
+                RETRY_DELAY, " ms.  ", exception.getMessage());
+
+            synchronized (KerberosLoginCache.class) {
+
+                if (entries.get(entry.key) == entry) {
+                    schedule(entry, RETRY_DELAY);
+                }
+
+            }
+
+            return;
+        }
+
+        synchronized (KerberosLoginCache.class) {
+
+            if (entries.get(entry.key) != entry) {
+                entry.logout(loginContext);
+
+                return;
+            }
+
+            previous = entry.loginContext;
+
+            entry.replace(loginContext);
+
+            schedule(entry, getRenewDelay(entry));
+        }
+
+        entry.logout(previous);
+
+        logger.info(methodName, "Kerberos login renewed for ", entry.getPrincipal(), ".");
+    }
+
+    /**
+     * Get amount of time until the ticket-granting ticket of a login must be renewed.
+     * @param entry The login
+     * @return The amount of time in milliseconds, or -1 if the login holds no ticket-granting ticket
+     */
+    private static long getRenewDelay(
+        final Entry entry) {
+
+        KerberosTicket ticket;
+        long start;
+        long end;
+
+        ticket = entry.getTicketGrantingTicket();
+
+        if ((ticket == null) || (ticket.getEndTime() == null)) {
+            return -1;
+        }
+
+        start = ((ticket.getStartTime() != null) ? ticket.getStartTime() : ticket.getAuthTime()).getTime();
+
+        end = ticket.getEndTime().getTime();
+
+        return Math.max(MINIMUM_RENEW_DELAY, start + (long) ((end - start) * RENEW_FACTOR) - System.currentTimeMillis());
+    }
+
+    /**
+     * Get executor that renews and evicts the logins.  The executor is created
+     * when it is first needed.
+     * @return The executor
+     */
+    private static ScheduledExecutorService getExecutor() {
+
+        if (executor == null) {
+
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+
+                Thread thread;
+
+                thread = new Thread(runnable, "kafka-kerberos-renewer");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+
+        return executor;
+    }
+
+    /**
+     * Derive key from JAAS configuration.  The key is made up of the login modules
+     * and their options, and of the Kerberos configuration that is in effect.
+     * @param contextName The name of the JAAS login context
+     * @param configuration The JAAS configuration
+     * @return The key
+     */
+    private static String getKey(
+        final String contextName,
+        final Configuration configuration) {
+
+        StringBuilder key;
+
+        key = new StringBuilder(String.valueOf(System.getProperty("java.security.krb5.conf")));
+
+        for (AppConfigurationEntry configurationEntry : configuration.getAppConfigurationEntry(contextName)) {
+
+            key.append('\n').append(configurationEntry.getLoginModuleName()).append(' ').append(configurationEntry.getControlFlag())
+                .append(' ').append(new TreeMap<String, Object>(configurationEntry.getOptions()));
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * A shared Kerberos login.
+     */
+    static final class Entry {
+
+        private String key;
+
+        private String contextName;
+
+        private Configuration configuration;
+
+        private AuthenticateCallbackHandler callbackHandler;
+
+        private Subject subject;
+
+        private LoginContext loginContext;
+
+        private ScheduledFuture<?> renewal;
+
+        private ScheduledFuture<?> eviction;
+
+        private int references;
+
+        /**
+         * Constructor.
+         * @param key The key of the login
+         * @param contextName The name of the JAAS login context
+         * @param configuration The JAAS configuration
+         * @param callbackHandler The callback handler of the login modules
+         */
+        Entry(
+            final String key,
+            final String contextName,
+            final Configuration configuration,
+            final AuthenticateCallbackHandler callbackHandler) {
+
+            super();
+
+            this.key = key;
+
+            this.contextName = contextName;
+
+            this.configuration = configuration;
+
+            this.callbackHandler = callbackHandler;
+
+            this.subject = new Subject();
+
+            this.references = 0;
+        }
+
+        /**
+         * Get subject that holds the credentials of the login.  The subject remains
+         * the same for as long as the login is in place, while its credentials are
+         * replaced whenever the login is renewed.
+         * @return The subject
+         */
+        Subject getSubject() {
+            return subject;
+        }
+
+        /**
+         * Get login context of the current login.
+         * @return The login context
+         */
+        LoginContext getLoginContext() {
+            return loginContext;
+        }
+
+        /**
+         * Perform initial login.
+         * @throws LoginException if unable to log in
+         */
+        private void login() throws LoginException {
+
+            Subject loginSubject;
+
+            loginSubject = new Subject();
+
+            loginContext = new LoginContext(contextName, loginSubject, callbackHandler, configuration);
+            loginContext.login();
+
+            replace(loginContext);
+        }
+
+        /**
+         * Replace credentials of the shared subject with those of the specified login.
+         * The credentials are replaced while holding the lock of the credential sets, which
+         * is also held by the Kerberos mechanism while it searches for credentials, so that
+         * the mechanism never observes the subject without a ticket.
+         * @param newLoginContext The login context of the new login
+         */
+        private void replace(
+            final LoginContext newLoginContext) {
+
+            Subject previous;
+
+            previous = (loginContext == null) ? null : loginContext.getSubject();
+
+            subject.getPrincipals().addAll(newLoginContext.getSubject().getPrincipals());
+
+            synchronized (subject.getPrivateCredentials()) {
+
+                if (previous != null) {
+                    subject.getPrivateCredentials().removeAll(new HashSet<Object>(previous.getPrivateCredentials()));
+                }
+
+                subject.getPrivateCredentials().addAll(newLoginContext.getSubject().getPrivateCredentials());
+            }
+
+            synchronized (subject.getPublicCredentials()) {
+
+                if (previous != null) {
+                    subject.getPublicCredentials().removeAll(new HashSet<Object>(previous.getPublicCredentials()));
+                }
+
+                subject.getPublicCredentials().addAll(newLoginContext.getSubject().getPublicCredentials());
+            }
+
+            loginContext = newLoginContext;
+        }
+
+        /**
+         * Log out login context.  The credentials of the login context are destroyed.
+         * @param oldLoginContext The login context
+         */
+        private void logout(
+            final LoginContext oldLoginContext) {
+
+            String methodName = "logout";
+
+            try {
+
+                oldLoginContext.logout();
+            }
+            catch (LoginException exception) {
+                logger.warn(methodName, "Failed to log out Kerberos login for ", getPrincipal(), ": ", exception.getMessage());
+            }
+
+        }
+
+        /**
+         * Get ticket-granting ticket of the login.
+         * @return The ticket-granting ticket, or {@code null} if the login holds none
+         */
+        private KerberosTicket getTicketGrantingTicket() {
+
+            Set<KerberosTicket> tickets;
+
+            tickets = subject.getPrivateCredentials(KerberosTicket.class);
+
+            for (KerberosTicket ticket : tickets) {
+
+                if ((ticket.getServer() != null) && (ticket.getServer().getName().startsWith("krbtgt/") == true)) {
+                    return ticket;
+                }
+
+            }
+
+            return null;
+        }
+
+        /**
+         * Get name of the principal of the login.
+         * @return The name of the principal
+         */
+        private String getPrincipal() {
+
+            KerberosTicket ticket;
+
+            ticket = getTicketGrantingTicket();
+
+            return (ticket != null) ? ticket.getClient().getName()
+                : subject.getPrincipals().isEmpty() ? contextName : subject.getPrincipals().iterator().next().getName();
+        }
+
+    }
+
+}
@@ -0,0 +1,205 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.utils.Utils;
+
+/**
+ * Assigns records without a key to partitions whose leaders are currently
+ * acknowledging records the quickest, and with the least records in flight.
+ * The acknowledgement latencies and in-flight counts are obtained from the
+ * {@code PartitionLatencyTracker} that is passed in the producer configuration,
+ * which is fed by a {@code LatencyTrackingInterceptor}.
+ * <p>
+ * Like the sticky partitioner of the Kafka producer, records without a key stay on
+ * the same partition until the batch of that partition is closed, so that records
+ * are not spread over many small batches.  When a new batch is needed, the better of
+ * two randomly chosen partitions is chosen for it.  To ensure that no partition is
+ * starved of records, a configurable fraction of the batches is assigned to a randomly
+ * chosen partition regardless of the state of its leader.  Records with a key are
+ * assigned to a partition using the hash of the key, as with the default partitioner.
+ * @author Melior
+ * @since 2.3
+ */
+public class LatencyAwarePartitioner implements Partitioner {
+
+    public static final String TRACKER_CONFIG = "melior.partitioner.tracker";
+
+    public static final String FAIRNESS_CONFIG = "melior.partitioner.fairness";
+
+    private PartitionLatencyTracker tracker;
+
+    private double fairness;
+
+    private Map<String, Integer> stickyPartitions = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * Configure the partitioner.
+     * @param configs The configuration parameters
+     */
+    public void configure(
+        final Map<String, ?> configs) {
+
+        Object value;
+
+        value = configs.get(TRACKER_CONFIG);
+        tracker = (value instanceof PartitionLatencyTracker) ? (PartitionLatencyTracker) value : new PartitionLatencyTracker();
+
+        value = configs.get(FAIRNESS_CONFIG);
+        fairness = (value == null) ? 0.1 : Math.min(1.0, Math.max(0.0, Double.parseDouble(value.toString())));
+    }
+
+    /**
+     * Compute partition for record.
+     * @param topic The topic
+     * @param key The key, or {@code null} if there is no key
+     * @param keyBytes The serialized key, or {@code null} if there is no key
+     * @param value The value
+     * @param valueBytes The serialized value
+     * @param cluster The current cluster metadata
+     * @return The partition
+     */
+    public int partition(
+        final String topic,
+        final Object key,
+        final byte[] keyBytes,
+        final Object value,
+        final byte[] valueBytes,
+        final Cluster cluster) {
+
+        Integer partition;
+
+        if (keyBytes != null) {
+            partition = Utils.toPositive(Utils.murmur2(keyBytes)) % cluster.partitionCountForTopic(topic);
+        }
+        else {
+            partition = stickyPartitions.get(topic);
+
+            if (partition == null) {
+                partition = nextPartition(topic, cluster, -1);
+            }
+
+        }
+
+        tracker.onDispatch(topic, partition, cluster);
+
+        return partition;
+    }
+
+    /**
+     * Notify partitioner that a new batch is about to be created.  The record
+     * for which the batch is created is withdrawn from the previous partition,
+     * and a partition is chosen for the new batch, to which the record will be
+     * assigned again.
+     * @param topic The topic
+     * @param cluster The current cluster metadata
+     * @param prevPartition The partition that was previously assigned
+     */
+    public void onNewBatch(
+        final String topic,
+        final Cluster cluster,
+        final int prevPartition) {
+
+        tracker.onRevoke(topic, prevPartition);
+
+        nextPartition(topic, cluster, prevPartition);
+    }
+
+    /**
+     * Choose partition for the next batch of records without a key.  If another
+     * thread has already moved on from the previous partition, then the partition
+     * that it chose is kept.
+     * @param topic The topic
+     * @param cluster The current cluster metadata
+     * @param prevPartition The partition of the previous batch, or -1 if there is none
+     * @return The partition
+     */
+    private int nextPartition(
+        final String topic,
+        final Cluster cluster,
+        final int prevPartition) {
+
+        Integer current;
+        List<PartitionInfo> partitions;
+        ThreadLocalRandom random;
+        int first;
+        int second;
+        int partition;
+
+        current = stickyPartitions.get(topic);
+
+        if ((current != null) && (current != prevPartition)) {
+            return current;
+        }
+
+        partitions = cluster.availablePartitionsForTopic(topic);
+
+        if (partitions.isEmpty() == true) {
+            partitions = cluster.partitionsForTopic(topic);
+        }
+
+        random = ThreadLocalRandom.current();
+
+        first = choose(partitions, random, prevPartition);
+
+        if ((partitions.size() == 1) || (random.nextDouble() < fairness)) {
+            partition = first;
+        }
+        else {
+            second = choose(partitions, random, prevPartition);
+
+            partition = (tracker.score(topic, second, cluster) < tracker.score(topic, first, cluster)) ? second : first;
+        }
+
+        if (current == null) {
+            current = stickyPartitions.putIfAbsent(topic, partition);
+        }
+        else {
+            current = (stickyPartitions.replace(topic, current, partition) == true) ? null : stickyPartitions.get(topic);
+        }
+
+        return (current == null) ? partition : current;
+    }
+
+    /**
+     * Choose random partition, other than the previous partition if there is a choice.
+     * @param partitions The partitions
+     * @param random The random number generator
+     * @param prevPartition The partition of the previous batch, or -1 if there is none
+     * @return The partition
+     */
+    private static int choose(
+        final List<PartitionInfo> partitions,
+        final ThreadLocalRandom random,
+        final int prevPartition) {
+
+        int index;
+
+        index = random.nextInt(partitions.size());
+
+        if ((partitions.get(index).partition() == prevPartition) && (partitions.size() > 1)) {
+            index = (index + 1 + random.nextInt(partitions.size() - 1)) % partitions.size();
+        }
+
+        return partitions.get(index).partition();
+    }
+
+    /**
+     * Close the partitioner.
+     */
+    public void close() {
+    }
+
+}
@@ -0,0 +1,181 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Measures the latency of consumed records from the tracing headers that a
+ * {@code KafkaClient} writes when tracing is enabled, and publishes it to a Micrometer
+ * {@code MeterRegistry} as histograms that are tagged with the topic and the partition.
+ * The end-to-end latency is measured from the time at which the message was sent until
+ * the record is recorded, and relies on the clocks of the producer and the consumer
+ * being synchronized.  The time that the producer spent serializing the message and
+ * handing it over is recorded as well.
+ * <p>
+ * The timers of every partition are looked up once, so that recording a record only
+ * reads the fixed-width header and updates the histograms.  Records without a tracing
+ * header are ignored.
+ * <pre>
+ * public void handle(MyMessage message) {
+ *     latencyRecorder.record();
+ *     ...
+ * }
+ * </pre>
+ * @author Melior
+ * @since 2.3
+ */
+public final class LatencyRecorder {
+
+    private static final String PREFIX = "melior.kafka.trace.";
+
+    private MeterRegistry registry;
+
+    private Map<String, Map<Integer, PartitionTimers>> topics;
+
+    /**
+     * Constructor.
+     * @param registry The meter registry
+     */
+    public LatencyRecorder(
+        final MeterRegistry registry) {
+
+        super();
+
+        this.registry = registry;
+
+        this.topics = new ConcurrentHashMap<String, Map<Integer, PartitionTimers>>();
+    }
+
+    /**
+     * Record latency of the records that are being processed on the current thread,
+     * whether a single record or the records of a batch.
+     */
+    public void record() {
+
+        RecordContext recordContext;
+
+        recordContext = RecordContext.get();
+
+        if (recordContext.getRecord() != null) {
+            record(recordContext.getRecord());
+        }
+
+        for (int i = 0; i < recordContext.size(); i++) {
+            record(recordContext.getRecord(i));
+        }
+
+    }
+
+    /**
+     * Record latency of record.
+     * @param record The record
+     */
+    public void record(
+        final ConsumerRecord<?, ?> record) {
+
+        byte[] trace;
+        PartitionTimers timers;
+
+        trace = TraceHeader.of(record.headers());
+
+        if (trace == null) {
+            return;
+        }
+
+        timers = getTimers(record.topic(), record.partition());
+
+        timers.endToEnd.record(Math.max(0, System.currentTimeMillis() - TraceHeader.getSendTime(trace)), TimeUnit.MILLISECONDS);
+
+        timers.serialization.record(Math.max(0, TraceHeader.getSerializationTime(trace)), TimeUnit.MICROSECONDS);
+
+        timers.enqueue.record(Math.max(0, TraceHeader.getEnqueueTime(trace)), TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Get timers of partition.
+     * @param topic The topic
+     * @param partition The partition
+     * @return The timers of the partition
+     */
+    private PartitionTimers getTimers(
+        final String topic,
+        final int partition) {
+
+        Map<Integer, PartitionTimers> partitions;
+        PartitionTimers timers;
+
+        partitions = topics.get(topic);
+
+        if (partitions == null) {
+            partitions = topics.computeIfAbsent(topic, key -> new ConcurrentHashMap<Integer, PartitionTimers>());
+        }
+
+        timers = partitions.get(partition);
+
+        if (timers == null) {
+            timers = partitions.computeIfAbsent(partition, key -> new PartitionTimers(topic, key));
+        }
+
+        return timers;
+    }
+
+    /**
+     * The timers of a partition.
+     */
+    private final class PartitionTimers {
+
+        private Timer endToEnd;
+
+        private Timer serialization;
+
+        private Timer enqueue;
+
+        /**
+         * Constructor.
+         * @param topic The topic
+         * @param partition The partition
+         */
+        PartitionTimers(
+            final String topic,
+            final int partition) {
+
+            super();
+
+            Tags tags;
+
+            tags = Tags.of("topic", topic, "partition", String.valueOf(partition));
+
+            this.endToEnd = Timer.builder(PREFIX + "latency")
+                .tags(tags)
+                .description("The amount of time from sending messages until they are consumed")
+                .publishPercentileHistogram()
+                .register(registry);
+
+            this.serialization = Timer.builder(PREFIX + "serialization")
+                .tags(tags)
+                .description("The amount of time that the producer spent serializing messages")
+                .publishPercentileHistogram()
+                .register(registry);
+
+            this.enqueue = Timer.builder(PREFIX + "enqueue")
+                .tags(tags)
+                .description("The amount of time from handing messages to the producer until the producer serialized them")
+                .publishPercentileHistogram()
+                .register(registry);
+        }
+
+    }
+
+}
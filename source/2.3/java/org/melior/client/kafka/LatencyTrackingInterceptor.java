@@ -0,0 +1,82 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.Map;
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+/**
+ * Feeds the acknowledgement latencies of records to the {@code PartitionLatencyTracker}
+ * that is passed in the producer configuration, for use by a {@code LatencyAwarePartitioner}.
+ * The latency of a record is measured on the monotonic clock from the moment that the
+ * record enters the producer, rather than from the time stamp of the record, which the
+ * Kafka server overwrites on topics that use log append time.
+ * @author Melior
+ * @since 2.3
+ */
+public class LatencyTrackingInterceptor implements ProducerInterceptor<Object, Object> {
+
+    private PartitionLatencyTracker tracker;
+
+    /**
+     * Configure the interceptor.
+     * @param configs The configuration parameters
+     */
+    public void configure(
+        final Map<String, ?> configs) {
+
+        Object value;
+
+        value = configs.get(LatencyAwarePartitioner.TRACKER_CONFIG);
+        tracker = (value instanceof PartitionLatencyTracker) ? (PartitionLatencyTracker) value : new PartitionLatencyTracker();
+    }
+
+    /**
+     * Intercept record before it is sent.  The send time of the record is noted.
+     * @param record The record
+     * @return The record
+     */
+    public ProducerRecord<Object, Object> onSend(
+        final ProducerRecord<Object, Object> record) {
+
+        tracker.onSend();
+
+        return record;
+    }
+
+    /**
+     * Intercept acknowledgement of record.
+     * @param metadata The record metadata, or {@code null} if the partition is unknown
+     * @param exception The exception, or {@code null} if the record was acknowledged
+     */
+    public void onAcknowledgement(
+        final RecordMetadata metadata,
+        final Exception exception) {
+
+        if (metadata == null) {
+            return;
+        }
+
+        if (exception != null) {
+            tracker.onFailure(metadata.topic(), metadata.partition());
+        }
+        else {
+            tracker.onAcknowledgement(metadata.topic(), metadata.partition());
+        }
+
+    }
+
+    /**
+     * Close the interceptor.
+     */
+    public void close() {
+    }
+
+}
@@ -0,0 +1,50 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+
+/**
+ * Converts messages to and from the payload of Kafka records.  The content type
+ * of the codec is written to the headers of every record that the codec encodes,
+ * so that a {@code KafkaConsumerClient} can select the same codec to decode it.
+ * <p>
+ * A codec must be thread-safe.  A custom codec must have a public no-argument
+ * constructor, so that it may be selected by its class name.
+ * @author Melior
+ * @since 2.3
+ */
+public interface MessageCodec {
+
+    /**
+     * Get content type of the payloads that the codec produces.
+     * @return The content type
+     */
+    public String getContentType();
+
+    /**
+     * Encode message.
+     * @param message The message object
+     * @return The message payload
+     * @throws Exception if unable to encode the message
+     */
+    public byte[] encode(
+        final Object message) throws Exception;
+
+    /**
+     * Decode message.
+     * @param <T> The message type
+     * @param payload The message payload
+     * @param type The message class
+     * @return The message object
+     * @throws Exception if unable to decode the message
+     */
+    public <T> T decode(
+        final byte[] payload,
+        final Class<T> type) throws Exception;
+
+}
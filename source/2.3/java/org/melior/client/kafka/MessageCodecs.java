@@ -0,0 +1,233 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides the message codecs that are shared by the Kafka clients.  A codec is
+ * selected by the name of a built-in codec, {@code json}, {@code smile}, {@code cbor}
+ * or {@code avro}, or by the class name of a custom codec, and is only created once
+ * with and once without bytecode-generated accessors.
+ * The codecs that have been created are also looked up by their content type, so
+ * that a consumer can decode a record with the codec that encoded it.  The content
+ * type header of a record is compared with the encoded content types of the codecs
+ * as is, so that looking up the codec of a record does not allocate.
+ * @author Melior
+ * @since 2.3
+ */
+final class MessageCodecs {
+
+    static final String JSON = "json";
+
+    private static Map<String, MessageCodec> codecs = new ConcurrentHashMap<String, MessageCodec>();
+
+    private static volatile ContentType[] contentTypes = new ContentType[0];
+
+    /**
+     * Constructor.
+     */
+    private MessageCodecs() {
+
+        super();
+    }
+
+    /**
+     * Get codec by name.
+     * @param name The name of a built-in codec, or the class name of a custom codec
+     * @return The codec
+     * @throws IllegalArgumentException if the codec is not known or cannot be created
+     */
+    static MessageCodec forName(
+        final String name) {
+
+        return forName(name, false);
+    }
+
+    /**
+     * Get codec by name.  Bytecode-generated accessors only apply to the built-in codecs.
+     * @param name The name of a built-in codec, or the class name of a custom codec
+     * @param afterburner The bytecode-generated accessors indicator
+     * @return The codec
+     * @throws IllegalArgumentException if the codec is not known or cannot be created
+     */
+    static MessageCodec forName(
+        final String name,
+        final boolean afterburner) {
+
+        String key;
+        MessageCodec codec;
+
+        key = (afterburner == true) ? name + "+afterburner" : name;
+
+        codec = codecs.get(key);
+
+        if (codec == null) {
+            codec = codecs.computeIfAbsent(key, value -> create(name, afterburner));
+
+            register(codec);
+        }
+
+        return codec;
+    }
+
+    /**
+     * Get codec by content type.  The built-in codecs are always found,
+     * custom codecs only once they have been selected by class name.
+     * @param contentType The encoded content type
+     * @param preferred The codec to use if it has the content type
+     * @return The codec
+     * @throws IllegalArgumentException if the content type is not supported
+     */
+    static MessageCodec forContentType(
+        final byte[] contentType,
+        final MessageCodec preferred) {
+
+        ContentType[] types;
+        String value;
+
+        types = contentTypes;
+
+        for (ContentType type : types) {
+
+            if ((type.codec == preferred) && (Arrays.equals(type.value, contentType) == true)) {
+                return preferred;
+            }
+
+        }
+
+        for (ContentType type : types) {
+
+            if (Arrays.equals(type.value, contentType) == true) {
+                return type.codec;
+            }
+
+        }
+
+        value = new String(contentType, StandardCharsets.UTF_8);
+
+        if (value.equals(preferred.getContentType()) == true) {
+            return preferred;
+        }
+
+        switch (value) {
+
+        case JsonCodec.CONTENT_TYPE:
+            return forName(JSON);
+
+        case SmileCodec.CONTENT_TYPE:
+            return forName("smile");
+
+        case CborCodec.CONTENT_TYPE:
+            return forName("cbor");
+
+        case AvroCodec.CONTENT_TYPE:
+            return forName("avro");
+
+        default:
+            throw new IllegalArgumentException("Content type " + value + " is not supported.");
+        }
+
+    }
+
+    /**
+     * Register content type of codec, unless the codec has already been registered.
+     * @param codec The codec
+     */
+    private static synchronized void register(
+        final MessageCodec codec) {
+
+        ContentType[] types;
+
+        for (ContentType type : contentTypes) {
+
+            if (type.codec == codec) {
+                return;
+            }
+
+        }
+
+        types = Arrays.copyOf(contentTypes, contentTypes.length + 1);
+
+        types[contentTypes.length] = new ContentType(codec.getContentType().getBytes(StandardCharsets.UTF_8), codec);
+
+        contentTypes = types;
+    }
+
+    /**
+     * Create codec.
+     * @param name The name of a built-in codec, or the class name of a custom codec
+     * @param afterburner The bytecode-generated accessors indicator
+     * @return The codec
+     * @throws IllegalArgumentException if the codec is not known or cannot be created
+     */
+    private static MessageCodec create(
+        final String name,
+        final boolean afterburner) {
+
+        try {
+
+            switch (name) {
+
+            case JSON:
+                return new JsonCodec(afterburner);
+
+            case "smile":
+                return new SmileCodec(afterburner);
+
+            case "cbor":
+                return new CborCodec(afterburner);
+
+            case "avro":
+                return new AvroCodec(afterburner);
+
+            default:
+                return Class.forName(name).asSubclass(MessageCodec.class).getDeclaredConstructor().newInstance();
+            }
+
+        }
+        catch (ClassNotFoundException exception) {
+            throw new IllegalArgumentException("Codec " + name + " is not known.", exception);
+        }
+        catch (Exception | LinkageError exception) {
+            throw new IllegalArgumentException("Failed to create codec " + name + ": " + exception.toString(), exception);
+        }
+
+    }
+
+    /**
+     * The encoded content type of a codec.
+     */
+    private static final class ContentType {
+
+        private byte[] value;
+
+        private MessageCodec codec;
+
+        /**
+         * Constructor.
+         * @param value The encoded content type
+         * @param codec The codec
+         */
+        ContentType(
+            final byte[] value,
+            final MessageCodec codec) {
+
+            super();
+
+            this.value = value;
+
+            this.codec = codec;
+        }
+
+    }
+
+}
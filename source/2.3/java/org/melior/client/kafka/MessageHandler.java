@@ -0,0 +1,28 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+
+/**
+ * Processes messages that have been consumed by a {@code KafkaConsumerClient}.
+ * @author Melior
+ * @since 2.3
+ * @param <T> The message type
+ */
+@FunctionalInterface
+public interface MessageHandler<T> {
+
+    /**
+     * Process message.
+     * @param message The message object
+     * @throws Exception if unable to process the message
+     */
+    public void handle(
+        final T message) throws Exception;
+
+}
@@ -0,0 +1,53 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Provides the {@code ObjectMapper} that is shared by the Kafka clients, so that
+ * producers and consumers map objects to JSON in the same way.
+ * @author Melior
+ * @since 2.3
+ */
+final class ObjectMapperFactory {
+
+    private static final ObjectMapper objectMapper = create();
+
+    /**
+     * Constructor.
+     */
+    private ObjectMapperFactory() {
+
+        super();
+    }
+
+    /**
+     * Get shared object mapper.
+     * @return The object mapper
+     */
+    static ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * Create object mapper.
+     * @return The object mapper
+     */
+    private static ObjectMapper create() {
+
+        ObjectMapper mapper;
+
+        mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        return mapper;
+    }
+
+}
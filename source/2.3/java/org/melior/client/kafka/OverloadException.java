@@ -0,0 +1,33 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import org.melior.client.exception.RemotingException;
+import org.melior.service.exception.ExceptionType;
+
+/**
+ * Thrown by a {@code KafkaClient} when a message is refused or discarded because
+ * the limit of messages or bytes in flight to the Kafka server has been reached.
+ * @author Melior
+ * @since 2.3
+ */
+public class OverloadException extends RemotingException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor.
+     * @param message The exception message
+     */
+    public OverloadException(
+        final String message) {
+
+        super(ExceptionType.REMOTING_COMMUNICATION, message);
+    }
+
+}
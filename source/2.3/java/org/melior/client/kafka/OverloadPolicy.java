@@ -0,0 +1,37 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+
+/**
+ * The policies that a {@code KafkaClient} may apply when the limit of
+ * messages or bytes in flight to the Kafka server has been reached.
+ * @author Melior
+ * @since 2.3
+ */
+public enum OverloadPolicy {
+
+    /**
+     * Block the caller until the message may be sent, up to the overload timeout,
+     * after which the message is refused with an {@code OverloadException}.
+     */
+    BLOCK,
+
+    /**
+     * Refuse the message immediately with an {@code OverloadException}.
+     */
+    FAIL_FAST,
+
+    /**
+     * Stage the message in the client without blocking the caller, and send it
+     * when the limit allows.  When the staging queue is full, the oldest staged
+     * message is discarded.
+     */
+    DROP_OLDEST;
+
+}
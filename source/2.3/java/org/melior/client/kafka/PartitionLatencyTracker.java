@@ -0,0 +1,451 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+
+/**
+ * Tracks the acknowledgement latency of every partition leader and the records
+ * that are in flight to every partition, to allow a partitioner to steer records
+ * away from partition leaders that have degraded.
+ * <p>
+ * The time at which a record is sent is noted on the monotonic clock when the
+ * record enters the producer, and is queued on the partition that the record is
+ * assigned to.  The producer completes the records of a partition in the order in
+ * which they were assigned, so an acknowledgement of the partition completes the
+ * oldest record that is queued on it.  The latency is therefore independent of the
+ * time stamps of the records, which the Kafka server overwrites on topics that use
+ * log append time.
+ * <p>
+ * The latency of a partition leader is kept as an exponentially weighted moving
+ * average of the acknowledgement latencies that are reported for the partitions
+ * that it leads.  Concurrent updates of the average are not coordinated, as the
+ * average only needs to be an estimate.
+ * @author Melior
+ * @since 2.3
+ */
+public class PartitionLatencyTracker {
+
+    private static final double WEIGHT = 0.2;
+
+    private static final double INITIAL_LATENCY = 1.0;
+
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private ConcurrentHashMap<String, TopicState> topics;
+
+    private ConcurrentHashMap<Integer, NodeState> nodes;
+
+    private ThreadLocal<long[]> sendTime;
+
+    /**
+     * Constructor.
+     */
+    public PartitionLatencyTracker() {
+
+        super();
+
+        this.topics = new ConcurrentHashMap<String, TopicState>();
+
+        this.nodes = new ConcurrentHashMap<Integer, NodeState>();
+
+        this.sendTime = ThreadLocal.withInitial(() -> new long[] {UNKNOWN});
+    }
+
+    /**
+     * Get score of partition.  The lower the score, the better suited the
+     * partition is to receive the next batch of records.
+     * @param topic The topic
+     * @param partition The partition
+     * @param cluster The current cluster metadata
+     * @return The score
+     */
+    public double score(
+        final String topic,
+        final int partition,
+        final Cluster cluster) {
+
+        TopicState topicState;
+
+        topicState = getTopicState(topic, cluster);
+
+        return getNodeState(topicState.getLeader(partition)).latency * (1 + topicState.getInFlight(partition));
+    }
+
+    /**
+     * Record that a record is being sent on the current thread.  The producer
+     * assigns the record to a partition on the same thread.
+     */
+    public void onSend() {
+
+        sendTime.get()[0] = System.nanoTime();
+    }
+
+    /**
+     * Record that a record has been assigned to a partition.
+     * @param topic The topic
+     * @param partition The partition
+     * @param cluster The current cluster metadata
+     */
+    public void onDispatch(
+        final String topic,
+        final int partition,
+        final Cluster cluster) {
+
+        long[] time;
+
+        time = sendTime.get();
+
+        getTopicState(topic, cluster).add(partition, (time[0] == UNKNOWN) ? System.nanoTime() : time[0]);
+
+        time[0] = UNKNOWN;
+    }
+
+    /**
+     * Record that a record which has been assigned to a partition has been
+     * withdrawn from that partition before being dispatched.  The send time of
+     * the record is retained for when the record is assigned again.
+     * @param topic The topic
+     * @param partition The partition
+     */
+    public void onRevoke(
+        final String topic,
+        final int partition) {
+
+        TopicState topicState;
+        long time;
+
+        topicState = topics.get(topic);
+
+        if (topicState == null) {
+            return;
+        }
+
+        time = topicState.removeLast(partition);
+
+        if (time != UNKNOWN) {
+            sendTime.get()[0] = time;
+        }
+
+    }
+
+    /**
+     * Record that the oldest record in flight to a partition has been acknowledged
+     * by the leader of the partition.
+     * @param topic The topic
+     * @param partition The partition
+     */
+    public void onAcknowledgement(
+        final String topic,
+        final int partition) {
+
+        TopicState topicState;
+        long time;
+
+        topicState = topics.get(topic);
+
+        if (topicState == null) {
+            return;
+        }
+
+        time = topicState.removeFirst(partition);
+
+        if (time != UNKNOWN) {
+            update(topicState.getLeader(partition), Math.max(0, System.nanoTime() - time) / 1000000.0);
+        }
+
+    }
+
+    /**
+     * Record that the oldest record in flight to a partition could not be delivered
+     * to the leader of the partition.  The failure is recorded as an acknowledgement
+     * at twice the current latency of the partition leader.
+     * @param topic The topic
+     * @param partition The partition
+     */
+    public void onFailure(
+        final String topic,
+        final int partition) {
+
+        TopicState topicState;
+        int leader;
+
+        topicState = topics.get(topic);
+
+        if (topicState == null) {
+            return;
+        }
+
+        topicState.removeFirst(partition);
+
+        leader = topicState.getLeader(partition);
+
+        update(leader, 2 * getNodeState(leader).latency + 1);
+    }
+
+    /**
+     * Get latency of partition leader.
+     * @param node The identifier of the partition leader
+     * @return The latency in milliseconds
+     */
+    public double getLatency(
+        final int node) {
+        return getNodeState(node).latency;
+    }
+
+    /**
+     * Update moving average latency of partition leader.
+     * @param node The identifier of the partition leader
+     * @param latency The acknowledgement latency in milliseconds
+     */
+    private void update(
+        final int node,
+        final double latency) {
+
+        NodeState nodeState;
+
+        nodeState = getNodeState(node);
+        nodeState.latency = nodeState.latency + WEIGHT * (latency - nodeState.latency);
+    }
+
+    /**
+     * Get state of topic.  The state is rebuilt whenever the cluster metadata
+     * has been refreshed, retaining the records in flight to the partitions.
+     * @param topic The topic
+     * @param cluster The current cluster metadata
+     * @return The state of the topic
+     */
+    private TopicState getTopicState(
+        final String topic,
+        final Cluster cluster) {
+
+        TopicState topicState;
+
+        topicState = topics.get(topic);
+
+        if ((topicState == null) || (topicState.cluster != cluster)) {
+            topicState = topics.merge(topic, new TopicState(topic, cluster, topicState),
+                (current, next) -> (current.cluster == cluster) ? current : new TopicState(topic, cluster, current));
+        }
+
+        return topicState;
+    }
+
+    /**
+     * Get state of partition leader.
+     * @param node The identifier of the partition leader
+     * @return The state of the partition leader
+     */
+    private NodeState getNodeState(
+        final int node) {
+
+        NodeState nodeState;
+
+        nodeState = nodes.get(node);
+
+        if (nodeState == null) {
+            nodeState = nodes.computeIfAbsent(node, key -> new NodeState());
+        }
+
+        return nodeState;
+    }
+
+    /**
+     * The state of a topic.
+     */
+    private static final class TopicState {
+
+        private Cluster cluster;
+
+        private int[] leaders;
+
+        private SendTimes[] inFlight;
+
+        /**
+         * Constructor.
+         * @param topic The topic
+         * @param cluster The cluster metadata
+         * @param previous The previous state of the topic, if any
+         */
+        TopicState(
+            final String topic,
+            final Cluster cluster,
+            final TopicState previous) {
+
+            List<PartitionInfo> partitions;
+            Node leader;
+
+            this.cluster = cluster;
+
+            partitions = cluster.partitionsForTopic(topic);
+
+            this.leaders = new int[partitions.size()];
+
+            for (PartitionInfo partitionInfo : partitions) {
+
+                if (partitionInfo.partition() < leaders.length) {
+                    leader = partitionInfo.leader();
+                    leaders[partitionInfo.partition()] = (leader == null) ? -1 : leader.id();
+                }
+
+            }
+
+            this.inFlight = new SendTimes[leaders.length];
+
+            for (int i = 0; i < leaders.length; i++) {
+                inFlight[i] = ((previous != null) && (i < previous.inFlight.length)) ? previous.inFlight[i] : new SendTimes();
+            }
+
+        }
+
+        /**
+         * Get leader of partition.
+         * @param partition The partition
+         * @return The identifier of the partition leader
+         */
+        int getLeader(
+            final int partition) {
+            return ((partition >= 0) && (partition < leaders.length)) ? leaders[partition] : -1;
+        }
+
+        /**
+         * Get number of records in flight to partition.
+         * @param partition The partition
+         * @return The number of records
+         */
+        int getInFlight(
+            final int partition) {
+            return ((partition >= 0) && (partition < leaders.length)) ? inFlight[partition].size : 0;
+        }
+
+        /**
+         * Add record in flight to partition.
+         * @param partition The partition
+         * @param time The send time of the record in nanoseconds
+         */
+        void add(
+            final int partition,
+            final long time) {
+
+            if ((partition >= 0) && (partition < leaders.length)) {
+                inFlight[partition].addLast(time);
+            }
+
+        }
+
+        /**
+         * Remove record that was most recently put in flight to partition.
+         * @param partition The partition
+         * @return The send time of the record, or {@code UNKNOWN} if no record is in flight
+         */
+        long removeLast(
+            final int partition) {
+            return ((partition >= 0) && (partition < leaders.length)) ? inFlight[partition].removeLast() : UNKNOWN;
+        }
+
+        /**
+         * Remove oldest record in flight to partition.
+         * @param partition The partition
+         * @return The send time of the record, or {@code UNKNOWN} if no record is in flight
+         */
+        long removeFirst(
+            final int partition) {
+            return ((partition >= 0) && (partition < leaders.length)) ? inFlight[partition].removeFirst() : UNKNOWN;
+        }
+
+    }
+
+    /**
+     * The send times of the records in flight to a partition, oldest first, held
+     * in a ring buffer that grows as needed.
+     */
+    private static final class SendTimes {
+
+        private long[] times = new long[16];
+
+        private int head;
+
+        private volatile int size;
+
+        /**
+         * Add send time.
+         * @param time The send time in nanoseconds
+         */
+        synchronized void addLast(
+            final long time) {
+
+            long[] grown;
+
+            if (size == times.length) {
+                grown = new long[times.length * 2];
+
+                for (int i = 0; i < size; i++) {
+                    grown[i] = times[(head + i) % times.length];
+                }
+
+                times = grown;
+                head = 0;
+            }
+
+            times[(head + size) % times.length] = time;
+
+            size = size + 1;
+        }
+
+        /**
+         * Remove most recent send time.
+         * @return The send time, or {@code UNKNOWN} if there is none
+         */
+        synchronized long removeLast() {
+
+            if (size == 0) {
+                return UNKNOWN;
+            }
+
+            size = size - 1;
+
+            return times[(head + size) % times.length];
+        }
+
+        /**
+         * Remove oldest send time.
+         * @return The send time, or {@code UNKNOWN} if there is none
+         */
+        synchronized long removeFirst() {
+
+            long time;
+
+            if (size == 0) {
+                return UNKNOWN;
+            }
+
+            time = times[head];
+
+            head = (head + 1) % times.length;
+
+            size = size - 1;
+
+            return time;
+        }
+
+    }
+
+    /**
+     * The state of a partition leader.
+     */
+    private static final class NodeState {
+
+        private volatile double latency = INITIAL_LATENCY;
+
+    }
+
+}
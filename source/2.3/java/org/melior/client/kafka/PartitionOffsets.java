@@ -0,0 +1,189 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.TreeSet;
+
+/**
+ * Tracks the offsets of the records of a partition that have been dispatched
+ * for processing and not yet completed.  Records may complete in any order,
+ * but only the offsets up to the first record that has not yet completed may
+ * be committed, so that no record is lost when the consumer fails.
+ * <p>
+ * A record that is abandoned holds back the offsets of the partition until the
+ * partition is assigned again.  Once a record has failed without being skipped,
+ * or once the partition has been revoked, the remaining records of the partition
+ * are abandoned without being processed.
+ * @author Melior
+ * @since 2.3
+ */
+final class PartitionOffsets {
+
+    private TreeSet<Long> pending;
+
+    private long next;
+
+    private long committed;
+
+    private int inFlight;
+
+    private boolean blocked;
+
+    private boolean revoked;
+
+    /**
+     * Constructor.
+     */
+    PartitionOffsets() {
+
+        super();
+
+        this.pending = new TreeSet<Long>();
+
+        this.next = -1;
+
+        this.committed = -1;
+
+        this.inFlight = 0;
+
+        this.blocked = false;
+
+        this.revoked = false;
+    }
+
+    /**
+     * Record that record has been dispatched for processing.
+     * @param offset The offset of the record
+     */
+    synchronized void dispatched(
+        final long offset) {
+
+        pending.add(offset);
+
+        next = Math.max(next, offset + 1);
+
+        inFlight++;
+    }
+
+    /**
+     * Record that record has completed processing.
+     * @param offset The offset of the record
+     */
+    synchronized void completed(
+        final long offset) {
+
+        pending.remove(offset);
+
+        inFlight--;
+
+        notifyAll();
+    }
+
+    /**
+     * Record that record has been abandoned without completing.  The offset of
+     * the record is not committed.
+     * @param offset The offset of the record
+     */
+    synchronized void abandoned(
+        final long offset) {
+
+        inFlight--;
+
+        notifyAll();
+    }
+
+    /**
+     * Record that record has failed and must not be skipped.  The remaining
+     * records of the partition are abandoned.
+     */
+    synchronized void block() {
+
+        blocked = true;
+    }
+
+    /**
+     * Determine whether a record has failed and must not be skipped.
+     * @return true if a record has failed, false otherwise
+     */
+    synchronized boolean isBlocked() {
+        return blocked;
+    }
+
+    /**
+     * Record that partition has been revoked.  The remaining records of the
+     * partition are abandoned.
+     */
+    synchronized void revoke() {
+
+        revoked = true;
+    }
+
+    /**
+     * Determine whether records of the partition may be processed.
+     * @return true if the records may be processed, false if they must be abandoned
+     */
+    synchronized boolean isProcessable() {
+        return (blocked == false) && (revoked == false);
+    }
+
+    /**
+     * Wait until no records of the partition are being processed or waiting to
+     * be processed.
+     * @param timeout The timeout in milliseconds
+     * @return true if no records are in flight, false if the timeout expired
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized boolean awaitIdle(
+        final long timeout) throws InterruptedException {
+
+        long deadline;
+        long remaining;
+
+        deadline = System.currentTimeMillis() + timeout;
+
+        while (inFlight > 0) {
+            remaining = deadline - System.currentTimeMillis();
+
+            if (remaining <= 0) {
+                return false;
+            }
+
+            wait(remaining);
+        }
+
+        return true;
+    }
+
+    /**
+     * Get offset that may be committed.  This is the offset of the first record
+     * that has not yet completed, or the offset that follows the last record that
+     * was dispatched if all records have completed.
+     * @return The offset, or -1 if no record has been dispatched
+     */
+    synchronized long getCommittable() {
+        return (pending.isEmpty() == true) ? next : pending.first();
+    }
+
+    /**
+     * Get offset that was last committed.
+     * @return The offset, or -1 if no offset has been committed
+     */
+    long getCommitted() {
+        return committed;
+    }
+
+    /**
+     * Set offset that was last committed.
+     * @param committed The offset
+     */
+    void setCommitted(
+        final long committed) {
+        this.committed = committed;
+    }
+
+}
@@ -0,0 +1,115 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.Map;
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+/**
+ * Named sets of producer settings which are tuned together in a consistent way
+ * for a particular kind of workload.  A profile only sets the batching, compression,
+ * buffering and delivery guarantee settings of the producer.  Any setting may still
+ * be overridden using the {@code producer} properties of the client configuration.
+ * @author Melior
+ * @since 2.3
+ */
+public enum ProducerProfile {
+
+    /**
+     * Leaves the producer settings at the Kafka defaults.
+     */
+    DEFAULT(null, null, null, null, null, null, null),
+
+    /**
+     * Dispatches every record as soon as possible, without compression, and
+     * only waits for the partition leader to acknowledge the record.
+     */
+    LOW_LATENCY(0, 16384, "none", 33554432L, "1", 5, false),
+
+    /**
+     * Allows records a few milliseconds to be grouped into moderately sized,
+     * lightly compressed batches, and waits for all in-sync replicas to
+     * acknowledge the records without duplicates.
+     */
+    BALANCED(5, 65536, "lz4", 67108864L, "all", 5, true),
+
+    /**
+     * Allows records time to be grouped into large, strongly compressed batches,
+     * and waits for all in-sync replicas to acknowledge the records without duplicates.
+     */
+    HIGH_THROUGHPUT(50, 262144, "zstd", 134217728L, "all", 5, true);
+
+    private Integer lingerMs;
+
+    private Integer batchSize;
+
+    private String compressionType;
+
+    private Long bufferMemory;
+
+    private String acks;
+
+    private Integer maxInFlightRequests;
+
+    private Boolean idempotence;
+
+    /**
+     * Constructor.
+     * @param lingerMs The amount of time to allow records to be grouped into batches
+     * @param batchSize The maximum size of a batch in bytes
+     * @param compressionType The compression type
+     * @param bufferMemory The amount of memory to buffer records in bytes
+     * @param acks The acknowledgements required
+     * @param maxInFlightRequests The maximum number of unacknowledged requests per connection
+     * @param idempotence The idempotence indicator
+     */
+    ProducerProfile(
+        final Integer lingerMs,
+        final Integer batchSize,
+        final String compressionType,
+        final Long bufferMemory,
+        final String acks,
+        final Integer maxInFlightRequests,
+        final Boolean idempotence) {
+
+        this.lingerMs = lingerMs;
+
+        this.batchSize = batchSize;
+
+        this.compressionType = compressionType;
+
+        this.bufferMemory = bufferMemory;
+
+        this.acks = acks;
+
+        this.maxInFlightRequests = maxInFlightRequests;
+
+        this.idempotence = idempotence;
+    }
+
+    /**
+     * Apply profile to producer configuration.
+     * @param properties The producer configuration
+     */
+    public void apply(
+        final Map<String, Object> properties) {
+
+        if (this == DEFAULT) {
+            return;
+        }
+
+        properties.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        properties.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        properties.put(ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
+        properties.put(ProducerConfig.ACKS_CONFIG, acks);
+        properties.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, maxInFlightRequests);
+        properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, idempotence);
+    }
+
+}
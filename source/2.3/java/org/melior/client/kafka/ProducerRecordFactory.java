@@ -7,19 +7,36 @@
         Service Harness
 */
 package org.melior.client.kafka;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.kafka.clients.producer.ProducerRecord;
 
 /**
- * Constructs a new Kafka {@code ProducerRecord} object from a text payload.
+ * Constructs a new Kafka {@code ProducerRecord} object from a text or binary payload.
  * <p>
  * This implementation sets the correlation id in the message headers
  * to the transaction identifier from the transaction context, to allow
- * a transaction to be traced to the Kafka server.
+ * a transaction to be traced to the Kafka server.  The encoded correlation
+ * identifier is cached per thread, so that consecutive records for the same
+ * transaction share the header value instead of encoding it again.  When the
+ * content type of the payload is known, it is set in the message headers too.
+ * The tracing header is described by {@code TraceHeader}.
  * @author Melior
  * @since 2.3
  */
 public abstract class ProducerRecordFactory {
 
+    public static final String REQUEST_ID = "requestID";
+
+    public static final String CONTENT_TYPE = "contentType";
+
+    public static final String TRACE = "trace";
+
+    private static Map<String, byte[]> contentTypes = new ConcurrentHashMap<String, byte[]>();
+
+    private static final ThreadLocal<EncodedId> encodedIds = ThreadLocal.withInitial(EncodedId::new);
+
     /**
      * Create producer record.
      * @param topic The message topic
@@ -35,9 +52,136 @@ public abstract class ProducerRecordFactory {
         ProducerRecord<String, String> producerRecord;
 
         producerRecord = new ProducerRecord<String, String>(topic, payload);
-        producerRecord.headers().add("requestID", correlationId.getBytes());
+        producerRecord.headers().add(REQUEST_ID, encode(correlationId));
+
+        return producerRecord;
+    }
+
+    /**
+     * Create producer record.
+     * @param topic The message topic
+     * @param payload The message payload
+     * @param correlationId The correlation identifier
+     * @return The producer record
+     */
+    public static ProducerRecord<String, byte[]> create(
+        final String topic,
+        final byte[] payload,
+        final String correlationId) {
+
+        ProducerRecord<String, byte[]> producerRecord;
+
+        producerRecord = new ProducerRecord<String, byte[]>(topic, payload);
+        producerRecord.headers().add(REQUEST_ID, encode(correlationId));
+
+        return producerRecord;
+    }
+
+    /**
+     * Create producer record.
+     * @param topic The message topic
+     * @param payload The message payload
+     * @param correlationId The correlation identifier
+     * @param contentType The content type of the payload, or {@code null} if it is not known
+     * @return The producer record
+     */
+    public static ProducerRecord<String, byte[]> create(
+        final String topic,
+        final byte[] payload,
+        final String correlationId,
+        final String contentType) {
+
+        ProducerRecord<String, byte[]> producerRecord;
+
+        producerRecord = create(topic, payload, correlationId);
+
+        if (contentType != null) {
+            producerRecord.headers().add(CONTENT_TYPE, encodeContentType(contentType));
+        }
+
+        return producerRecord;
+    }
+
+    /**
+     * Create producer record with a correlation identifier and a content type that have already been encoded.
+     * @param topic The message topic
+     * @param payload The message payload
+     * @param correlationId The UTF-8 encoded correlation identifier
+     * @param contentType The UTF-8 encoded content type, or {@code null} if it is not known
+     * @return The producer record
+     */
+    static ProducerRecord<String, byte[]> create(
+        final String topic,
+        final byte[] payload,
+        final byte[] correlationId,
+        final byte[] contentType) {
+
+        ProducerRecord<String, byte[]> producerRecord;
+
+        producerRecord = new ProducerRecord<String, byte[]>(topic, payload);
+        producerRecord.headers().add(REQUEST_ID, correlationId);
+
+        if (contentType != null) {
+            producerRecord.headers().add(CONTENT_TYPE, contentType);
+        }
 
         return producerRecord;
     }
 
+    /**
+     * Encode content type as UTF-8.  The encoding of every content type is cached,
+     * as a client only ever uses a few of them.
+     * @param contentType The content type
+     * @return The encoded content type
+     */
+    private static byte[] encodeContentType(
+        final String contentType) {
+
+        byte[] bytes;
+
+        bytes = contentTypes.get(contentType);
+
+        if (bytes == null) {
+            bytes = contentTypes.computeIfAbsent(contentType, key -> key.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Encode correlation identifier as UTF-8.  The encoding of the most recent
+     * correlation identifier on the current thread is reused.
+     * @param correlationId The correlation identifier
+     * @return The encoded correlation identifier
+     */
+    private static byte[] encode(
+        final String correlationId) {
+
+        EncodedId encodedId;
+
+        if (correlationId == null) {
+            return null;
+        }
+
+        encodedId = encodedIds.get();
+
+        if (correlationId.equals(encodedId.value) == false) {
+            encodedId.value = correlationId;
+            encodedId.bytes = correlationId.getBytes(StandardCharsets.UTF_8);
+        }
+
+        return encodedId.bytes;
+    }
+
+    /**
+     * The most recent encoded correlation identifier.
+     */
+    private static final class EncodedId {
+
+        private String value;
+
+        private byte[] bytes;
+
+    }
+
 }
@@ -0,0 +1,203 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.ProducerFactory;
+
+/**
+ * Keeps track of the producer factories that are in use by Kafka clients, to allow
+ * clients with identical producer configurations to share a single producer, and
+ * with it the I/O thread, the buffer pool and the connections to the Kafka servers.
+ * <p>
+ * The client identifier is part of the producer configuration.  It is the name of the
+ * service, suffixed with the name of the traffic lane for the producers of a traffic
+ * lane and with the index of the stripe when more than one stripe is configured.  The
+ * producers of a traffic lane are therefore only shared with the same traffic lane of
+ * other clients, and never with a client without traffic lanes, even when the rest of
+ * their configurations are identical.
+ * <p>
+ * The producer factories are reference counted.  A producer factory is destroyed,
+ * which closes its producer, when the last client that uses it releases it.
+ * <p>
+ * A producer property whose name starts with {@code melior.} and whose value is an
+ * object, rather than a plain value, passes an object such as a statistics collector
+ * to the plugins of the producer.  Such objects are not considered when comparing
+ * producer configurations, and when a producer is shared, its plugins use the objects
+ * of the client that created it.  Clients must therefore obtain these objects from
+ * the registry, rather than use their own.
+ * @author Melior
+ * @since 2.3
+ */
+final class ProducerRegistry {
+
+    private static final String PRIVATE_PREFIX = "melior.";
+
+    private static Map<String, Registration> registrations = new HashMap<String, Registration>();
+
+    /**
+     * Constructor.
+     */
+    private ProducerRegistry() {
+
+        super();
+    }
+
+    /**
+     * Acquire producer factory for producer configuration.  If a producer factory
+     * for an identical producer configuration is already in use then that producer
+     * factory is shared, otherwise a new producer factory is created.
+     * @param properties The producer configuration
+     * @return The producer factory
+     */
+    static synchronized ProducerFactory<String, byte[]> acquire(
+        final Map<String, Object> properties) {
+
+        String key;
+        Registration registration;
+
+        key = getKey(properties);
+
+        registration = registrations.get(key);
+
+        if (registration == null) {
+            registration = new Registration(key, properties, new DefaultKafkaProducerFactory<String, byte[]>(properties));
+            registrations.put(key, registration);
+        }
+
+        registration.references++;
+
+        return registration.producerFactory;
+    }
+
+    /**
+     * Get object that is passed to the plugins of the producer of a producer factory.
+     * @param producerFactory The producer factory
+     * @param name The name of the producer property that holds the object
+     * @param defaultValue The object to return if the producer factory is not registered
+     * @return The object
+     */
+    static synchronized Object getShared(
+        final ProducerFactory<String, byte[]> producerFactory,
+        final String name,
+        final Object defaultValue) {
+
+        for (Registration candidate : registrations.values()) {
+
+            if (candidate.producerFactory == producerFactory) {
+                return candidate.properties.get(name);
+            }
+
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Release producer factory.  If no other client is using the producer factory
+     * then the producer factory is destroyed.
+     * @param producerFactory The producer factory
+     */
+    static synchronized void release(
+        final ProducerFactory<String, byte[]> producerFactory) {
+
+        Registration registration = null;
+
+        for (Registration candidate : registrations.values()) {
+
+            if (candidate.producerFactory == producerFactory) {
+                registration = candidate;
+
+                break;
+            }
+
+        }
+
+        if ((registration == null) || (--registration.references > 0)) {
+            return;
+        }
+
+        registrations.remove(registration.key);
+
+        registration.producerFactory.destroy();
+    }
+
+    /**
+     * Get key of producer configuration.
+     * @param properties The producer configuration
+     * @return The key
+     */
+    private static String getKey(
+        final Map<String, Object> properties) {
+
+        StringBuilder key;
+
+        key = new StringBuilder();
+
+        for (Map.Entry<String, Object> entry : new TreeMap<String, Object>(properties).entrySet()) {
+
+            if ((entry.getKey().startsWith(PRIVATE_PREFIX) == false) || (isPlainValue(entry.getValue()) == true)) {
+                key.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+            }
+
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Determine whether value of producer property is a plain value.
+     * @param value The value
+     * @return true if the value is a plain value, false if it is an object
+     */
+    private static boolean isPlainValue(
+        final Object value) {
+        return (value == null) || (value instanceof String) || (value instanceof Number) || (value instanceof Boolean);
+    }
+
+    /**
+     * The registration of a producer factory.
+     */
+    private static final class Registration {
+
+        private String key;
+
+        private Map<String, Object> properties;
+
+        private DefaultKafkaProducerFactory<String, byte[]> producerFactory;
+
+        private int references;
+
+        /**
+         * Constructor.
+         * @param key The key of the producer configuration
+         * @param properties The producer configuration
+         * @param producerFactory The producer factory
+         */
+        Registration(
+            final String key,
+            final Map<String, Object> properties,
+            final DefaultKafkaProducerFactory<String, byte[]> producerFactory) {
+
+            super();
+
+            this.key = key;
+
+            this.properties = properties;
+
+            this.producerFactory = producerFactory;
+
+            this.references = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,357 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * A set of producers over which the records of a {@code KafkaClient} are spread.
+ * A producer appends every record to its record accumulator under a lock, which
+ * limits the rate at which a single producer accepts records from many threads,
+ * so spreading the records over several producers allows sends to scale with the
+ * number of cores.
+ * <p>
+ * A record is sent on the stripe of the current thread, or on the stripe with the
+ * fewest records in flight, according to the stripe selection.  The client does not
+ * set record keys, so the records of a thread stay in order only with the thread
+ * selection.
+ * <p>
+ * Once the stripes are closed, records are refused, and closing waits for the
+ * records that are still being handed to the producers, so that the producers
+ * are never used after they have been released.  The metrics of a producer are
+ * read from the producer that the stripe has sent records with, so that reading
+ * them never creates a producer.  When the producer factory of a stripe closes that
+ * producer, for example after a fatal error, the stripe forgets it and keeps the
+ * producer that replaces it once it sends a record with it.
+ * @author Melior
+ * @since 2.3
+ */
+final class ProducerStripes {
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private static final ThreadLocal<Integer> threadIndex = ThreadLocal.withInitial(() -> threadCount.getAndIncrement() & Integer.MAX_VALUE);
+
+    private List<ProducerFactory<String, byte[]>> producerFactories;
+
+    private List<KafkaTemplate<String, byte[]>> kafkaTemplates;
+
+    private AtomicReferenceArray<Producer<String, byte[]>> producers;
+
+    private List<ProducerFactory.Listener<String, byte[]>> listeners;
+
+    private AtomicIntegerArray inFlight;
+
+    private LongAdder active;
+
+    private volatile boolean closed;
+
+    /**
+     * Constructor.
+     * @param producerFactories The producer factories of the stripes
+     * @param defaultTopic The default topic
+     * @param selection The stripe selection
+     */
+    ProducerStripes(
+        final List<ProducerFactory<String, byte[]>> producerFactories,
+        final String defaultTopic,
+        final StripeSelection selection) {
+
+        super();
+
+        KafkaTemplate<String, byte[]> template;
+        ProducerFactory.Listener<String, byte[]> listener;
+
+        this.producerFactories = producerFactories;
+
+        this.kafkaTemplates = new ArrayList<KafkaTemplate<String, byte[]>>(producerFactories.size());
+
+        for (ProducerFactory<String, byte[]> producerFactory : producerFactories) {
+            template = new KafkaTemplate<String, byte[]>(producerFactory);
+            template.setDefaultTopic(defaultTopic);
+
+            kafkaTemplates.add(template);
+        }
+
+        this.producers = new AtomicReferenceArray<Producer<String, byte[]>>(producerFactories.size());
+
+        this.listeners = new ArrayList<ProducerFactory.Listener<String, byte[]>>(producerFactories.size());
+
+        for (int i = 0; i < producerFactories.size(); i++) {
+            listener = untrack(i);
+
+            producerFactories.get(i).addListener(listener);
+
+            listeners.add(listener);
+        }
+
+        this.inFlight = ((selection == StripeSelection.LEAST_LOADED) && (producerFactories.size() > 1))
+            ? new AtomicIntegerArray(producerFactories.size()) : null;
+
+        this.active = new LongAdder();
+
+        this.closed = false;
+    }
+
+    /**
+     * Get number of stripes.
+     * @return The number of stripes
+     */
+    int size() {
+        return kafkaTemplates.size();
+    }
+
+    /**
+     * Get Kafka template of stripe.
+     * @param stripe The index of the stripe
+     * @return The Kafka template that wraps the producer of the stripe
+     */
+    KafkaTemplate<String, byte[]> get(
+        final int stripe) {
+        return kafkaTemplates.get(stripe);
+    }
+
+    /**
+     * Get producer factories of the stripes.
+     * @return The producer factories
+     */
+    List<ProducerFactory<String, byte[]>> getProducerFactories() {
+        return producerFactories;
+    }
+
+    /**
+     * Send record on the selected stripe.
+     * @param record The record
+     * @param sender The function that hands the record to the producer of the stripe
+     * @return The future outcome of the record
+     * @throws IllegalStateException if the stripes have been closed
+     */
+    ListenableFuture<SendResult<String, byte[]>> send(
+        final ProducerRecord<String, byte[]> record,
+        final BiFunction<KafkaTemplate<String, byte[]>, ProducerRecord<String, byte[]>, ListenableFuture<SendResult<String, byte[]>>> sender) {
+
+        active.increment();
+
+        try {
+
+            if (closed == true) {
+                throw new IllegalStateException("Kafka client is closed.");
+            }
+
+            return send(select(), record, sender);
+        }
+        finally {
+            active.decrement();
+        }
+
+    }
+
+    /**
+     * Send record on stripe.
+     * @param stripe The index of the stripe
+     * @param record The record
+     * @param sender The function that hands the record to the producer of the stripe
+     * @return The future outcome of the record
+     */
+    private ListenableFuture<SendResult<String, byte[]>> send(
+        final int stripe,
+        final ProducerRecord<String, byte[]> record,
+        final BiFunction<KafkaTemplate<String, byte[]>, ProducerRecord<String, byte[]>, ListenableFuture<SendResult<String, byte[]>>> sender) {
+
+        ListenableFuture<SendResult<String, byte[]>> future;
+
+        if (inFlight == null) {
+            future = sender.apply(kafkaTemplates.get(stripe), record);
+
+            track(stripe);
+
+            return future;
+        }
+
+        inFlight.incrementAndGet(stripe);
+
+        try {
+
+            future = sender.apply(kafkaTemplates.get(stripe), record);
+        }
+        catch (RuntimeException exception) {
+
+            inFlight.decrementAndGet(stripe);
+
+            throw exception;
+        }
+
+        future.addCallback(result -> inFlight.decrementAndGet(stripe), exception -> inFlight.decrementAndGet(stripe));
+
+        track(stripe);
+
+        return future;
+    }
+
+    /**
+     * Keep the producer of stripe once the stripe has sent a record, so that its
+     * metrics may be read without creating a producer.
+     * @param stripe The index of the stripe
+     */
+    private void track(
+        final int stripe) {
+
+        if (producers.get(stripe) != null) {
+            return;
+        }
+
+        synchronized (producers) {
+
+            if (producers.get(stripe) == null) {
+                producers.set(stripe, producerFactories.get(stripe).createProducer());
+            }
+
+        }
+
+    }
+
+    /**
+     * Create listener that forgets the producer of stripe when the producer factory
+     * of the stripe closes it, so that the producer which replaces it is kept once
+     * the stripe sends a record with it.
+     * @param stripe The index of the stripe
+     * @return The listener
+     */
+    private ProducerFactory.Listener<String, byte[]> untrack(
+        final int stripe) {
+
+        return new ProducerFactory.Listener<String, byte[]>() {
+
+            public void producerRemoved(
+                final String id,
+                final Producer<String, byte[]> producer) {
+
+                producers.compareAndSet(stripe, producer, null);
+            }
+
+        };
+
+    }
+
+    /**
+     * Get metrics of the producer of stripe.
+     * @param stripe The index of the stripe
+     * @return The metrics of the producer, which are empty if the stripe has not sent
+     * a record yet, or if the stripes have been closed
+     */
+    Map<MetricName, ? extends Metric> metrics(
+        final int stripe) {
+
+        Producer<String, byte[]> producer;
+
+        producer = producers.get(stripe);
+
+        if ((closed == true) || (producer == null)) {
+            return Collections.emptyMap();
+        }
+
+        return producer.metrics();
+    }
+
+    /**
+     * Select stripe for record.
+     * @return The index of the stripe
+     */
+    int select() {
+
+        int count;
+        int start;
+        int stripe;
+        int load;
+        int minLoad;
+
+        count = kafkaTemplates.size();
+
+        if (count == 1) {
+            return 0;
+        }
+
+        start = threadIndex.get() % count;
+
+        if (inFlight == null) {
+            return start;
+        }
+
+        stripe = start;
+        minLoad = inFlight.get(start);
+
+        for (int i = 1; (i < count) && (minLoad > 0); i++) {
+
+            load = inFlight.get((start + i) % count);
+
+            if (load < minLoad) {
+                stripe = (start + i) % count;
+                minLoad = load;
+            }
+
+        }
+
+        return stripe;
+    }
+
+    /**
+     * Close stripes.  Records are refused from now on, and the records that are
+     * still being handed to the producers are waited for, up to the specified timeout.
+     * @param timeout The timeout in milliseconds
+     */
+    void close(
+        final long timeout) {
+
+        long deadline;
+
+        closed = true;
+
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        while ((active.sum() > 0) && (System.nanoTime() - deadline < 0)) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        for (int i = 0; i < producers.length(); i++) {
+            producerFactories.get(i).removeListener(listeners.get(i));
+
+            producers.set(i, null);
+        }
+
+    }
+
+    /**
+     * Flush the records of every stripe to the Kafka server.
+     */
+    void flush() {
+
+        for (KafkaTemplate<String, byte[]> template : kafkaTemplates) {
+            template.flush();
+        }
+
+    }
+
+}
@@ -0,0 +1,74 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.melior.client.exception.RemotingException;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Dispatches the messages of a reactive publisher to the Kafka server on behalf
+ * of a {@code KafkaClient}.  Messages are requested from the publisher only while
+ * fewer than the permitted number of messages are in flight, and a further message
+ * is requested every time the outcome of a message is known, so that the memory
+ * that is used is bounded regardless of the length of the stream.
+ * <p>
+ * The messages are handed to the producer in the order in which the publisher
+ * emits them, so that the order of the messages within a partition is retained,
+ * and the outcomes are emitted in the same order.  A message that cannot be sent
+ * does not terminate the stream; its outcome holds the {@code RemotingException}.
+ * <p>
+ * Handing a message to the producer may block, while the producer waits for metadata
+ * or for buffer space, or while the in-flight limit holds the message back.  The
+ * messages are therefore handed over on a worker of the bounded elastic scheduler
+ * rather than on the thread of the publisher, which may be a non-blocking Reactor
+ * thread.  A single worker hands over the messages of a stream, so that their order
+ * is retained, and only one message is requested ahead of it, so that a blocked
+ * hand-over also holds back the demand on the publisher.
+ * <p>
+ * The Reactor classes are only referenced from here, so that the Reactor library
+ * is only required by applications that send messages from a reactive publisher.
+ * @author Melior
+ * @since 2.3
+ */
+final class PublisherDispatcher {
+
+    /**
+     * Constructor.
+     */
+    private PublisherDispatcher() {
+
+        super();
+    }
+
+    /**
+     * Dispatch messages of publisher.  Nothing is dispatched until the returned
+     * stream is subscribed to.
+     * @param <Rq> The request type
+     * @param messages The publisher of the message objects
+     * @param concurrency The maximum number of messages in flight
+     * @param sender The function that dispatches a message, and returns the stage that completes with the
+     * record metadata, or completes exceptionally with a {@code RemotingException}
+     * @return The stream of outcomes
+     */
+    static <Rq> Flux<SendOutcome<Rq>> dispatch(
+        final Publisher<Rq> messages,
+        final int concurrency,
+        final Function<Rq, CompletionStage<RecordMetadata>> sender) {
+
+        return Flux.from(messages).publishOn(Schedulers.boundedElastic(), 1).flatMapSequential(message -> Mono.create(sink -> sender.apply(message)
+            .whenComplete((metadata, exception) -> sink.success(new SendOutcome<Rq>(message, metadata, (RemotingException) exception)))),
+            concurrency, 1);
+    }
+
+}
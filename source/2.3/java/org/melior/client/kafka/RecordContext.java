@@ -0,0 +1,156 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+
+/**
+ * Provides a message handler with access to the consumed records that it is
+ * processing, on the thread that runs the handler.  A {@code MessageHandler} has
+ * access to a single record, while a {@code BatchHandler} has access to the records
+ * of the batch, in the same order as the messages that are passed to it.
+ * <p>
+ * The request identifier that a {@code KafkaClient} writes to the headers of every
+ * record is available as is, without being copied or decoded, which allows the
+ * transaction context of the producer to be restored without extra allocation.
+ * @author Melior
+ * @since 2.3
+ */
+public final class RecordContext {
+
+    private static final ThreadLocal<RecordContext> context = ThreadLocal.withInitial(RecordContext::new);
+
+    private ConsumerRecord<String, byte[]> record;
+
+    private List<ConsumerRecord<String, byte[]>> records;
+
+    /**
+     * Constructor.
+     */
+    private RecordContext() {
+
+        super();
+
+        this.records = Collections.emptyList();
+    }
+
+    /**
+     * Get record context of current thread.
+     * @return The record context
+     */
+    public static RecordContext get() {
+        return context.get();
+    }
+
+    /**
+     * Set record that is being processed on current thread.
+     * @param record The record
+     */
+    static void set(
+        final ConsumerRecord<String, byte[]> record) {
+        context.get().record = record;
+    }
+
+    /**
+     * Set records of batch that is being processed on current thread.
+     * @param records The records
+     */
+    static void set(
+        final List<ConsumerRecord<String, byte[]>> records) {
+        context.get().records = records;
+    }
+
+    /**
+     * Clear records that are being processed on current thread.
+     */
+    static void clear() {
+
+        RecordContext recordContext;
+
+        recordContext = context.get();
+        recordContext.record = null;
+        recordContext.records = Collections.emptyList();
+    }
+
+    /**
+     * Get number of records of batch that is being processed.
+     * @return The number of records
+     */
+    public int size() {
+        return records.size();
+    }
+
+    /**
+     * Get record that is being processed.
+     * @return The record, or {@code null} if no single record is being processed
+     */
+    public ConsumerRecord<String, byte[]> getRecord() {
+        return record;
+    }
+
+    /**
+     * Get record of batch that is being processed.
+     * @param index The index of the message in the batch
+     * @return The record
+     */
+    public ConsumerRecord<String, byte[]> getRecord(
+        final int index) {
+        return records.get(index);
+    }
+
+    /**
+     * Get raw request identifier of record that is being processed.
+     * @return The UTF-8 encoded request identifier, or {@code null} if there is none
+     */
+    public byte[] getRequestId() {
+        return (record == null) ? null : getRequestId(record);
+    }
+
+    /**
+     * Get raw request identifier of record of batch that is being processed.
+     * @param index The index of the message in the batch
+     * @return The UTF-8 encoded request identifier, or {@code null} if there is none
+     */
+    public byte[] getRequestId(
+        final int index) {
+        return getRequestId(records.get(index));
+    }
+
+    /**
+     * Get request identifier of record that is being processed, as a string.
+     * @return The request identifier, or {@code null} if there is none
+     */
+    public String getRequestIdAsString() {
+
+        byte[] requestId;
+
+        requestId = getRequestId();
+
+        return (requestId == null) ? null : new String(requestId, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get raw request identifier of record.
+     * @param record The record
+     * @return The UTF-8 encoded request identifier, or {@code null} if there is none
+     */
+    private static byte[] getRequestId(
+        final ConsumerRecord<String, byte[]> record) {
+
+        Header header;
+
+        header = record.headers().lastHeader(ProducerRecordFactory.REQUEST_ID);
+
+        return (header == null) ? null : header.value();
+    }
+
+}
@@ -0,0 +1,36 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * Handles records that a {@code KafkaConsumerClient} could not process, once
+ * the processing of a record has been retried as often as configured.  A handler
+ * may, for example, write the record to a dead letter topic.
+ * @author Melior
+ * @since 2.3
+ */
+@FunctionalInterface
+public interface RecordErrorHandler {
+
+    /**
+     * Handle record that could not be processed.  When the handler returns, the
+     * record is skipped and its offset may be committed.  When the handler fails,
+     * the offset of the record is not committed, and the consumer stops fetching
+     * records from its partition until the partition is assigned again or the
+     * client is restarted, after which the record is consumed again.
+     * @param record The record
+     * @param exception The exception that the processing of the record failed with
+     * @throws Exception if the record must not be skipped
+     */
+    public void handle(
+        final ConsumerRecord<String, byte[]> record,
+        final Exception exception) throws Exception;
+
+}
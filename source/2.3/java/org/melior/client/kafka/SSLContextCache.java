@@ -0,0 +1,153 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.security.KeyStore;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.net.ssl.SSLContext;
+
+/**
+ * Keeps track of the {@code SSLContext} objects that are in use by the SSL engine
+ * factories of Kafka clients, to allow every producer and consumer whose key store,
+ * trust store and session settings are identical to share a single {@code SSLContext},
+ * and with it the key stores that have been loaded and the SSL session cache.
+ * <p>
+ * The contexts are keyed by a fingerprint of the content of the stores and of the
+ * settings, and are reference counted.  A context is discarded when the last SSL
+ * engine factory that uses it is closed.
+ * @author Melior
+ * @since 2.3
+ */
+final class SSLContextCache {
+
+    private static Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * Constructor.
+     */
+    private SSLContextCache() {
+
+        super();
+    }
+
+    /**
+     * Acquire SSL context for fingerprint.  If an SSL context with the same fingerprint
+     * is already in use then that context is shared, otherwise a new context is built.
+     * @param fingerprint The fingerprint of the stores and of the settings
+     * @param builder The function that builds the SSL context
+     * @return The SSL context
+     */
+    static synchronized Entry acquire(
+        final String fingerprint,
+        final Supplier<Entry> builder) {
+
+        Entry entry;
+
+        entry = entries.get(fingerprint);
+
+        if (entry == null) {
+            entry = builder.get();
+            entry.fingerprint = fingerprint;
+
+            entries.put(fingerprint, entry);
+        }
+
+        entry.references++;
+
+        return entry;
+    }
+
+    /**
+     * Release SSL context.  If no other SSL engine factory is using the SSL context
+     * then the SSL context is discarded.
+     * @param entry The SSL context
+     */
+    static synchronized void release(
+        final Entry entry) {
+
+        if ((entry == null) || (--entry.references > 0)) {
+            return;
+        }
+
+        entries.remove(entry.fingerprint, entry);
+    }
+
+    /**
+     * A shared SSL context, along with the stores from which it was built.
+     */
+    static final class Entry {
+
+        private String fingerprint;
+
+        private KeyStore keyStore;
+
+        private KeyStore trustStore;
+
+        private SSLContext sslContext;
+
+        private int references;
+
+        /**
+         * Constructor.
+         * @param keyStore The key store, or {@code null} if there is none
+         * @param trustStore The trust store, or {@code null} if there is none
+         * @param sslContext The SSL context
+         */
+        Entry(
+            final KeyStore keyStore,
+            final KeyStore trustStore,
+            final SSLContext sslContext) {
+
+            super();
+
+            this.keyStore = keyStore;
+
+            this.trustStore = trustStore;
+
+            this.sslContext = sslContext;
+
+            this.references = 0;
+        }
+
+        /**
+         * Get fingerprint of the stores and of the settings.
+         * @return The fingerprint
+         */
+        String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Get key store.
+         * @return The key store
+         */
+        KeyStore getKeyStore() {
+            return keyStore;
+        }
+
+        /**
+         * Get trust store.
+         * @return The trust store
+         */
+        KeyStore getTrustStore() {
+            return trustStore;
+        }
+
+        /**
+         * Get SSL context.
+         * @return The SSL context
+         */
+        SSLContext getSslContext() {
+            return sslContext;
+        }
+
+    }
+
+}
@@ -7,6 +7,7 @@
         Service Harness
 */
 package org.melior.client.kafka;
+import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.config.SslClientAuth;
 import org.apache.kafka.common.config.SslConfigs;
 import org.apache.kafka.common.config.internals.BrokerSecurityConfigs;
@@ -16,10 +17,18 @@ import org.apache.kafka.common.utils.SecurityUtils;
 import org.melior.client.core.ClientConfig;
 import org.melior.client.ssl.ClientKeyStore;
 import org.melior.client.ssl.ClientSSLContext;
+import org.melior.logging.core.Logger;
+import org.melior.logging.core.LoggerFactory;
 import org.melior.util.object.ObjectUtil;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.FileCopyUtils;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.security.MessageDigest;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,12 +41,34 @@ import javax.net.ssl.SSLParameters;
  * connections to Kafka servers.  The {@code SSLContext} from which the {@code SSLEngine}
  * is created can either be fully trusting or will require a concrete key store and/or
  * a concrete trust store that is referenced in the remoting client configuration.
+ * <p>
+ * The {@code SSLContext} is shared by every producer and consumer whose key store,
+ * trust store and session settings are identical, so that the stores are only loaded
+ * once and so that reconnects to the Kafka servers may resume the SSL sessions that
+ * were established earlier instead of performing full handshakes.  The settings are
+ * compared by a fingerprint of the content of the stores and of the protocols and
+ * cipher suites, so that an unrelated change to the configuration does not cause the
+ * {@code SSLContext} to be rebuilt.
+ * <p>
+ * Stores that reside in the file system are watched for changes.  When the content
+ * of a store changes, the {@code SSLContext} is rebuilt in the background and then
+ * replaced in a single step, so that new connections use the new certificates while
+ * established connections carry on undisturbed.  If the new stores cannot be loaded,
+ * the last good {@code SSLContext} remains in use and the failure is reported.
  * @author Melior
  * @since 2.3
  */
 public final class SSLEngineFactory implements SslEngineFactory {
 
-    private Map<String, ?> configs;
+    public static final String SESSION_CACHE_SIZE_CONFIG = "melior.ssl.session.cache.size";
+
+    public static final String SESSION_TIMEOUT_CONFIG = "melior.ssl.session.timeout";
+
+    public static final String STATISTICS_CONFIG = "melior.ssl.statistics";
+
+    private static final ResourceLoader RESOURCE_LOADER = new DefaultResourceLoader();
+
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private String protocol;
 
@@ -51,7 +82,21 @@ public final class SSLEngineFactory implements SslEngineFactory {
 
     private KeyStore trustStore;
 
-    private SSLContext sslContext;
+    private volatile SSLContext sslContext;
+
+    private SSLContextCache.Entry entry;
+
+    private SSLStatistics statistics;
+
+    private Map<String, ?> configs;
+
+    private ClientConfig clientConfig;
+
+    private int sessionCacheSize;
+
+    private int sessionTimeout;
+
+    private Runnable watcher = this::reload;
 
     /**
      * Create new SSLEngine to be used by client.
@@ -70,6 +115,8 @@ public final class SSLEngineFactory implements SslEngineFactory {
 
         sslEngine = sslContext.createSSLEngine(peerHost, peerPort);
 
+        if (statistics != null) sslEngine = new HandshakeTrackingEngine(sslEngine, statistics);
+
         if (enabledCipherSuites != null) sslEngine.setEnabledCipherSuites(enabledCipherSuites);
 
         if (enabledProtocols != null) sslEngine.setEnabledProtocols(enabledProtocols);
@@ -118,13 +165,27 @@ public final class SSLEngineFactory implements SslEngineFactory {
     }
 
     /**
-     * Determine if SSLEngine needs to be rebuilt.
+     * Determine if SSLEngine needs to be rebuilt.  The SSLEngine only needs to be
+     * rebuilt when the content of the stores or the settings, including the enabled
+     * protocols and cipher suites, have changed.
      * @param newConfigs The new configuration to use
      * @return true if the SSLEngine needs to be rebuilt, false otherwise
      */
     public boolean shouldBeRebuilt(
         final Map<String, Object> newConfigs) {
-        return newConfigs.equals(configs) == false;
+
+        if (entry == null) {
+            return true;
+        }
+
+        try {
+
+            return fingerprint(newConfigs, toClientConfig(newConfigs)).equals(entry.getFingerprint()) == false;
+        }
+        catch (KafkaException exception) {
+            return true;
+        }
+
     }
 
     /**
@@ -161,9 +222,6 @@ public final class SSLEngineFactory implements SslEngineFactory {
 
         List<String> enabledCipherSuiteList;
         List<String> enabledProtocolList;
-        ClientConfig clientConfig;
-
-        this.configs = configs;
 
         SecurityUtils.addConfiguredSecurityProviders(configs);
 
@@ -179,28 +237,271 @@ public final class SSLEngineFactory implements SslEngineFactory {
 
         sslClientAuth = ObjectUtil.coalesce(SslClientAuth.forConfig((String) configs.get(BrokerSecurityConfigs.SSL_CLIENT_AUTH_CONFIG)), SslClientAuth.NONE);
 
+        statistics = (SSLStatistics) configs.get(STATISTICS_CONFIG);
+
+        sessionCacheSize = getInt(configs.get(SESSION_CACHE_SIZE_CONFIG), -1);
+
+        sessionTimeout = getInt(configs.get(SESSION_TIMEOUT_CONFIG), -1);
+
+        clientConfig = toClientConfig(configs);
+
+        this.configs = configs;
+
+        StoreWatcher.unregister(watcher);
+
+        synchronized (this) {
+
+            SSLContextCache.release(entry);
+
+            entry = SSLContextCache.acquire(fingerprint(configs, clientConfig), () -> build(clientConfig, sessionCacheSize, sessionTimeout));
+
+            keyStore = entry.getKeyStore();
+
+            trustStore = entry.getTrustStore();
+
+            sslContext = entry.getSslContext();
+        }
+
+        watch(clientConfig.getKeyStore());
+
+        watch(clientConfig.getTrustStore());
+    }
+
+    /**
+     * Watch store for changes, if the store resides in the file system.
+     * @param resource The store
+     */
+    private void watch(
+        final Resource resource) {
+
+        String methodName = "watch";
+
+        if ((resource == null) || (resource.isFile() == false)) {
+            return;
+        }
+
+        try {
+
+            StoreWatcher.register(resource.getFile().toPath(), watcher);
+        }
+        catch (IOException exception) {
+            logger.warn(methodName, "Failed to watch store ", resource.getDescription(), " for changes: ", exception.getMessage());
+        }
+
+    }
+
+    /**
+     * Reload the stores if their content has changed.  The SSL context is rebuilt from
+     * the new stores and replaces the current SSL context once it has been built.  If the
+     * stores cannot be loaded then the current SSL context is retained.
+     */
+    private synchronized void reload() {
+
+        String methodName = "reload";
+        String fingerprint;
+        SSLContextCache.Entry previous;
+
+        if (entry == null) {
+            return;
+        }
+
+        try {
+
+            fingerprint = fingerprint(configs, clientConfig);
+
+            if (fingerprint.equals(entry.getFingerprint()) == true) {
+                return;
+            }
+
+            previous = entry;
+
+            entry = SSLContextCache.acquire(fingerprint, () -> build(clientConfig, sessionCacheSize, sessionTimeout));
+        }
+        catch (RuntimeException exception) {
+
+            if (statistics != null) statistics.reloadFailed();
+
+            logger.error(methodName, "Failed to reload key store or trust store.  The current SSL context is retained: ", exception.getMessage());
+
+            return;
+        }
+
+        keyStore = entry.getKeyStore();
+
+        trustStore = entry.getTrustStore();
+
+        sslContext = entry.getSslContext();
+
+        SSLContextCache.release(previous);
+
+        if (statistics != null) statistics.reloaded();
+
+        logger.info(methodName, "Key store or trust store changed.  SSL context reloaded.");
+    }
+
+    /**
+     * Close SSL engine factory.  The stores are no longer watched, and the SSL context
+     * is released and is discarded if no other SSL engine factory shares it.
+     */
+    public void close() {
+
+        StoreWatcher.unregister(watcher);
+
+        synchronized (this) {
+
+            SSLContextCache.release(entry);
+
+            entry = null;
+
+            sslContext = null;
+        }
+
+    }
+
+    /**
+     * Build SSL context, and apply the session settings to it.
+     * @param clientConfig The client configuration that references the stores
+     * @param sessionCacheSize The session cache size, or -1 to retain the default
+     * @param sessionTimeout The session timeout in milliseconds, or -1 to retain the default
+     * @return The SSL context, along with the stores from which it was built
+     */
+    private SSLContextCache.Entry build(
+        final ClientConfig clientConfig,
+        final int sessionCacheSize,
+        final int sessionTimeout) {
+
+        KeyStore keyStore;
+        KeyStore trustStore;
+        SSLContext sslContext;
+
+        keyStore = (clientConfig.getKeyStore() == null) ? null : ClientKeyStore.ofKey(clientConfig);
+
+        trustStore = (clientConfig.getTrustStore() == null) ? null : ClientKeyStore.ofTrust(clientConfig);
+
+        sslContext = ((keyStore != null) || (trustStore != null))
+            ? ClientSSLContext.ofKeyStore(protocol, clientConfig, keyStore, trustStore) : ClientSSLContext.ofLenient(protocol);
+
+        if (sessionCacheSize >= 0) {
+            sslContext.getClientSessionContext().setSessionCacheSize(sessionCacheSize);
+        }
+
+        if (sessionTimeout >= 0) {
+            sslContext.getClientSessionContext().setSessionTimeout(sessionTimeout / 1000);
+        }
+
+        return new SSLContextCache.Entry(keyStore, trustStore, sslContext);
+    }
+
+    /**
+     * Convert configuration parameters to a client configuration that references the stores.
+     * @param configs The configuration parameters
+     * @return The client configuration
+     */
+    private static ClientConfig toClientConfig(
+        final Map<String, ?> configs) {
+
+        ClientConfig clientConfig;
+
         clientConfig = new KafkaClientConfig();
         clientConfig.setKeyStore(getResource((String) configs.get(SslConfigs.SSL_KEYSTORE_LOCATION_CONFIG)));
         clientConfig.setKeyStoreType((String) configs.get(SslConfigs.SSL_KEYSTORE_TYPE_CONFIG));
         clientConfig.setKeyStorePassword(getPassword((Password) configs.get(SslConfigs.SSL_KEYSTORE_PASSWORD_CONFIG)));
         clientConfig.setKeyPassword(getPassword((Password) configs.get(SslConfigs.SSL_KEY_PASSWORD_CONFIG)));
-         clientConfig.setTrustStore(getResource((String) configs.get(SslConfigs.SSL_TRUSTSTORE_LOCATION_CONFIG)));
+        clientConfig.setTrustStore(getResource((String) configs.get(SslConfigs.SSL_TRUSTSTORE_LOCATION_CONFIG)));
         clientConfig.setTrustStoreType((String) configs.get(SslConfigs.SSL_TRUSTSTORE_TYPE_CONFIG));
         clientConfig.setTrustStorePassword(getPassword((Password) configs.get(SslConfigs.SSL_TRUSTSTORE_PASSWORD_CONFIG)));
 
-        keyStore = (clientConfig.getKeyStore() == null) ? null : ClientKeyStore.ofKey(clientConfig);
+        return clientConfig;
+    }
 
-        trustStore = (clientConfig.getTrustStore() == null) ? null : ClientKeyStore.ofTrust(clientConfig);
+    /**
+     * Compute fingerprint of the stores and of the settings.  The fingerprint is a
+     * digest of the protocol, the enabled protocols and cipher suites, the content, type
+     * and passwords of the stores and the session settings, so that it does not reveal
+     * the passwords.
+     * @param configs The configuration parameters
+     * @param clientConfig The client configuration that references the stores
+     * @return The fingerprint
+     * @throws KafkaException if unable to read the stores
+     */
+    private static String fingerprint(
+        final Map<String, ?> configs,
+        final ClientConfig clientConfig) throws KafkaException {
+
+        MessageDigest digest;
+        StringBuilder fingerprint;
+
+        try {
+
+            digest = MessageDigest.getInstance("SHA-256");
+
+            update(digest, (String) configs.get(SslConfigs.SSL_PROTOCOL_CONFIG));
+            update(digest, String.valueOf(configs.get(SslConfigs.SSL_ENABLED_PROTOCOLS_CONFIG)));
+            update(digest, String.valueOf(configs.get(SslConfigs.SSL_CIPHER_SUITES_CONFIG)));
+            update(digest, clientConfig.getKeyStoreType());
+            update(digest, clientConfig.getKeyStorePassword());
+            update(digest, clientConfig.getKeyPassword());
+            update(digest, clientConfig.getKeyStore());
+            update(digest, clientConfig.getTrustStoreType());
+            update(digest, clientConfig.getTrustStorePassword());
+            update(digest, clientConfig.getTrustStore());
+            update(digest, String.valueOf(configs.get(SESSION_CACHE_SIZE_CONFIG)));
+            update(digest, String.valueOf(configs.get(SESSION_TIMEOUT_CONFIG)));
+        }
+        catch (IOException | GeneralSecurityException exception) {
+            throw new KafkaException("Failed to read key store or trust store: " + exception.getMessage(), exception);
+        }
 
-        sslContext = ((keyStore != null) || (trustStore != null))
-            ? ClientSSLContext.ofKeyStore(protocol, clientConfig, keyStore, trustStore) : ClientSSLContext.ofLenient(protocol);
+        fingerprint = new StringBuilder();
+
+        for (byte value : digest.digest()) {
+            fingerprint.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+        }
+
+        return fingerprint.toString();
     }
 
     /**
-     * Close SSL engine factory.
+     * Add text to digest.  A {@code null} text is distinguished from an empty text.
+     * @param digest The digest
+     * @param text The text
      */
-    public void close() {
-        sslContext = null;
+    private static void update(
+        final MessageDigest digest,
+        final String text) {
+
+        digest.update((text == null) ? new byte[] {0} : (text + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Add content of resource to digest.
+     * @param digest The digest
+     * @param resource The resource
+     * @throws IOException if unable to read the resource
+     */
+    private static void update(
+        final MessageDigest digest,
+        final Resource resource) throws IOException {
+
+        if (resource == null) {
+            digest.update((byte) 0);
+        }
+        else {
+            digest.update(FileCopyUtils.copyToByteArray(resource.getInputStream()));
+        }
+
+    }
+
+    /**
+     * Convert configuration value to an integer.
+     * @param value The configuration value
+     * @param defaultValue The value to use if the configuration value is {@code null}
+     * @return The integer
+     */
+    private static int getInt(
+        final Object value,
+        final int defaultValue) {
+        return (value == null) ? defaultValue : Integer.parseInt(value.toString());
     }
 
     /**
@@ -209,9 +510,9 @@ public final class SSLEngineFactory implements SslEngineFactory {
      * @param location The location
      * @return The resource
      */
-    private Resource getResource(
+    private static Resource getResource(
         final String location) {
-        return (location == null) ? null : new DefaultResourceLoader().getResource(location);
+        return (location == null) ? null : RESOURCE_LOADER.getResource(location);
     }
 
     /**
@@ -220,7 +521,7 @@ public final class SSLEngineFactory implements SslEngineFactory {
      * @param password The password wrapper
      * @return The password
      */
-    private String getPassword(
+    private static String getPassword(
         final Password password) {
         return (password == null) ? null : password.value();
     }
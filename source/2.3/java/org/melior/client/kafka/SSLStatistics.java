@@ -0,0 +1,126 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the SSL handshakes that the producers and consumers of a Kafka client
+ * perform with the Kafka servers, and the time that the handshakes take.  A
+ * handshake that resumes an earlier SSL session is counted as resumed as well.
+ * The reloads of the key store and the trust store are counted too, along with
+ * the reloads that failed.
+ * @author Melior
+ * @since 2.3
+ */
+final class SSLStatistics {
+
+    private LongAdder handshakes;
+
+    private LongAdder resumed;
+
+    private LongAdder time;
+
+    private LongAdder reloads;
+
+    private LongAdder reloadFailures;
+
+    /**
+     * Constructor.
+     */
+    SSLStatistics() {
+
+        super();
+
+        this.handshakes = new LongAdder();
+
+        this.resumed = new LongAdder();
+
+        this.time = new LongAdder();
+
+        this.reloads = new LongAdder();
+
+        this.reloadFailures = new LongAdder();
+    }
+
+    /**
+     * Record completed handshake.
+     * @param nanos The handshake time in nanoseconds
+     * @param resumption true if the handshake resumed an earlier session, false otherwise
+     */
+    void record(
+        final long nanos,
+        final boolean resumption) {
+
+        handshakes.increment();
+
+        time.add(nanos);
+
+        if (resumption == true) {
+            resumed.increment();
+        }
+
+    }
+
+    /**
+     * Record that the SSL context has been reloaded.
+     */
+    void reloaded() {
+
+        reloads.increment();
+    }
+
+    /**
+     * Record that the SSL context could not be reloaded.
+     */
+    void reloadFailed() {
+
+        reloadFailures.increment();
+    }
+
+    /**
+     * Get number of completed handshakes.
+     * @return The number of handshakes
+     */
+    long getHandshakes() {
+        return handshakes.sum();
+    }
+
+    /**
+     * Get number of completed handshakes that resumed an earlier session.
+     * @return The number of resumed handshakes
+     */
+    long getResumedHandshakes() {
+        return resumed.sum();
+    }
+
+    /**
+     * Get total time of the completed handshakes.
+     * @return The total handshake time in nanoseconds
+     */
+    double getTotalTime() {
+        return time.sum();
+    }
+
+    /**
+     * Get number of reloads of the SSL context.
+     * @return The number of reloads
+     */
+    long getReloads() {
+        return reloads.sum();
+    }
+
+    /**
+     * Get number of reloads of the SSL context that failed.
+     * @return The number of failed reloads
+     */
+    long getReloadFailures() {
+        return reloadFailures.sum();
+    }
+
+}
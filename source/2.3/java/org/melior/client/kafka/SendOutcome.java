@@ -0,0 +1,84 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.melior.client.exception.RemotingException;
+
+/**
+ * Captures the outcome of a single message that was taken from a reactive
+ * publisher and dispatched by a {@code KafkaClient}.  The message itself is
+ * retained, so that a failed message may be retried or diverted by the caller.
+ * @author Melior
+ * @since 2.3
+ * @param <Rq> The request type
+ */
+public class SendOutcome<Rq> {
+
+    private Rq message;
+
+    private RecordMetadata metadata;
+
+    private RemotingException exception;
+
+    /**
+     * Constructor.
+     * @param message The message object
+     * @param metadata The record metadata, or {@code null} if the message was not acknowledged
+     * @param exception The exception, or {@code null} if the message was sent successfully
+     */
+    SendOutcome(
+        final Rq message,
+        final RecordMetadata metadata,
+        final RemotingException exception) {
+
+        super();
+
+        this.message = message;
+
+        this.metadata = metadata;
+
+        this.exception = exception;
+    }
+
+    /**
+     * Get message.
+     * @return The message object
+     */
+    public Rq getMessage() {
+        return message;
+    }
+
+    /**
+     * Determine whether the message was sent successfully.
+     * @return true if the message was sent, false otherwise
+     */
+    public boolean isSuccessful() {
+        return exception == null;
+    }
+
+    /**
+     * Get record metadata of message.  If the message could not be sent, or
+     * if the message was written to the spool, then the returned metadata is
+     * {@code null}.
+     * @return The record metadata
+     */
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Get exception of message.  If the message was sent successfully
+     * then the returned exception is {@code null}.
+     * @return The exception
+     */
+    public RemotingException getException() {
+        return exception;
+    }
+
+}
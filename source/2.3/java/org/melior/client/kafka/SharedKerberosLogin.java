@@ -0,0 +1,129 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.util.Map;
+import javax.security.auth.Subject;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+import org.apache.kafka.common.config.SaslConfigs;
+import org.apache.kafka.common.security.auth.AuthenticateCallbackHandler;
+import org.apache.kafka.common.security.auth.Login;
+
+/**
+ * Performs the Kerberos login of Kafka clients that authenticate with Kerberos.  The
+ * login is taken from a cache that is shared by every producer and consumer in the
+ * process, so that clients with the same JAAS configuration log in with the KDC only
+ * once, and so that connections to the Kafka servers never have to wait on the KDC.
+ * The ticket-granting ticket of the login is renewed in the background before it
+ * expires.
+ * @author Melior
+ * @since 2.3
+ */
+public final class SharedKerberosLogin implements Login {
+
+    private Map<String, ?> configs;
+
+    private String contextName;
+
+    private Configuration configuration;
+
+    private AuthenticateCallbackHandler callbackHandler;
+
+    private KerberosLoginCache.Entry entry;
+
+    /**
+     * Constructor.
+     */
+    public SharedKerberosLogin() {
+
+        super();
+    }
+
+    /**
+     * Configure login.
+     * @param configs The configuration parameters
+     * @param contextName The name of the JAAS login context
+     * @param configuration The JAAS configuration
+     * @param callbackHandler The callback handler of the login modules
+     */
+    public void configure(
+        final Map<String, ?> configs,
+        final String contextName,
+        final Configuration configuration,
+        final AuthenticateCallbackHandler callbackHandler) {
+
+        this.configs = configs;
+
+        this.contextName = contextName;
+
+        this.configuration = configuration;
+
+        this.callbackHandler = callbackHandler;
+    }
+
+    /**
+     * Log in.  If a login with the same JAAS configuration is already in place
+     * then that login is shared.
+     * @return The login context
+     * @throws LoginException if unable to log in
+     */
+    public LoginContext login() throws LoginException {
+
+        KerberosLoginCache.release(entry);
+
+        entry = KerberosLoginCache.acquire(contextName, configuration, callbackHandler);
+
+        return entry.getLoginContext();
+    }
+
+    /**
+     * Get subject that holds the Kerberos credentials.
+     * @return The subject
+     */
+    public Subject subject() {
+        return (entry == null) ? null : entry.getSubject();
+    }
+
+    /**
+     * Get service name of the Kafka servers.  The service name is taken from the
+     * JAAS configuration, or from the configuration parameters if the JAAS
+     * configuration does not specify it.
+     * @return The service name
+     */
+    public String serviceName() {
+
+        Object serviceName;
+
+        for (AppConfigurationEntry configurationEntry : configuration.getAppConfigurationEntry(contextName)) {
+
+            serviceName = configurationEntry.getOptions().get("serviceName");
+
+            if (serviceName != null) {
+                return serviceName.toString();
+            }
+
+        }
+
+        return (String) configs.get(SaslConfigs.SASL_KERBEROS_SERVICE_NAME);
+    }
+
+    /**
+     * Close login.  The login is released, and is logged out once no client
+     * has used it for a while.
+     */
+    public void close() {
+
+        KerberosLoginCache.release(entry);
+
+        entry = null;
+    }
+
+}
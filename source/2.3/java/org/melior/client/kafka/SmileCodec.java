@@ -0,0 +1,40 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+/**
+ * A {@code MessageCodec} that maps messages to Smile, the binary form of JSON.
+ * Requires {@code jackson-dataformat-smile}.
+ * @author Melior
+ * @since 2.3
+ */
+public class SmileCodec extends JacksonCodec {
+
+    public static final String CONTENT_TYPE = "application/x-jackson-smile";
+
+    /**
+     * Constructor.
+     */
+    public SmileCodec() {
+
+        this(false);
+    }
+
+    /**
+     * Constructor.
+     * @param afterburner The bytecode-generated accessors indicator
+     */
+    public SmileCodec(
+        final boolean afterburner) {
+
+        super((afterburner == true) ? accelerate(configure(new SmileMapper())) : configure(new SmileMapper()), CONTENT_TYPE);
+    }
+
+}
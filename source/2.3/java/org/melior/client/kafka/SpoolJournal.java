@@ -0,0 +1,552 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.melior.client.exception.RemotingException;
+import org.melior.logging.core.Logger;
+import org.melior.logging.core.LoggerFactory;
+import org.melior.service.exception.ExceptionType;
+
+/**
+ * An append-only journal of messages on local disk, which holds the messages that
+ * a {@code KafkaClient} could not hand to the Kafka server until they can be replayed.
+ * <p>
+ * The journal consists of memory-mapped segment files of a fixed size.  Every entry
+ * is written as its length, followed by the topic, the request identifier, the
+ * content type and the payload of the message.  The length is written last, so that an entry which was
+ * not written completely is ignored when the journal is recovered.  When an entry
+ * has been replayed, its length is negated, and when all entries of a segment have
+ * been replayed, the segment file is deleted.
+ * <p>
+ * When the total size of the segment files would exceed the limit, the overflow
+ * policy decides whether the entry is refused or the oldest segment is discarded.
+ * @author Melior
+ * @since 2.3
+ */
+final class SpoolJournal {
+
+    private static final String SUFFIX = ".spool";
+
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private File directory;
+
+    private int segmentSize;
+
+    private long limit;
+
+    private SpoolOverflowPolicy overflowPolicy;
+
+    private ArrayDeque<Segment> segments;
+
+    private long sequence;
+
+    private int count;
+
+    /**
+     * Constructor.  Any segment files that are found in the directory are
+     * recovered, and the entries in them that have not been replayed yet
+     * are made available for replay.
+     * @param directory The directory that holds the segment files
+     * @param segmentSize The size of a segment file in bytes
+     * @param limit The maximum total size of the segment files in bytes
+     * @param overflowPolicy The overflow policy
+     * @throws IOException if unable to recover the journal
+     */
+    SpoolJournal(
+        final File directory,
+        final int segmentSize,
+        final long limit,
+        final SpoolOverflowPolicy overflowPolicy) throws IOException {
+
+        super();
+
+        String methodName = "recover";
+        File[] files;
+        Segment segment;
+
+        this.directory = directory;
+
+        this.segmentSize = segmentSize;
+
+        this.limit = limit;
+
+        this.overflowPolicy = overflowPolicy;
+
+        this.segments = new ArrayDeque<Segment>();
+
+        if ((directory.isDirectory() == false) && (directory.mkdirs() == false)) {
+            throw new IOException("Unable to create spool directory " + directory + ".");
+        }
+
+        files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+
+        Arrays.sort(files);
+
+        for (File file : files) {
+            segment = new Segment(file, Long.parseLong(file.getName().substring(0, file.getName().length() - SUFFIX.length())));
+
+            sequence = segment.sequence + 1;
+
+            if (segment.isConsumed() == true) {
+                segment.delete();
+            }
+            else {
+                segments.add(segment);
+
+                count += segment.count;
+            }
+
+        }
+
+        if (count > 0) {
+            logger.info(methodName, "Recovered ", count, " messages from spool ", directory, ".");
+        }
+
+    }
+
+    /**
+     * Determine whether journal holds no entries that have not been replayed.
+     * @return true if the journal is empty, false otherwise
+     */
+    synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Get number of entries that have not been replayed.
+     * @return The number of entries
+     */
+    synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Get total size of segment files.
+     * @return The size in bytes
+     */
+    synchronized long getDiskUsage() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    /**
+     * Append entry to journal.
+     * @param topic The topic
+     * @param requestId The encoded request identifier, or {@code null} if there is none
+     * @param contentType The encoded content type, or {@code null} if there is none
+     * @param payload The message payload
+     * @throws RemotingException if the entry does not fit in the journal
+     */
+    synchronized void append(
+        final String topic,
+        final byte[] requestId,
+        final byte[] contentType,
+        final byte[] payload) throws RemotingException {
+
+        String methodName = "append";
+        byte[] topicBytes;
+        int length;
+        Segment segment;
+        int position;
+
+        topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+
+        length = 2 + topicBytes.length + 2 + ((requestId == null) ? 0 : requestId.length)
+            + 2 + ((contentType == null) ? 0 : contentType.length) + ((payload == null) ? 0 : payload.length);
+
+        if (4 + length + 4 > segmentSize) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Message is too large for spool.");
+        }
+
+        segment = segments.peekLast();
+
+        if ((segment == null) || (segment.writePosition + 4 + length + 4 > segmentSize)) {
+
+            if ((segment != null) && (segment.count == 0)) {
+                segments.removeLast();
+                segment.delete();
+            }
+
+            while ((long) (segments.size() + 1) * segmentSize > limit) {
+
+                if ((overflowPolicy == SpoolOverflowPolicy.FAIL) || (segments.isEmpty() == true)) {
+                    throw new RemotingException(ExceptionType.REMOTING_COMMUNICATION, "Spool is full.");
+                }
+
+                segment = segments.removeFirst();
+                segment.delete();
+
+                count -= segment.count;
+
+                logger.warn(methodName, "Spool is full.  Discarded ", segment.count, " messages.");
+            }
+
+            try {
+
+                segment = new Segment(new File(directory, String.format("%020d", sequence) + SUFFIX), sequence);
+            }
+            catch (IOException exception) {
+                throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Failed to create spool segment: " + exception.getMessage(), exception);
+            }
+
+            sequence++;
+
+            segments.add(segment);
+        }
+
+        position = segment.writePosition;
+
+        segment.buffer.position(position + 4);
+        segment.buffer.putShort((short) topicBytes.length);
+        segment.buffer.put(topicBytes);
+        segment.buffer.putShort((short) ((requestId == null) ? -1 : requestId.length));
+
+        if (requestId != null) {
+            segment.buffer.put(requestId);
+        }
+
+        segment.buffer.putShort((short) ((contentType == null) ? -1 : contentType.length));
+
+        if (contentType != null) {
+            segment.buffer.put(contentType);
+        }
+
+        if (payload != null) {
+            segment.buffer.put(payload);
+        }
+
+        segment.buffer.putInt(position, length);
+
+        segment.writePosition = position + 4 + length;
+
+        segment.count++;
+
+        count++;
+
+        notifyAll();
+    }
+
+    /**
+     * Wait until journal holds entries that have not been replayed.
+     * @param timeout The maximum amount of time to wait in milliseconds
+     * @return true if the journal holds entries, false otherwise
+     * @throws InterruptedException if the thread has been interrupted
+     */
+    synchronized boolean await(
+        final long timeout) throws InterruptedException {
+
+        long deadline;
+        long remaining;
+
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        while ((count == 0) && ((remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0)) {
+            wait(remaining);
+        }
+
+        return count > 0;
+    }
+
+    /**
+     * Read the oldest entries that have not been replayed, in the order in which they
+     * were appended.  The entries remain in the journal until they are committed.
+     * @param maximum The maximum number of entries to read
+     * @return The entries
+     */
+    synchronized List<Entry> read(
+        final int maximum) {
+
+        List<Entry> entries;
+        Iterator<Segment> iterator;
+        Segment segment;
+        int position;
+        int length;
+
+        entries = new ArrayList<Entry>();
+
+        iterator = segments.iterator();
+
+        while ((iterator.hasNext() == true) && (entries.size() < maximum)) {
+            segment = iterator.next();
+
+            position = segment.readPosition;
+
+            while ((position < segment.writePosition) && (entries.size() < maximum)) {
+                length = segment.buffer.getInt(position);
+
+                if (length > 0) {
+                    entries.add(new Entry(segment, position, length));
+                }
+
+                position += 4 + Math.abs(length);
+            }
+
+        }
+
+        return entries;
+    }
+
+    /**
+     * Commit entries that have been replayed.  Segments of which all entries have
+     * been replayed are deleted.  Entries of segments that have been discarded in
+     * the meantime are ignored.
+     * @param entries The entries
+     */
+    synchronized void commit(
+        final List<Entry> entries) {
+
+        Segment segment;
+
+        for (Entry entry : entries) {
+
+            if ((entry.segment.isDeleted() == true) || (entry.segment.buffer.getInt(entry.position) <= 0)) {
+                continue;
+            }
+
+            entry.segment.buffer.putInt(entry.position, -entry.length);
+
+            entry.segment.count--;
+
+            if (entry.position == entry.segment.readPosition) {
+                entry.segment.readPosition = entry.position + 4 + entry.length;
+            }
+
+            count--;
+        }
+
+        while ((segments.size() > 1) && (segments.peekFirst().count == 0)) {
+            segment = segments.removeFirst();
+            segment.delete();
+        }
+
+    }
+
+    /**
+     * Close journal.  The segments are flushed to disk.
+     */
+    synchronized void close() {
+
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+
+    }
+
+    /**
+     * An entry of the journal.
+     */
+    static final class Entry {
+
+        private Segment segment;
+
+        private int position;
+
+        private int length;
+
+        private String topic;
+
+        private byte[] requestId;
+
+        private byte[] contentType;
+
+        private byte[] payload;
+
+        /**
+         * Constructor.
+         * @param segment The segment that holds the entry
+         * @param position The position of the entry in the segment
+         * @param length The length of the entry
+         */
+        Entry(
+            final Segment segment,
+            final int position,
+            final int length) {
+
+            super();
+
+            byte[] topicBytes;
+            int size;
+
+            this.segment = segment;
+
+            this.position = position;
+
+            this.length = length;
+
+            segment.buffer.position(position + 4);
+
+            topicBytes = new byte[segment.buffer.getShort()];
+            segment.buffer.get(topicBytes);
+
+            this.topic = new String(topicBytes, StandardCharsets.UTF_8);
+
+            size = segment.buffer.getShort();
+
+            if (size >= 0) {
+                this.requestId = new byte[size];
+                segment.buffer.get(requestId);
+            }
+
+            size = segment.buffer.getShort();
+
+            if (size >= 0) {
+                this.contentType = new byte[size];
+                segment.buffer.get(contentType);
+            }
+
+            this.payload = new byte[position + 4 + length - segment.buffer.position()];
+            segment.buffer.get(payload);
+        }
+
+        /**
+         * Get topic.
+         * @return The topic
+         */
+        String getTopic() {
+            return topic;
+        }
+
+        /**
+         * Get encoded request identifier.
+         * @return The encoded request identifier, or {@code null} if there is none
+         */
+        byte[] getRequestId() {
+            return requestId;
+        }
+
+        /**
+         * Get encoded content type.
+         * @return The encoded content type, or {@code null} if there is none
+         */
+        byte[] getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Get message payload.
+         * @return The message payload
+         */
+        byte[] getPayload() {
+            return payload;
+        }
+
+    }
+
+    /**
+     * A memory-mapped segment file of the journal.
+     */
+    private final class Segment {
+
+        private File file;
+
+        private long sequence;
+
+        private MappedByteBuffer buffer;
+
+        private int writePosition;
+
+        private int readPosition;
+
+        private int count;
+
+        private boolean deleted;
+
+        /**
+         * Constructor.  If the segment file exists then its entries are recovered.
+         * @param file The segment file
+         * @param sequence The sequence number of the segment
+         * @throws IOException if unable to map the segment file
+         */
+        Segment(
+            final File file,
+            final long sequence) throws IOException {
+
+            super();
+
+            int position;
+            int length;
+
+            this.file = file;
+
+            this.sequence = sequence;
+
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, channel.size()));
+            }
+
+            position = 0;
+
+            this.readPosition = -1;
+
+            while (position + 4 <= buffer.capacity()) {
+                length = buffer.getInt(position);
+
+                if ((length == 0) || (position + 4 + Math.abs(length) > buffer.capacity())) {
+                    break;
+                }
+
+                if (length > 0) {
+                    count++;
+
+                    readPosition = (readPosition < 0) ? position : readPosition;
+                }
+
+                position += 4 + Math.abs(length);
+            }
+
+            this.writePosition = position;
+
+            this.readPosition = (readPosition < 0) ? position : readPosition;
+        }
+
+        /**
+         * Determine whether all entries of segment have been replayed.
+         * @return true if all entries have been replayed, false otherwise
+         */
+        boolean isConsumed() {
+            return count == 0;
+        }
+
+        /**
+         * Determine whether segment has been deleted.
+         * @return true if the segment has been deleted, false otherwise
+         */
+        boolean isDeleted() {
+            return deleted;
+        }
+
+        /**
+         * Delete segment file.
+         */
+        void delete() {
+
+            deleted = true;
+
+            if (file.delete() == false) {
+                file.deleteOnExit();
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,28 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+
+/**
+ * The policies that a {@code KafkaClient} may apply when its spool is full.
+ * @author Melior
+ * @since 2.3
+ */
+public enum SpoolOverflowPolicy {
+
+    /**
+     * Refuse the message that does not fit in the spool.
+     */
+    FAIL,
+
+    /**
+     * Discard the oldest segment of the spool to make room for the message.
+     */
+    DROP_OLDEST;
+
+}
@@ -0,0 +1,236 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.melior.logging.core.Logger;
+import org.melior.logging.core.LoggerFactory;
+
+/**
+ * Watches the directories that hold the key stores and trust stores of Kafka clients,
+ * and notifies the SSL engine factories that use them when anything in a directory
+ * changes.  A single background thread serves all SSL engine factories.
+ * <p>
+ * Any change in a directory is reported, rather than only changes to the store files
+ * themselves, so that stores which are replaced by swapping a symbolic link are noticed
+ * too.  The listeners determine from the content of the stores whether they have really
+ * changed.  Changes are reported once the directory has been quiet for a short while, so
+ * that a store which is written in several steps is only reloaded once it is complete.
+ * A directory that is deleted and created again is registered again, so that the
+ * stores in it are still watched.
+ * @author Melior
+ * @since 2.3
+ */
+final class StoreWatcher {
+
+    private static final long SETTLE_TIME = 500;
+
+    private static Logger logger = LoggerFactory.getLogger(StoreWatcher.class);
+
+    private static Map<Path, List<Runnable>> listeners = new HashMap<Path, List<Runnable>>();
+
+    private static Map<Path, WatchKey> keys = new HashMap<Path, WatchKey>();
+
+    private static WatchService watchService;
+
+    /**
+     * Constructor.
+     */
+    private StoreWatcher() {
+
+        super();
+    }
+
+    /**
+     * Register listener for changes to the directory of the specified file.  The
+     * background thread is started when the first listener is registered.
+     * @param file The file
+     * @param listener The listener
+     * @throws IOException if unable to watch the directory
+     */
+    static synchronized void register(
+        final Path file,
+        final Runnable listener) throws IOException {
+
+        Path directory;
+        Thread thread;
+
+        directory = file.toAbsolutePath().getParent();
+
+        if (watchService == null) {
+            watchService = FileSystems.getDefault().newWatchService();
+
+            thread = new Thread(StoreWatcher::watch, "kafka-ssl-store-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        if (keys.containsKey(directory) == false) {
+            keys.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+        }
+
+        listeners.computeIfAbsent(directory, key -> new ArrayList<Runnable>()).add(listener);
+    }
+
+    /**
+     * Remove listener from all directories.  A directory is no longer watched
+     * when no listeners remain for it.
+     * @param listener The listener
+     */
+    static synchronized void unregister(
+        final Runnable listener) {
+
+        List<Path> unused;
+        WatchKey key;
+
+        unused = new ArrayList<Path>();
+
+        for (Map.Entry<Path, List<Runnable>> entry : listeners.entrySet()) {
+
+            entry.getValue().removeIf(candidate -> candidate == listener);
+
+            if (entry.getValue().isEmpty() == true) {
+                unused.add(entry.getKey());
+            }
+
+        }
+
+        for (Path directory : unused) {
+            listeners.remove(directory);
+
+            key = keys.remove(directory);
+
+            if (key != null) {
+                key.cancel();
+            }
+
+        }
+
+    }
+
+    /**
+     * Register directory again once its watch key is no longer valid, which happens
+     * when the directory has been deleted.  If the directory cannot be registered,
+     * because it has not been created again yet, then it is no longer watched until
+     * a listener is registered for it again.
+     * @param directory The directory
+     * @param key The watch key that is no longer valid
+     */
+    private static synchronized void reregister(
+        final Path directory,
+        final WatchKey key) {
+
+        String methodName = "reregister";
+
+        if ((listeners.containsKey(directory) == false) || (keys.get(directory) != key)) {
+            return;
+        }
+
+        try {
+
+            keys.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+
+            logger.info(methodName, "Directory ", directory, " was replaced and is watched again.");
+        }
+        catch (IOException exception) {
+            keys.remove(directory);
+
+            logger.warn(methodName, "Directory ", directory, " is no longer watched for changes to stores: ", exception.getMessage());
+        }
+
+    }
+
+    /**
+     * Get listeners of directory.
+     * @param directory The directory
+     * @return A copy of the listeners of the directory
+     */
+    private static synchronized List<Runnable> getListeners(
+        final Path directory) {
+
+        List<Runnable> directoryListeners;
+
+        directoryListeners = listeners.get(directory);
+
+        return (directoryListeners == null) ? new ArrayList<Runnable>() : new ArrayList<Runnable>(directoryListeners);
+    }
+
+    /**
+     * Watch the directories, and notify the listeners of the directories that changed.
+     */
+    private static void watch() {
+
+        String methodName = "watch";
+        Set<Path> changed;
+        WatchKey key;
+        boolean valid;
+
+        changed = new HashSet<Path>();
+
+        while (true) {
+
+            try {
+
+                key = watchService.take();
+
+                while (key != null) {
+                    key.pollEvents();
+                    valid = key.reset();
+
+                    changed.add((Path) key.watchable());
+
+                    Thread.sleep(SETTLE_TIME);
+
+                    if (valid == false) {
+                        reregister((Path) key.watchable(), key);
+                    }
+
+                    key = watchService.poll();
+                }
+
+                for (Path directory : changed) {
+
+                    for (Runnable listener : getListeners(directory)) {
+
+                        try {
+
+                            listener.run();
+                        }
+                        catch (RuntimeException exception) {
+                            logger.error(methodName, "Failed to process change in directory ", directory, ": ", exception.getMessage());
+                        }
+
+                    }
+
+                }
+
+                changed.clear();
+            }
+            catch (InterruptedException | ClosedWatchServiceException exception) {
+                return;
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,33 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+
+/**
+ * The policies that a {@code KafkaClient} may apply to select the producer stripe
+ * on which a message is sent.
+ * @author Melior
+ * @since 2.3
+ */
+public enum StripeSelection {
+
+    /**
+     * Send the messages of every thread on a stripe of its own, spreading the
+     * threads evenly over the stripes.  The messages of a thread are sent in order,
+     * and a producer is never shared by more threads than necessary.
+     */
+    THREAD,
+
+    /**
+     * Send every message on the stripe with the fewest messages in flight, so
+     * that a stripe whose producer falls behind receives fewer messages.  The
+     * messages of a thread may be sent out of order.
+     */
+    LEAST_LOADED;
+
+}
@@ -0,0 +1,225 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+/**
+ * Encodes and decodes the tracing header that a {@code KafkaClient} writes to every
+ * record when tracing is enabled.  The header holds, in fixed-width binary form:
+ * <ul>
+ * <li>a format version (1 byte)</li>
+ * <li>the time at which the message was sent, in milliseconds since the epoch (8 bytes)</li>
+ * <li>the time that was spent serializing the message, in microseconds (4 bytes)</li>
+ * <li>the time from handing the record to the producer until the producer serialized
+ * it, which includes any wait for capacity or for partition metadata, in microseconds (4 bytes)</li>
+ * <li>the identifier of the client instance that sent the message (8 bytes)</li>
+ * </ul>
+ * <p>
+ * Until the producer has serialized the record, the enqueue field holds the time at
+ * which the record was handed to the producer, in microseconds on the monotonic clock,
+ * and is replaced with the elapsed time by a {@code TracingSerializer}.  Durations wrap
+ * at 32 bits, which is ample for the intervals that they measure.
+ * @author Melior
+ * @since 2.3
+ */
+public final class TraceHeader {
+
+    static final byte VERSION = 1;
+
+    static final int SIZE = 25;
+
+    private static final int SEND_TIME = 1;
+
+    private static final int SERIALIZATION_TIME = 9;
+
+    private static final int ENQUEUE_TIME = 13;
+
+    private static final int CLIENT_ID = 17;
+
+    /**
+     * Constructor.
+     */
+    private TraceHeader() {
+
+        super();
+    }
+
+    /**
+     * Add tracing header to record headers.
+     * @param headers The record headers
+     * @param sendTime The time at which the message was sent, in milliseconds since the epoch
+     * @param serializationNanos The time that was spent serializing the message, in nanoseconds
+     * @param clientId The identifier of the client instance
+     */
+    static void add(
+        final Headers headers,
+        final long sendTime,
+        final long serializationNanos,
+        final long clientId) {
+
+        byte[] value;
+
+        value = new byte[SIZE];
+        value[0] = VERSION;
+
+        putLong(value, SEND_TIME, sendTime);
+        putInt(value, SERIALIZATION_TIME, (int) Math.min(Integer.MAX_VALUE, serializationNanos / 1000));
+        putInt(value, ENQUEUE_TIME, (int) (System.nanoTime() / 1000));
+        putLong(value, CLIENT_ID, clientId);
+
+        headers.add(ProducerRecordFactory.TRACE, value);
+    }
+
+    /**
+     * Replace the hand-over time in the tracing header of record headers with the
+     * time that has elapsed since.  Records without a tracing header are left alone.
+     * @param headers The record headers
+     */
+    static void enqueued(
+        final Headers headers) {
+
+        Header header;
+        byte[] value;
+
+        header = headers.lastHeader(ProducerRecordFactory.TRACE);
+
+        value = (header == null) ? null : header.value();
+
+        if (isValid(value) == false) {
+            return;
+        }
+
+        putInt(value, ENQUEUE_TIME, (int) (System.nanoTime() / 1000) - getInt(value, ENQUEUE_TIME));
+    }
+
+    /**
+     * Get tracing header of record headers.
+     * @param headers The record headers
+     * @return The tracing header, or {@code null} if the headers hold no valid tracing header
+     */
+    public static byte[] of(
+        final Headers headers) {
+
+        Header header;
+
+        header = headers.lastHeader(ProducerRecordFactory.TRACE);
+
+        return ((header == null) || (isValid(header.value()) == false)) ? null : header.value();
+    }
+
+    /**
+     * Get time at which message was sent.
+     * @param value The tracing header
+     * @return The time in milliseconds since the epoch
+     */
+    public static long getSendTime(
+        final byte[] value) {
+        return getLong(value, SEND_TIME);
+    }
+
+    /**
+     * Get time that was spent serializing message.
+     * @param value The tracing header
+     * @return The time in microseconds
+     */
+    public static int getSerializationTime(
+        final byte[] value) {
+        return getInt(value, SERIALIZATION_TIME);
+    }
+
+    /**
+     * Get time from handing record to the producer until the producer serialized it.
+     * @param value The tracing header
+     * @return The time in microseconds
+     */
+    public static int getEnqueueTime(
+        final byte[] value) {
+        return getInt(value, ENQUEUE_TIME);
+    }
+
+    /**
+     * Get identifier of client instance that sent message.
+     * @param value The tracing header
+     * @return The client identifier
+     */
+    public static long getClientId(
+        final byte[] value) {
+        return getLong(value, CLIENT_ID);
+    }
+
+    /**
+     * Determine whether tracing header has a format that is understood.
+     * @param value The tracing header
+     * @return true if the format is understood, false otherwise
+     */
+    private static boolean isValid(
+        final byte[] value) {
+        return (value != null) && (value.length == SIZE) && (value[0] == VERSION);
+    }
+
+    /**
+     * Write big-endian integer to array.
+     * @param array The array
+     * @param offset The offset
+     * @param value The value
+     */
+    private static void putInt(
+        final byte[] array,
+        final int offset,
+        final int value) {
+
+        array[offset] = (byte) (value >>> 24);
+        array[offset + 1] = (byte) (value >>> 16);
+        array[offset + 2] = (byte) (value >>> 8);
+        array[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Write big-endian long to array.
+     * @param array The array
+     * @param offset The offset
+     * @param value The value
+     */
+    private static void putLong(
+        final byte[] array,
+        final int offset,
+        final long value) {
+
+        putInt(array, offset, (int) (value >>> 32));
+        putInt(array, offset + 4, (int) value);
+    }
+
+    /**
+     * Read big-endian integer from array.
+     * @param array The array
+     * @param offset The offset
+     * @return The value
+     */
+    private static int getInt(
+        final byte[] array,
+        final int offset) {
+
+        return ((array[offset] & 0xFF) << 24) | ((array[offset + 1] & 0xFF) << 16)
+            | ((array[offset + 2] & 0xFF) << 8) | (array[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Read big-endian long from array.
+     * @param array The array
+     * @param offset The offset
+     * @return The value
+     */
+    private static long getLong(
+        final byte[] array,
+        final int offset) {
+        return ((long) getInt(array, offset) << 32) | (getInt(array, offset + 4) & 0xFFFFFFFFL);
+    }
+
+}
@@ -0,0 +1,53 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Passes message payloads to the producer as is, like a {@code ByteArraySerializer}, and
+ * completes the tracing header of every record with the time from handing the record
+ * to the producer until the producer serialized it.  The producer serializes a record
+ * once it has obtained the metadata of the partitions, and while the headers of the
+ * record may still be written to.
+ * @author Melior
+ * @since 2.3
+ */
+public class TracingSerializer implements Serializer<byte[]> {
+
+    /**
+     * Serialize payload.
+     * @param topic The topic
+     * @param data The payload
+     * @return The payload
+     */
+    public byte[] serialize(
+        final String topic,
+        final byte[] data) {
+        return data;
+    }
+
+    /**
+     * Serialize payload, and complete the tracing header of the record.
+     * @param topic The topic
+     * @param headers The record headers
+     * @param data The payload
+     * @return The payload
+     */
+    public byte[] serialize(
+        final String topic,
+        final Headers headers,
+        final byte[] data) {
+
+        TraceHeader.enqueued(headers);
+
+        return data;
+    }
+
+}
@@ -0,0 +1,31 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+
+/**
+ * Sends messages within a Kafka transaction on behalf of a {@code KafkaClient}.
+ * The transaction is committed when the callback returns, and is aborted when
+ * the callback throws an exception.
+ * @author Melior
+ * @since 2.3
+ * @param <T> The result type
+ */
+@FunctionalInterface
+public interface TransactionCallback<T> {
+
+    /**
+     * Send messages within transaction.
+     * @param transaction The transaction
+     * @return The result
+     * @throws Exception if unable to send the messages
+     */
+    public T doInTransaction(
+        final KafkaTransaction transaction) throws Exception;
+
+}
@@ -0,0 +1,551 @@
+/* __  __      _ _            
+  |  \/  |    | (_)           
+  | \  / | ___| |_  ___  _ __ 
+  | |\/| |/ _ \ | |/ _ \| '__|
+  | |  | |  __/ | | (_) | |   
+  |_|  |_|\___|_|_|\___/|_|   
+        Service Harness
+*/
+package org.melior.client.kafka;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import org.apache.kafka.clients.producer.Producer;
+import org.melior.client.exception.RemotingException;
+import org.melior.service.exception.ExceptionType;
+
+/**
+ * Keeps a small pool of transactional producers on behalf of a {@code KafkaClient},
+ * so that concurrent callers each run their own transaction instead of queuing
+ * behind a single one.  Every producer in the pool has its own transactional
+ * identifier, and is only created and initialized when it is first needed.
+ * <p>
+ * When group commit is enabled, a caller that finds a transaction in progress
+ * joins it rather than starting a transaction of its own, so that under load
+ * many small batches share a single commit.  The caller that started the
+ * transaction commits it once its own batch and the batches of all callers that
+ * joined have been handed to the producer.  When any batch in the group fails,
+ * the transaction is aborted and every caller in the group receives a failure.
+ * @author Melior
+ * @since 2.3
+ */
+final class TransactionalProducerPool {
+
+    private int groupSize;
+
+    private long groupWindow;
+
+    private long timeout;
+
+    private IntFunction<Producer<String, byte[]>> factory;
+
+    private ReentrantLock lock;
+
+    private Condition changed;
+
+    private ArrayDeque<Slot> idle;
+
+    private Group openGroup;
+
+    private boolean closed;
+
+    private ThreadLocal<Group> current;
+
+    /**
+     * Constructor.
+     * @param size The number of producers in the pool
+     * @param groupSize The maximum number of batches that may share a transaction
+     * @param groupWindow The amount of time in milliseconds that a transaction waits for other batches to join
+     * @param timeout The amount of time in milliseconds that a caller may wait for a producer
+     * @param factory The function that creates the producer with the specified index
+     */
+    TransactionalProducerPool(
+        final int size,
+        final int groupSize,
+        final long groupWindow,
+        final long timeout,
+        final IntFunction<Producer<String, byte[]>> factory) {
+
+        super();
+
+        this.groupSize = Math.max(1, groupSize);
+
+        this.groupWindow = TimeUnit.MILLISECONDS.toNanos(groupWindow);
+
+        this.timeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        this.factory = factory;
+
+        this.lock = new ReentrantLock();
+
+        this.changed = lock.newCondition();
+
+        this.idle = new ArrayDeque<Slot>();
+
+        for (int i = 0; i < Math.max(1, size); i++) {
+            idle.add(new Slot(i));
+        }
+
+        this.current = new ThreadLocal<Group>();
+    }
+
+    /**
+     * Run work in a transaction.  The work hands its records to the producer that
+     * it is given, and the transaction is committed once the work of every caller
+     * in the group has completed.
+     * @param <T> The result type
+     * @param work The work
+     * @return The result of the work
+     * @throws Exception if the work fails, or if the transaction could not be committed
+     */
+    <T> T execute(
+        final Work<T> work) throws Exception {
+
+        Group group;
+        boolean leader;
+        T result = null;
+        Exception failure = null;
+
+        if (current.get() != null) {
+            throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Transactions must not be nested.");
+        }
+
+        group = join();
+
+        leader = (group.leader == Thread.currentThread());
+
+        current.set(group);
+
+        try {
+
+            result = work.run(group.slot.producer);
+        }
+        catch (Exception exception) {
+            failure = exception;
+        }
+        finally {
+            current.remove();
+        }
+
+        if (leader == true) {
+            complete(group, failure);
+        }
+        else {
+            leave(group, failure);
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        if (group.failure != null) {
+            throw new RemotingException(ExceptionType.REMOTING_COMMUNICATION, "Transaction aborted: " + group.failure.getMessage(), group.failure);
+        }
+
+        return result;
+    }
+
+    /**
+     * Close pool.  The idle producers are closed straight away, and the producers
+     * that are in use are closed as soon as their transactions have completed.
+     */
+    void close() {
+
+        lock.lock();
+
+        try {
+
+            closed = true;
+
+            openGroup = null;
+
+            for (Slot slot : idle) {
+                slot.discard();
+            }
+
+            idle.clear();
+
+            changed.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+
+    }
+
+    /**
+     * Join the transaction that is in progress if group commit allows it, or
+     * otherwise start a new transaction on an idle producer.
+     * @return The group of the transaction
+     * @throws RemotingException if no producer is available in time, or if the transaction could not be started
+     */
+    private Group join() throws RemotingException {
+
+        long remaining;
+        Slot slot;
+        Group group;
+
+        lock.lock();
+
+        try {
+
+            remaining = timeout;
+
+            while (true) {
+
+                if (closed == true) {
+                    throw new RemotingException(ExceptionType.LOCAL_APPLICATION, "Client has been closed.");
+                }
+
+                if ((openGroup != null) && (openGroup.members < groupSize)) {
+                    openGroup.members++;
+                    openGroup.active++;
+
+                    changed.signalAll();
+
+                    return openGroup;
+                }
+
+                if (idle.isEmpty() == false) {
+                    slot = idle.removeFirst();
+
+                    break;
+                }
+
+                if (remaining <= 0) {
+                    throw new RemotingException(ExceptionType.REMOTING_COMMUNICATION, "No transactional producer available after waiting "
+                        + TimeUnit.NANOSECONDS.toMillis(timeout) + " ms.");
+                }
+
+                remaining = changed.awaitNanos(remaining);
+            }
+
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+
+            throw new RemotingException(ExceptionType.REMOTING_COMMUNICATION, "Thread has been interrupted while waiting for a transactional producer.");
+        }
+        finally {
+            lock.unlock();
+        }
+
+        try {
+
+            slot.begin();
+        }
+        catch (RuntimeException exception) {
+
+            release(slot);
+
+            throw new RemotingException(ExceptionType.REMOTING_COMMUNICATION, "Failed to begin transaction: " + exception.getMessage(), exception);
+        }
+
+        group = new Group(slot);
+
+        if (groupSize > 1) {
+
+            lock.lock();
+
+            try {
+
+                if ((openGroup == null) && (closed == false)) {
+                    openGroup = group;
+
+                    changed.signalAll();
+                }
+
+            }
+            finally {
+                lock.unlock();
+            }
+
+        }
+
+        return group;
+    }
+
+    /**
+     * Leave the transaction once the work of the caller has completed, and wait
+     * for the caller that started the transaction to complete it.
+     * @param group The group of the transaction
+     * @param failure The failure of the work, or {@code null} if the work succeeded
+     */
+    private void leave(
+        final Group group,
+        final Exception failure) {
+
+        lock.lock();
+
+        try {
+
+            if ((failure != null) && (group.failure == null)) {
+                group.failure = failure;
+            }
+
+            group.active--;
+
+            changed.signalAll();
+
+            while (group.done == false) {
+                changed.awaitUninterruptibly();
+            }
+
+        }
+        finally {
+            lock.unlock();
+        }
+
+    }
+
+    /**
+     * Complete the transaction.  The transaction waits for other batches to join
+     * for the group commit window, and then for the work of every caller that
+     * joined to complete.  The transaction is committed if all work succeeded,
+     * and is aborted otherwise.
+     * @param group The group of the transaction
+     * @param failure The failure of the work, or {@code null} if the work succeeded
+     */
+    private void complete(
+        final Group group,
+        final Exception failure) {
+
+        long remaining;
+
+        lock.lock();
+
+        try {
+
+            if ((failure != null) && (group.failure == null)) {
+                group.failure = failure;
+            }
+
+            group.active--;
+
+            remaining = group.start + groupWindow - System.nanoTime();
+
+            while ((group.failure == null) && (group.members < groupSize) && (remaining > 0) && (closed == false)) {
+                remaining = changed.awaitNanos(remaining);
+            }
+
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+
+            if (openGroup == group) {
+                openGroup = null;
+            }
+
+            while (group.active > 0) {
+                changed.awaitUninterruptibly();
+            }
+
+            lock.unlock();
+        }
+
+        if (group.failure == null) {
+
+            try {
+
+                group.slot.producer.commitTransaction();
+            }
+            catch (RuntimeException exception) {
+                group.failure = exception;
+            }
+
+        }
+
+        if (group.failure != null) {
+            group.slot.abort();
+        }
+
+        lock.lock();
+
+        try {
+
+            group.done = true;
+
+            changed.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+
+        release(group.slot);
+    }
+
+    /**
+     * Return producer to the pool.  The producer is closed if the pool has been closed.
+     * @param slot The slot of the producer
+     */
+    private void release(
+        final Slot slot) {
+
+        lock.lock();
+
+        try {
+
+            if (closed == true) {
+                slot.discard();
+            }
+            else {
+                idle.addFirst(slot);
+            }
+
+            changed.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+
+    }
+
+    /**
+     * The work that is run in a transaction.
+     * @param <T> The result type
+     */
+    @FunctionalInterface
+    interface Work<T> {
+
+        /**
+         * Run work.
+         * @param producer The transactional producer
+         * @return The result of the work
+         * @throws Exception if the work fails
+         */
+        public T run(
+            final Producer<String, byte[]> producer) throws Exception;
+
+    }
+
+    /**
+     * A transactional producer in the pool.
+     */
+    private final class Slot {
+
+        private int index;
+
+        private Producer<String, byte[]> producer;
+
+        /**
+         * Constructor.
+         * @param index The index of the producer
+         */
+        Slot(
+            final int index) {
+
+            super();
+
+            this.index = index;
+        }
+
+        /**
+         * Begin transaction.  The producer is created and its transactions are
+         * initialized first if that has not been done yet.
+         */
+        void begin() {
+
+            try {
+
+                if (producer == null) {
+                    producer = factory.apply(index);
+                    producer.initTransactions();
+                }
+
+                producer.beginTransaction();
+            }
+            catch (RuntimeException exception) {
+
+                discard();
+
+                throw exception;
+            }
+
+        }
+
+        /**
+         * Abort transaction.  If the transaction cannot be aborted then the producer
+         * is in an unrecoverable state, and is closed so that it is created afresh
+         * when the next transaction begins.
+         */
+        void abort() {
+
+            try {
+
+                producer.abortTransaction();
+            }
+            catch (RuntimeException exception) {
+                discard();
+            }
+
+        }
+
+        /**
+         * Close producer.
+         */
+        void discard() {
+
+            if (producer == null) {
+                return;
+            }
+
+            try {
+
+                producer.close(Duration.ZERO);
+            }
+            catch (RuntimeException exception) {
+                // the producer is abandoned regardless
+            }
+
+            producer = null;
+        }
+
+    }
+
+    /**
+     * A transaction that is shared by a group of callers.
+     */
+    private static final class Group {
+
+        private Slot slot;
+
+        private Thread leader;
+
+        private long start;
+
+        private int members;
+
+        private int active;
+
+        private Exception failure;
+
+        private boolean done;
+
+        /**
+         * Constructor.
+         * @param slot The slot of the producer that runs the transaction
+         */
+        Group(
+            final Slot slot) {
+
+            super();
+
+            this.slot = slot;
+
+            this.leader = Thread.currentThread();
+
+            this.start = System.nanoTime();
+
+            this.members = 1;
+
+            this.active = 1;
+        }
+
+    }
+
+}